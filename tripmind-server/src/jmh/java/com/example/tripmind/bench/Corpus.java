@@ -0,0 +1,85 @@
+package com.example.tripmind.bench;
+
+import com.example.tripmind.service.ai.WikidataEntity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upstream responses the benchmarks replay, loaded from {@code src/jmh/resources/corpus}:
+ * a Groq itinerary and chat completion, Wikidata search/entities and Wikipedia pageimages,
+ * in the shapes the live APIs return.
+ */
+public final class Corpus {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Corpus() {
+    }
+
+    public static byte[] bytes(String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) throw new IllegalStateException("Missing corpus file: " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static JsonNode json(String name) {
+        try {
+            return MAPPER.readTree(bytes(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** {@code choices[0].message.content} of a recorded completion. */
+    public static String completionContent(String name) {
+        return json(name).path("choices").path(0).path("message").path("content").asText();
+    }
+
+    /** The itinerary completion's content reduced to the bare plan document. */
+    public static String tripPlan() {
+        String content = completionContent("groq-itinerary-completion.json");
+        return content.substring(content.indexOf('{'), content.lastIndexOf('}') + 1);
+    }
+
+    /** Same extraction as WikimediaClient#getEntities. */
+    public static List<WikidataEntity> wikidataEntities() {
+        List<WikidataEntity> result = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = json("wikidata-entities.json").path("entities").fields();
+        while (fields.hasNext()) {
+            JsonNode entity = fields.next().getValue();
+            JsonNode p18 = entity.path("claims").path("P18").path(0).path("mainsnak").path("datavalue").path("value");
+
+            List<String> instanceOf = new ArrayList<>();
+            for (JsonNode claim : entity.path("claims").path("P31")) {
+                String id = claim.path("mainsnak").path("datavalue").path("value").path("id").asText("");
+                if (!id.isBlank()) instanceOf.add(id);
+            }
+
+            result.add(new WikidataEntity(
+                    entity.path("id").asText(),
+                    entity.path("labels").path("en").path("value").asText(""),
+                    entity.path("descriptions").path("en").path("value").asText(""),
+                    p18.isTextual() ? p18.asText() : null,
+                    instanceOf));
+        }
+        return result;
+    }
+
+    /** Titles, thumbnails and originals from the pageimages response, in page order. */
+    public static List<JsonNode> wikipediaPages() {
+        List<JsonNode> pages = new ArrayList<>();
+        json("wikipedia-pageimages.json").path("query").path("pages").forEach(pages::add);
+        return pages;
+    }
+}
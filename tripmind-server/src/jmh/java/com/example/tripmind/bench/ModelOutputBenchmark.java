@@ -0,0 +1,107 @@
+package com.example.tripmind.bench;
+
+import com.example.tripmind.service.ai.JsonExtractor;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting the plan out of a Groq completion. {@code legacy*} replays the pre-JsonExtractor pipeline
+ * (body to String, content to String, fence strip, extractBalancedJson substring, readTree) as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModelOutputBenchmark {
+
+    private byte[] itineraryBody;
+    private byte[] chatBody;
+    private String itineraryContent;
+    private String truncatedContent;
+
+    @Setup
+    public void load() {
+        itineraryBody = Corpus.bytes("groq-itinerary-completion.json");
+        chatBody = Corpus.bytes("groq-chat-completion.json");
+        itineraryContent = Corpus.completionContent("groq-itinerary-completion.json");
+        // cut mid-activity, as when the model runs into max_tokens
+        truncatedContent = itineraryContent.substring(0, itineraryContent.length() * 2 / 3);
+    }
+
+    @Benchmark
+    public JsonExtractor.Span locatePlan() {
+        return JsonExtractor.locate(itineraryContent);
+    }
+
+    @Benchmark
+    public JsonExtractor.Span locateTruncatedPlan() {
+        return JsonExtractor.locate(truncatedContent);
+    }
+
+    @Benchmark
+    public JsonNode readPlanContent() throws IOException {
+        return JsonExtractor.readTree(Corpus.MAPPER, itineraryContent);
+    }
+
+    @Benchmark
+    public JsonNode readItineraryCompletion() throws IOException {
+        return JsonExtractor.readCompletionContent(Corpus.MAPPER, new ByteArrayInputStream(itineraryBody));
+    }
+
+    @Benchmark
+    public JsonNode readChatCompletion() throws IOException {
+        return JsonExtractor.readCompletionContent(Corpus.MAPPER, new ByteArrayInputStream(chatBody));
+    }
+
+    @Benchmark
+    public JsonNode legacyItineraryCompletion() throws IOException {
+        return legacyPipeline(itineraryBody);
+    }
+
+    @Benchmark
+    public JsonNode legacyChatCompletion() throws IOException {
+        return legacyPipeline(chatBody);
+    }
+
+    private static JsonNode legacyPipeline(byte[] body) throws IOException {
+        String raw = new String(body, StandardCharsets.UTF_8);
+        String content = Corpus.MAPPER.readTree(raw)
+                .path("choices").path(0).path("message").path("content").asText().trim();
+        return Corpus.MAPPER.readTree(extractBalancedJson(content));
+    }
+
+    private static String extractBalancedJson(String raw) {
+        String text = raw.trim().replace("```json", "").replace("```", "").trim();
+        int start = text.indexOf('{');
+        if (start < 0) return text;
+
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return text.substring(start, i + 1).trim();
+            }
+        }
+        return text.substring(start);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.tripmind.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of a full {@code trip_plan}: as a tree (AiService, caches, enrichment)
+ * and as the {@code Map<String, Object>} that trips and itineraries are saved and served as.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TripPlanJsonBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    private byte[] planBytes;
+    private JsonNode planTree;
+    private Map<String, Object> planMap;
+
+    @Setup
+    public void load() throws IOException {
+        planBytes = Corpus.tripPlan().getBytes(StandardCharsets.UTF_8);
+        planTree = Corpus.MAPPER.readTree(planBytes);
+        planMap = Corpus.MAPPER.readValue(planBytes, MAP);
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws IOException {
+        return Corpus.MAPPER.readTree(planBytes);
+    }
+
+    @Benchmark
+    public Map<String, Object> readMap() throws IOException {
+        return Corpus.MAPPER.readValue(planBytes, MAP);
+    }
+
+    @Benchmark
+    public byte[] writeTree() throws IOException {
+        return Corpus.MAPPER.writeValueAsBytes(planTree);
+    }
+
+    @Benchmark
+    public byte[] writeMap() throws IOException {
+        return Corpus.MAPPER.writeValueAsBytes(planMap);
+    }
+
+    @Benchmark
+    public JsonNode deepCopyTree() {
+        return planTree.deepCopy();
+    }
+
+    @Benchmark
+    public Map<String, Object> treeToMap() {
+        return Corpus.MAPPER.convertValue(planTree, MAP);
+    }
+}
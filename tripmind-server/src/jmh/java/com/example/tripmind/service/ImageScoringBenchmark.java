@@ -0,0 +1,125 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.bench.Corpus;
+import com.example.tripmind.service.ai.ImageCandidateScorer;
+import com.example.tripmind.service.ai.TextNormalizer;
+import com.example.tripmind.service.ai.WikidataEntity;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate scoring for image enrichment. One operation = one place lookup over the recorded
+ * Wikidata/Wikipedia candidates ({@code batch*}: over 2,000 of them, as from a batched plan lookup),
+ * or one pass over the URLs for the {@link ImageEnrichmentService} helpers, which are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImageScoringBenchmark {
+
+    private List<WikidataEntity> entities;
+    private List<String> titles;
+    private List<String> imageUrls;
+    private List<String> imageFiles;
+
+    private List<WikidataEntity> entityBatch;
+    private List<String> titleBatch;
+
+    @Setup
+    public void load() {
+        entities = Corpus.wikidataEntities();
+
+        titles = new ArrayList<>();
+        imageUrls = new ArrayList<>();
+        for (JsonNode page : Corpus.wikipediaPages()) {
+            titles.add(page.path("title").asText());
+            if (page.has("original")) imageUrls.add(page.path("original").path("source").asText().toLowerCase(Locale.ROOT));
+        }
+        // what the model tends to put in hotel_image_url / place_image_url
+        imageUrls.add("https://example.com/hotel.jpg");
+        imageUrls.add("https://www.booking.com/hotel/tr/pera-palace.html");
+        imageUrls.add("https://images.unsplash.com/photo-1524231757912-21f4fe3a7200?auto=format&w=1200");
+
+        imageFiles = new ArrayList<>();
+        for (WikidataEntity entity : entities) {
+            if (entity.imageFile() != null) imageFiles.add(entity.imageFile());
+        }
+
+        entityBatch = new ArrayList<>();
+        titleBatch = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            entityBatch.addAll(entities);
+            titleBatch.addAll(titles);
+        }
+    }
+
+    @Benchmark
+    public void normalizeText(Blackhole bh) {
+        for (WikidataEntity entity : entities) {
+            bh.consume(TextNormalizer.normalize(entity.label()));
+            bh.consume(TextNormalizer.normalize(entity.description()));
+        }
+    }
+
+    @Benchmark
+    public int scoreWikidataEntities() {
+        return scoreEntities(entities);
+    }
+
+    @Benchmark
+    public int scoreWikipediaTitles() {
+        return scoreTitles(titles);
+    }
+
+    @Benchmark
+    public int batchScoreWikidataEntities() {
+        return scoreEntities(entityBatch);
+    }
+
+    @Benchmark
+    public int batchScoreWikipediaTitles() {
+        return scoreTitles(titleBatch);
+    }
+
+    @Benchmark
+    public int isLikelyImageUrl() {
+        int hits = 0;
+        for (String url : imageUrls) {
+            if (ImageEnrichmentService.isLikelyImageUrl(url)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public void buildCommonsUrl(Blackhole bh) {
+        for (String file : imageFiles) {
+            bh.consume(ImageEnrichmentService.buildCommonsUrl(file));
+        }
+    }
+
+    private static int scoreEntities(List<WikidataEntity> candidates) {
+        ImageCandidateScorer scorer = new ImageCandidateScorer("Hagia Sophia", "Istanbul, Turkey", false);
+        int total = 0;
+        for (WikidataEntity entity : candidates) total += scorer.scoreEntity(entity);
+        return total;
+    }
+
+    private static int scoreTitles(List<String> candidates) {
+        ImageCandidateScorer scorer = new ImageCandidateScorer("Hagia Sophia", "Istanbul, Turkey", false);
+        int total = 0;
+        for (String title : candidates) total += scorer.scoreTitle(title);
+        return total;
+    }
+}
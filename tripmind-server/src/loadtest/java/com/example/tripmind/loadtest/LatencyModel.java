@@ -0,0 +1,44 @@
+package com.example.tripmind.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated upstream latency: log-normal with the given median and p99, plus an error rate.
+ * Spec format {@code median[:p99]}, e.g. {@code 1500ms:6s} or {@code 80ms} (p99 = 3 x median).
+ */
+public record LatencyModel(Duration median, Duration p99, double errorRate) {
+
+    private static final double Z_99 = 2.3263;
+
+    public static LatencyModel parse(String spec, double errorRate) {
+        String[] parts = spec.split(":");
+        Duration median = duration(parts[0]);
+        Duration p99 = parts.length > 1 ? duration(parts[1]) : median.multipliedBy(3);
+        if (p99.compareTo(median) < 0) throw new IllegalArgumentException("p99 below median: " + spec);
+        return new LatencyModel(median, p99, errorRate);
+    }
+
+    /** One sampled latency, in milliseconds. */
+    public long sampleMillis() {
+        double medianMs = Math.max(1, median.toMillis());
+        double sigma = Math.log(Math.max(1, p99.toMillis()) / medianMs) / Z_99;
+        return Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    public boolean fails() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return "median=" + median.toMillis() + "ms p99=" + p99.toMillis() + "ms errors=" + errorRate;
+    }
+
+    static Duration duration(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofMillis(Math.round(Double.parseDouble(v.substring(0, v.length() - 1)) * 1000));
+        return Duration.ofMillis(Long.parseLong(v));
+    }
+}
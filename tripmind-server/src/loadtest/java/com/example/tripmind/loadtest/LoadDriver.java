@@ -0,0 +1,436 @@
+package com.example.tripmind.loadtest;
+
+import com.example.tripmind.TripMindApplication;
+import com.example.tripmind.config.RequestLane;
+import com.example.tripmind.service.AiService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test: starts the {@link StubUpstreams}, boots the backend against them (H2, quota
+ * pacing off) unless {@code --base-url} points at a running server, then runs closed-loop virtual-thread
+ * clients over a weighted mix of scenarios and reports p50/p95/p99 latency and throughput per operation.
+ * <p>
+ * Options ({@code --name=value}): duration (60s), warmup (10s), concurrency (32),
+ * mix (chat=30,session=25,itinerary=10,stream=5,crud=30; also abandon: an itinerary stream the client closes
+ * after the first event), groq-latency (1200ms:5s), groq-errors (0.01),
+ * wikimedia-latency (120ms:600ms), wikimedia-errors (0.01), chat-payload / itinerary-payload (completion
+ * JSON files), stub-port (0), base-url, result (target/loadtest-result.json).
+ */
+public final class LoadDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] DESTINATIONS = {"Istanbul", "Paris", "Tokyo", "Rome", "Almaty", "Lisbon", "Seoul", "Prague"};
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    private String baseUrl;
+    private String token;
+    private volatile boolean measuring;
+
+    private LoadDriver(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadDriver(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        LatencyModel groq = LatencyModel.parse(option("groq-latency", "1200ms:5s"),
+                Double.parseDouble(option("groq-errors", "0.01")));
+        LatencyModel wikimedia = LatencyModel.parse(option("wikimedia-latency", "120ms:600ms"),
+                Double.parseDouble(option("wikimedia-errors", "0.01")));
+        Map<String, Integer> mix = mix(option("mix", "chat=30,session=25,itinerary=10,stream=5,crud=30"));
+        Duration warmup = LatencyModel.duration(option("warmup", "10s"));
+        Duration duration = LatencyModel.duration(option("duration", "60s"));
+        int concurrency = Integer.parseInt(option("concurrency", "32"));
+
+        try (StubUpstreams stubs = StubUpstreams.start(Integer.parseInt(option("stub-port", "0")), groq, wikimedia,
+                pathOption("chat-payload"), pathOption("itinerary-payload"))) {
+            System.out.printf("Stubs at %s (groq %s, wikimedia %s)%n", stubs.baseUrl(), groq, wikimedia);
+
+            ConfigurableApplicationContext app = null;
+            if (options.containsKey("base-url")) {
+                // the server under test is expected to use the stubs (fixed --stub-port)
+                System.out.printf("Backend settings: APP_AI_GROQ_URL=%s APP_AI_WIKIMEDIA_WIKIDATA_API=%s APP_AI_WIKIMEDIA_WIKIPEDIA_API=%s%n",
+                        stubs.groqUrl(), stubs.wikidataApi(), stubs.wikipediaApi());
+                baseUrl = options.get("base-url").replaceAll("/+$", "");
+            } else {
+                app = bootBackend(stubs);
+                baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            try {
+                token = registerUser();
+                System.out.printf("Driving %s: %d clients, mix %s, warmup %ds, measure %ds%n",
+                        baseUrl, concurrency, mix, warmup.toSeconds(), duration.toSeconds());
+
+                long measuredNanos = drive(mix, concurrency, warmup, duration);
+                report(measuredNanos, stubs.calls(), groq, wikimedia, concurrency);
+                if (app != null) {
+                    app.getBeansOfType(RequestLane.class).values()
+                            .forEach(lane -> System.out.println("Lane " + lane.name() + ": " + lane.stats()));
+                }
+                if (app != null && abandoned.get() > 0) {
+                    System.out.println("Abandoned requests: " + abandoned.get()
+                            + ", server-side cancellations: " + app.getBean(AiService.class).cancellationStats());
+                }
+            } finally {
+                if (app != null) app.close();
+            }
+        }
+    }
+
+    /** ================= BACKEND ================= **/
+
+    private ConfigurableApplicationContext bootBackend(StubUpstreams stubs) throws IOException {
+        // command-line arguments outrank application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--app.jwt-secret=bG9hZHRlc3Rsb2FkdGVzdGxvYWR0ZXN0bG9hZHRlc3Rsb2FkdGVzdGxvYWR0ZXN0bG9hZHRlc3Q=",
+                "--grok.api.key=stub",
+                "--app.ai.groq.url=" + stubs.groqUrl(),
+                "--app.ai.wikimedia.wikidata-api=" + stubs.wikidataApi(),
+                "--app.ai.wikimedia.wikipedia-api=" + stubs.wikipediaApi(),
+                "--app.ai.http.prewarm=false",
+                "--app.ai.groq.requests-per-minute=1000000",
+                "--app.ai.groq.tokens-per-minute=1000000000",
+                "--app.images.cache-dir=" + Files.createTempDirectory("tripmind-loadtest-images")));
+        options.forEach((name, value) -> {
+            if (name.startsWith("app.") || name.startsWith("spring.") || name.startsWith("server.") || name.startsWith("logging.")) {
+                args.add("--" + name + "=" + value); // backend overrides, e.g. --app.ai.itinerary-cache.enabled=false
+            }
+        });
+        return new SpringApplicationBuilder(TripMindApplication.class).run(args.toArray(String[]::new));
+    }
+
+    private String registerUser() throws Exception {
+        ObjectNode body = MAPPER.createObjectNode()
+                .put("name", "Load Test")
+                .put("email", "load-" + UUID.randomUUID() + "@tripmind.test")
+                .put("password", "load-test-password");
+        HttpResponse<String> response = http.send(post("/api/auth/register", body).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Register failed: " + response.statusCode() + " " + response.body());
+        }
+        return MAPPER.readTree(response.body()).path("token").asText();
+    }
+
+    /** ================= LOAD ================= **/
+
+    private long drive(Map<String, Integer> mix, int concurrency, Duration warmup, Duration duration) throws Exception {
+        List<String> scenarios = new ArrayList<>();
+        mix.forEach((scenario, weight) -> {
+            for (int i = 0; i < weight; i++) scenarios.add(scenario);
+        });
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            clients.add(Thread.ofVirtual().name("load-client-" + i).start(() -> {
+                while (System.nanoTime() < end) {
+                    String scenario = scenarios.get(ThreadLocalRandom.current().nextInt(scenarios.size()));
+                    runScenario(scenario);
+                }
+            }));
+        }
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, measureFrom - System.nanoTime()));
+        measuring = true;
+        long measureStart = System.nanoTime();
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, end - System.nanoTime()));
+        measuring = false;
+        long measured = System.nanoTime() - measureStart;
+
+        for (Thread client : clients) client.join(Duration.ofMinutes(3));
+        return measured;
+    }
+
+    private void runScenario(String scenario) {
+        long n = sequence.incrementAndGet();
+        String destination = DESTINATIONS[(int) (n % DESTINATIONS.length)];
+        switch (scenario) {
+            case "chat" -> {
+                ObjectNode body = MAPPER.createObjectNode();
+                body.putArray("messages").addObject()
+                        .put("role", "user")
+                        .put("content", "I'd like to travel from Almaty to " + destination + " (request " + n + ")");
+                call("chat", post("/api/ai", body));
+            }
+            case "session" -> {
+                // a fresh session per run: two turns, the second one against the stored history
+                ObjectNode first = MAPPER.createObjectNode().put("message", "Hi, I want to plan a trip (request " + n + ")");
+                JsonNode reply = call("session.turn", post("/api/ai/session", first));
+                if (reply != null && reply.hasNonNull("sessionId")) {
+                    ObjectNode second = MAPPER.createObjectNode()
+                            .put("sessionId", reply.get("sessionId").asText())
+                            .put("message", "From Almaty to " + destination);
+                    call("session.turn", post("/api/ai/session", second));
+                }
+            }
+            case "itinerary" -> call("itinerary", post("/api/ai/itinerary", planInput(destination, n)));
+            case "abandon" -> abandon(post("/api/ai/itinerary/stream", planInput(destination, n))
+                    .header("Accept", "text/event-stream"));
+            case "stream" -> stream(post("/api/ai/itinerary/stream", planInput(destination, n))
+                    .header("Accept", "text/event-stream"));
+            case "crud" -> {
+                JsonNode created = call("trip.create", post("/api/trips", trip(destination, n)).header("Authorization", "Bearer " + token));
+                if (created != null && created.hasNonNull("id")) {
+                    call("trip.get", get("/api/trips/" + created.get("id").asText()));
+                }
+                call("trip.list", get("/api/trips"));
+            }
+            default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+    }
+
+    private JsonNode call(String operation, HttpRequest.Builder request) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            record(operation, started, response.statusCode());
+            backOff(response);
+            byte[] body = response.body();
+            return response.statusCode() / 100 == 2 && body.length > 0 ? MAPPER.readTree(body) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException e) {
+            record(operation, started, -1);
+            return null;
+        }
+    }
+
+    // the user closes the tab once the first day shows up: the connection is dropped mid-stream
+    private void abandon(HttpRequest.Builder request) {
+        try {
+            HttpResponse<InputStream> response = http.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("event:")) break;
+                }
+            }
+            if (measuring) abandoned.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // nothing to abandon
+        }
+    }
+
+    // time to the first SSE event and to the end of the stream
+    private void stream(HttpRequest.Builder request) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = http.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                if (response.statusCode() / 100 != 2) {
+                    record("stream", started, response.statusCode());
+                    backOff(response);
+                    return;
+                }
+                boolean first = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (first && line.startsWith("event:")) {
+                        record("stream.first-event", started, 200);
+                        first = false;
+                    }
+                }
+            }
+            record("stream", started, response.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            record("stream", started, -1);
+        }
+    }
+
+    // a shed request (503 + Retry-After) waits as a well-behaved client would, instead of hammering the server
+    private static void backOff(HttpResponse<?> response) throws InterruptedException {
+        if (response.statusCode() != 503) return;
+        Optional<String> retryAfter = response.headers().firstValue("Retry-After");
+        if (retryAfter.isPresent()) TimeUnit.SECONDS.sleep(Long.parseLong(retryAfter.get().trim()));
+    }
+
+    private void record(String operation, long startedNanos, int status) {
+        if (!measuring) return;
+        recorders.computeIfAbsent(operation, key -> new Recorder()).record(System.nanoTime() - startedNanos, status);
+    }
+
+    /** ================= REPORT ================= **/
+
+    private void report(long measuredNanos, Map<String, Long> stubCalls,
+                        LatencyModel groq, LatencyModel wikimedia, int concurrency) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        ObjectNode result = MAPPER.createObjectNode();
+        result.put("baseUrl", baseUrl).put("concurrency", concurrency).put("seconds", seconds)
+                .put("groq", groq.toString()).put("wikimedia", wikimedia.toString());
+        ObjectNode operations = result.putObject("operations");
+
+        System.out.printf("%n%-20s %8s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        long total = 0;
+        for (String operation : new TreeSet<>(recorders.keySet())) {
+            Recorder.Summary s = recorders.get(operation).summary();
+            total += s.count();
+            System.out.printf("%-20s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    operation, s.count(), s.errors(), s.count() / seconds, s.p50(), s.p95(), s.p99(), s.max());
+            ObjectNode op = operations.putObject(operation);
+            op.put("count", s.count()).put("errors", s.errors()).put("throughput", s.count() / seconds)
+                    .put("p50Ms", s.p50()).put("p95Ms", s.p95()).put("p99Ms", s.p99()).put("maxMs", s.max());
+            ObjectNode statuses = op.putObject("statuses");
+            s.statuses().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+        }
+        System.out.printf("%-20s %8d %7s %9.1f%n", "total", total, "", total / seconds);
+        System.out.println("Stub calls: " + stubCalls);
+
+        stubCalls.forEach(result.putObject("stubCalls")::put);
+        Path file = Path.of(option("result", "target/loadtest-result.json"));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), result);
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+
+    /** ================= HELPERS ================= **/
+
+    private HttpRequest.Builder post(String path, JsonNode body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMinutes(3))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+    }
+
+    // a distinct special request per call keeps the itinerary cache and single-flight out of the measurement
+    private static ObjectNode planInput(String destination, long n) {
+        ObjectNode input = MAPPER.createObjectNode()
+                .put("source", "Almaty")
+                .put("destination", destination)
+                .put("groupSize", "Couple")
+                .put("budget", "Medium")
+                .put("tripDurationDays", 3 + (int) (n % 5))
+                .put("specialReq", "load test " + n);
+        input.putArray("interests").add("Sightseeing").add("Food");
+        return input;
+    }
+
+    private static ObjectNode trip(String destination, long n) {
+        ObjectNode trip = MAPPER.createObjectNode()
+                .put("title", "Load test " + n)
+                .put("origin", "Almaty")
+                .put("destination", destination)
+                .put("durationDays", 5)
+                .put("budget", "Medium")
+                .put("groupSize", "Couple");
+        trip.putObject("plan").putObject("trip_plan").put("destination", destination);
+        return trip;
+    }
+
+    private static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) mix.put(kv[0].trim(), weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("Empty mix: " + spec);
+        return mix;
+    }
+
+    private String option(String name, String fallback) {
+        return options.getOrDefault(name, fallback);
+    }
+
+    private Path pathOption(String name) {
+        return options.containsKey(name) ? Path.of(options.get(name)) : null;
+    }
+
+    /** Latencies of one operation (successful calls only) plus status counts. */
+    private static final class Recorder {
+
+        record Summary(long count, long errors, double p50, double p95, double p99, double max,
+                       Map<Integer, Long> statuses) {}
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        synchronized void record(long nanos, int status) {
+            statuses.merge(status, 1L, Long::sum);
+            if (status / 100 != 2) {
+                errors++;
+                return;
+            }
+            if (size == latencies.length) latencies = Arrays.copyOf(latencies, size * 2);
+            latencies[size++] = nanos;
+        }
+
+        synchronized Summary summary() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Summary(size + errors, errors,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    size == 0 ? 0 : sorted[size - 1] / 1e6, new TreeMap<>(statuses));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+    }
+}
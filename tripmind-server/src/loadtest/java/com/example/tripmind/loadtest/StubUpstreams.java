@@ -0,0 +1,285 @@
+package com.example.tripmind.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for the upstreams the backend calls, on one port:
+ * <ul>
+ *   <li>{@code POST /openai/v1/chat/completions} - Groq chat completions, plain or streamed
+ *       ({@code "stream": true}, OpenAI SSE chunks). Requests with {@code max_tokens > 1000} get the
+ *       canned itinerary, session turns (JSON user message with "state") the canned chat reply, plain
+ *       chat turns the same reply without "state". Parallel itinerary sub-requests (hotels, day chunks)
+ *       get the itinerary's trip_plan body, outlines an empty day list.</li>
+ *   <li>{@code GET /wikidata/w/api.php} - wbsearchentities / wbgetentities; search hits echo the query as
+ *       label, entities carry an image (P18) and a hotel or building instance-of (P31).</li>
+ *   <li>{@code GET /wikipedia/w/api.php} - pageimages by titles or search generator, one image per page.</li>
+ * </ul>
+ * Each upstream waits a latency sampled from its {@link LatencyModel} and fails with 503 at its error rate.
+ */
+public final class StubUpstreams implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int STREAM_CHUNKS = 40;
+
+    private final HttpServer server;
+    private final String sessionContent;
+    private final String chatContent;
+    private final String itineraryContent;
+    private final String itineraryPartContent;
+
+    // search hit id -> label, so wbgetentities can answer with a matching label
+    private final Map<String, String> labels = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+    private StubUpstreams(int port, LatencyModel groq, LatencyModel wikimedia, String chatContent, String itineraryContent)
+            throws IOException {
+        this.sessionContent = chatContent;
+        this.chatContent = withoutState(chatContent);
+        this.itineraryContent = itineraryContent;
+        this.itineraryPartContent = tripPlanBody(itineraryContent);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/openai/v1/chat/completions", exchange -> handle(exchange, "groq", groq, this::groq));
+        server.createContext("/wikidata/w/api.php", exchange -> handle(exchange, "wikidata", wikimedia, this::wikidata));
+        server.createContext("/wikipedia/w/api.php", exchange -> handle(exchange, "wikipedia", wikimedia, this::wikipedia));
+        server.start();
+    }
+
+    /**
+     * @param port             0 = any free port
+     * @param chatPayload      completion body for chat turns (null = bundled corpus/groq-chat-completion.json)
+     * @param itineraryPayload completion body for itineraries (null = bundled corpus/groq-itinerary-completion.json)
+     */
+    public static StubUpstreams start(int port, LatencyModel groq, LatencyModel wikimedia,
+                                      Path chatPayload, Path itineraryPayload) throws IOException {
+        return new StubUpstreams(port, groq, wikimedia,
+                completionContent(chatPayload, "/corpus/groq-chat-completion.json"),
+                completionContent(itineraryPayload, "/corpus/groq-itinerary-completion.json"));
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String groqUrl() {
+        return baseUrl() + "/openai/v1/chat/completions";
+    }
+
+    public String wikidataApi() {
+        return baseUrl() + "/wikidata/w/api.php";
+    }
+
+    public String wikipediaApi() {
+        return baseUrl() + "/wikipedia/w/api.php";
+    }
+
+    public Map<String, Long> calls() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        calls.forEach((name, count) -> snapshot.put(name, count.get()));
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /** ================= HANDLERS ================= **/
+
+    private interface Handler {
+        void serve(HttpExchange exchange, long latencyMs) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, String name, LatencyModel latency, Handler handler) {
+        calls.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+        try (exchange) {
+            long latencyMs = latency.sampleMillis();
+            if (latency.fails()) {
+                Thread.sleep(latencyMs / 4);
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            handler.serve(exchange, latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            calls.computeIfAbsent(name + ".failed", key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private void groq(HttpExchange exchange, long latencyMs) throws Exception {
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = MAPPER.readTree(body);
+        }
+        String system = request.path("messages").path(0).path("content").asText("");
+        String content = system.contains("trip outliner") ? "{\"days\":[]}"
+                : system.contains("hotel finder") || system.contains("some days of a longer trip") ? itineraryPartContent
+                : request.path("max_tokens").asInt() > 1000 ? itineraryContent
+                : isSessionTurn(request) ? sessionContent : chatContent;
+
+        if (!request.path("stream").asBoolean()) {
+            Thread.sleep(latencyMs);
+            ObjectNode completion = MAPPER.createObjectNode()
+                    .put("id", "chatcmpl-stub")
+                    .put("object", "chat.completion")
+                    .put("model", request.path("model").asText());
+            ObjectNode choice = completion.putArray("choices").addObject();
+            choice.put("index", 0).put("finish_reason", "stop");
+            choice.putObject("message").put("role", "assistant").put("content", content);
+            json(exchange, completion);
+            return;
+        }
+
+        // first token after a fifth of the latency, the rest spread evenly
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        Thread.sleep(latencyMs / 5);
+        exchange.sendResponseHeaders(200, 0);
+        long gapMs = latencyMs * 4 / 5 / STREAM_CHUNKS;
+        int size = Math.max(1, (content.length() + STREAM_CHUNKS - 1) / STREAM_CHUNKS);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < content.length(); start += size) {
+                ObjectNode chunk = MAPPER.createObjectNode().put("object", "chat.completion.chunk");
+                chunk.putArray("choices").addObject().put("index", 0)
+                        .putObject("delta").put("content", content.substring(start, Math.min(content.length(), start + size)));
+                out.write(("data: " + MAPPER.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (gapMs > 0) Thread.sleep(gapMs);
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void wikidata(HttpExchange exchange, long latencyMs) throws Exception {
+        Map<String, String> params = query(exchange);
+        ObjectNode body = MAPPER.createObjectNode();
+
+        if ("wbsearchentities".equals(params.get("action"))) {
+            String search = params.getOrDefault("search", "");
+            ArrayNode hits = body.putArray("search");
+            String id = "Q" + (Math.floorMod(search.hashCode(), 90_000_000) + 10_000_000);
+            labels.put(id, search);
+            hits.addObject().put("id", id).put("label", search).put("description", "stub entity");
+        } else {
+            ObjectNode entities = body.putObject("entities");
+            for (String id : params.getOrDefault("ids", "").split("\\|")) {
+                if (id.isBlank()) continue;
+                String label = labels.getOrDefault(id, id);
+                ObjectNode entity = entities.putObject(id).put("id", id);
+                entity.putObject("labels").putObject("en").put("value", label);
+                entity.putObject("descriptions").putObject("en").put("value", "stub entity");
+                ObjectNode claims = entity.putObject("claims");
+                claims.putArray("P18").addObject().putObject("mainsnak").putObject("datavalue")
+                        .put("value", label.replace(' ', '_') + ".jpg");
+                String instanceOf = label.toLowerCase().contains("hotel") ? "Q27686" : "Q41176";
+                claims.putArray("P31").addObject().putObject("mainsnak").putObject("datavalue")
+                        .putObject("value").put("id", instanceOf);
+            }
+        }
+        Thread.sleep(latencyMs);
+        json(exchange, body);
+    }
+
+    private void wikipedia(HttpExchange exchange, long latencyMs) throws Exception {
+        Map<String, String> params = query(exchange);
+        String titles = params.containsKey("titles") ? params.get("titles") : params.getOrDefault("gsrsearch", "");
+
+        ObjectNode body = MAPPER.createObjectNode();
+        ObjectNode pages = body.putObject("query").putObject("pages");
+        int pageId = 1;
+        for (String title : titles.split("\\|")) {
+            if (title.isBlank()) continue;
+            String file = title.replace(' ', '_') + ".jpg";
+            ObjectNode page = pages.putObject(String.valueOf(pageId)).put("pageid", pageId).put("ns", 0).put("title", title);
+            page.putObject("thumbnail")
+                    .put("source", "https://upload.wikimedia.org/wikipedia/commons/thumb/a/ab/" + file + "/1200px-" + file)
+                    .put("width", 1200).put("height", 800);
+            pageId++;
+        }
+        Thread.sleep(latencyMs);
+        json(exchange, body);
+    }
+
+    /** ================= HELPERS ================= **/
+
+    private static void json(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static boolean isSessionTurn(JsonNode request) {
+        String user = request.path("messages").path(1).path("content").asText("");
+        if (!user.startsWith("{")) return false;
+        try {
+            return MAPPER.readTree(user).has("state");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // {"trip_plan": {...}} -> {...}: has both "hotels" and "itinerary"
+    private static String tripPlanBody(String content) throws IOException {
+        String json = content.substring(content.indexOf('{'), content.lastIndexOf('}') + 1);
+        return MAPPER.writeValueAsString(MAPPER.readTree(json).path("trip_plan"));
+    }
+
+    // /api/ai replies are strict {resp, ui}
+    private static String withoutState(String content) throws IOException {
+        JsonNode reply = MAPPER.readTree(content);
+        if (!(reply instanceof ObjectNode object) || !object.has("state")) return content;
+        return MAPPER.writeValueAsString(object.deepCopy().without("state"));
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String completionContent(Path file, String bundled) throws IOException {
+        JsonNode completion;
+        if (file != null) {
+            completion = MAPPER.readTree(Files.readAllBytes(file));
+        } else {
+            try (InputStream in = StubUpstreams.class.getResourceAsStream(bundled)) {
+                if (in == null) throw new IOException("Missing payload on the classpath: " + bundled);
+                completion = MAPPER.readTree(in);
+            }
+        }
+        String content = completion.path("choices").path(0).path("message").path("content").asText("");
+        if (content.isEmpty()) throw new IOException("No choices[0].message.content in " + (file != null ? file : bundled));
+        return content;
+    }
+}
@@ -2,8 +2,10 @@ package com.example.tripmind;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class TripMindApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,19 @@
+package com.example.tripmind.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class AiExecutorConfig {
+
+    // Long-running AI work (streamed itineraries) runs off the request thread
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService aiTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("ai-task-", 0).factory()
+        );
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.tripmind.config;
+
+import com.example.tripmind.service.ai.ModelProvider;
+import com.example.tripmind.service.ai.OpenAiCompatibleProvider;
+import com.example.tripmind.service.ai.Upstream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Model providers referenced by the routes in {@code app.ai.models.*} ({@code <provider>:<model>}):
+ * {@code groq}, and {@code local} for an OpenAI-compatible server on the side (Ollama, llama.cpp, vLLM),
+ * which stays disabled while {@code app.ai.local.url} is empty.
+ */
+@Configuration
+public class ModelProviderConfig {
+
+    @Bean
+    public ModelProvider groqProvider(@Qualifier("groqUpstream") Upstream groqUpstream,
+                                      @Value("${app.ai.groq.url:https://api.groq.com/openai/v1/chat/completions}") String url,
+                                      @Value("${grok.api.key}") String apiKey) {
+        return new OpenAiCompatibleProvider("groq", groqUpstream, url, apiKey);
+    }
+
+    @Bean
+    public ModelProvider localProvider(@Qualifier("localModelUpstream") Upstream localModelUpstream,
+                                       @Value("${app.ai.local.url:}") String url,
+                                       @Value("${app.ai.local.api-key:}") String apiKey) {
+        return new OpenAiCompatibleProvider("local", localModelUpstream, url, apiKey);
+    }
+}
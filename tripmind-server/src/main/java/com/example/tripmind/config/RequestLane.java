@@ -0,0 +1,134 @@
+package com.example.tripmind.config;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkhead for a group of endpoints: at most {@code maxConcurrent} requests run at once, up to
+ * {@code maxQueued} more wait (holding their Tomcat thread) for at most {@code queueTimeout}, anything
+ * beyond that gets 503 with {@code Retry-After} right away. Async requests (DeferredResult, SSE) keep
+ * their slot until the async cycle completes, so the lane bounds the work in flight, not just threads.
+ */
+public class RequestLane implements AsyncHandlerInterceptor {
+
+    public record Settings(int maxConcurrent, int maxQueued, Duration queueTimeout, Duration retryAfter) {}
+
+    private final String name;
+    private final Settings settings;
+    private final String slotAttribute;
+    private final Semaphore slots;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong rejectedFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    public RequestLane(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.slotAttribute = RequestLane.class.getName() + "." + name;
+        this.slots = new Semaphore(Math.max(1, settings.maxConcurrent()));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // async / error dispatches of a request that is already in the lane
+        if (request.getDispatcherType() != DispatcherType.REQUEST || request.getAttribute(slotAttribute) != null) {
+            return true;
+        }
+        if (!acquire()) {
+            throw new ServiceUnavailableException("Server busy (" + name + "), try again shortly", settings.retryAfter());
+        }
+        admitted.incrementAndGet();
+        request.setAttribute(slotAttribute, new AtomicBoolean(true));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(request.getAttribute(slotAttribute) instanceof AtomicBoolean slot)) return;
+        // onComplete also fires after async errors and timeouts
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                release(slot);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!request.isAsyncStarted() && request.getAttribute(slotAttribute) instanceof AtomicBoolean slot) {
+            release(slot);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", settings.maxConcurrent());
+        stats.put("maxQueued", settings.maxQueued());
+        stats.put("active", settings.maxConcurrent() - slots.availablePermits());
+        stats.put("queued", queued.get());
+        stats.put("admitted", admitted.get());
+        stats.put("waited", waited.get());
+        stats.put("rejectedFull", rejectedFull.get());
+        stats.put("rejectedTimeout", rejectedTimeout.get());
+        return stats;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private boolean acquire() {
+        if (slots.tryAcquire()) return true;
+        if (queued.incrementAndGet() > settings.maxQueued()) {
+            queued.decrementAndGet();
+            rejectedFull.incrementAndGet();
+            return false;
+        }
+        waited.incrementAndGet();
+        try {
+            if (slots.tryAcquire(settings.queueTimeout().toMillis(), TimeUnit.MILLISECONDS)) return true;
+            rejectedTimeout.incrementAndGet();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    // once per request, whichever of afterCompletion / async onComplete gets here first
+    private void release(AtomicBoolean slot) {
+        if (slot.compareAndSet(true, false)) slots.release();
+    }
+}
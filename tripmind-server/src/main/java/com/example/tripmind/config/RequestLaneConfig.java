@@ -0,0 +1,58 @@
+package com.example.tripmind.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Bulkheads between the AI endpoints ({@code AiController}: chat, sessions, itinerary builds, streams,
+ * long polls) and everything else, so slow Groq / Wikimedia calls cannot take all of Tomcat's threads
+ * from trips, itineraries, users and login. Each lane is configured under {@code app.lanes.<lane>.*}
+ * (max-concurrent, max-queued, queue-timeout, retry-after); queued requests hold a thread, so
+ * the concurrent + queued totals of both lanes should fit in {@code server.tomcat.threads.max}.
+ */
+@Configuration
+public class RequestLaneConfig implements WebMvcConfigurer {
+
+    private static final String[] AI_PATHS = {"/api/ai", "/api/ai/**"};
+
+    private final Environment env;
+    private final boolean enabled;
+
+    public RequestLaneConfig(Environment env, @Value("${app.lanes.enabled:true}") boolean enabled) {
+        this.env = env;
+        this.enabled = enabled;
+    }
+
+    @Bean
+    public RequestLane aiLane() {
+        return lane("ai", 32, 32, Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @Bean
+    public RequestLane standardLane() {
+        return lane("standard", 120, 16, Duration.ofSeconds(5), Duration.ofSeconds(1));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled) return;
+        registry.addInterceptor(aiLane()).addPathPatterns(AI_PATHS);
+        registry.addInterceptor(standardLane()).addPathPatterns("/api/**").excludePathPatterns(AI_PATHS);
+    }
+
+    private RequestLane lane(String name, int maxConcurrent, int maxQueued, Duration queueTimeout, Duration retryAfter) {
+        String prefix = "app.lanes." + name + ".";
+        return new RequestLane(name, new RequestLane.Settings(
+                env.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                env.getProperty(prefix + "max-queued", Integer.class, maxQueued),
+                env.getProperty(prefix + "queue-timeout", Duration.class, queueTimeout),
+                env.getProperty(prefix + "retry-after", Duration.class, retryAfter)
+        ));
+    }
+}
@@ -36,6 +36,11 @@ public class SecurityConfig {
                                 "/api/auth/login",
                                 "/api/ai",
                                 "/api/ai/itinerary",
+                                "/api/ai/itinerary/stream",
+                                "/api/ai/itinerary/jobs/**",
+                                "/api/ai/itinerary/images/**",
+                                "/api/ai/session",
+                                "/api/ai/session/**",
                                 "/api/public/**",
                                 "/actuator/health"
                         ).permitAll()
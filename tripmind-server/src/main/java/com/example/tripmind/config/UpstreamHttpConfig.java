@@ -0,0 +1,102 @@
+package com.example.tripmind.config;
+
+import com.example.tripmind.service.ai.GroqRequestScheduler;
+import com.example.tripmind.service.ai.Upstream;
+import com.example.tripmind.service.ai.UpstreamGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outbound HTTP clients, one per upstream, configured under {@code app.ai.http.<upstream>.*}
+ * (connect-timeout, read-timeout, max-concurrent, acquire-timeout, max-attempts, base-backoff,
+ * max-backoff, retry-budget-ratio, failure-threshold, open-duration, warmup-url).
+ */
+@Configuration
+public class UpstreamHttpConfig {
+
+    @Bean
+    public Upstream groqUpstream(RestClient.Builder builder, Environment env, GroqRequestScheduler scheduler) {
+        // one slow generation per call: long read timeout, a single retry. Quota admission runs before the
+        // guard takes a slot; guard retries (429s included) go through the scheduler again
+        return upstream("groq", builder.requestInterceptor(scheduler), env, Duration.ofSeconds(5), Duration.ofSeconds(90),
+                32, 2, Duration.ofMillis(500), Duration.ofSeconds(4), 0.1, 5, Duration.ofSeconds(30),
+                "https://api.groq.com/", scheduler.attempts());
+    }
+
+    @Bean
+    public Upstream wikidataUpstream(RestClient.Builder builder, Environment env) {
+        return upstream("wikidata", builder, env, Duration.ofSeconds(3), Duration.ofSeconds(8),
+                16, 3, Duration.ofMillis(200), Duration.ofSeconds(2), 0.2, 8, Duration.ofSeconds(20),
+                "https://www.wikidata.org/");
+    }
+
+    @Bean
+    public Upstream wikipediaUpstream(RestClient.Builder builder, Environment env) {
+        return upstream("wikipedia", builder, env, Duration.ofSeconds(3), Duration.ofSeconds(8),
+                16, 3, Duration.ofMillis(200), Duration.ofSeconds(2), 0.2, 8, Duration.ofSeconds(20),
+                "https://en.wikipedia.org/");
+    }
+
+    // image proxy source: Special:FilePath redirects to upload.wikimedia.org, followed by the client
+    @Bean
+    public Upstream commonsUpstream(RestClient.Builder builder, Environment env) {
+        return upstream("commons", builder, env, Duration.ofSeconds(3), Duration.ofSeconds(15),
+                16, 2, Duration.ofMillis(300), Duration.ofSeconds(2), 0.2, 8, Duration.ofSeconds(20),
+                "https://commons.wikimedia.org/");
+    }
+
+    // OpenAI-compatible local model server (app.ai.local.url): slow on CPU, so one try and a long read timeout
+    @Bean
+    public Upstream localModelUpstream(RestClient.Builder builder, Environment env) {
+        return upstream("local", builder, env, Duration.ofSeconds(2), Duration.ofSeconds(180),
+                4, 1, Duration.ofMillis(200), Duration.ofSeconds(1), 0.1, 3, Duration.ofSeconds(30),
+                "");
+    }
+
+    // Pre-open connections in the background once the app is up, so the first user request skips the TLS handshake
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> upstreamWarmup(
+            List<Upstream> upstreams,
+            @Value("${app.ai.http.prewarm:true}") boolean prewarm) {
+        return event -> {
+            if (prewarm) upstreams.forEach(Upstream::warmUp);
+        };
+    }
+
+    private static Upstream upstream(String name, RestClient.Builder builder, Environment env,
+                                     Duration connectTimeout, Duration readTimeout,
+                                     int maxConcurrent, int maxAttempts,
+                                     Duration baseBackoff, Duration maxBackoff, double retryBudgetRatio,
+                                     int failureThreshold, Duration openDuration, String warmupUrl,
+                                     ClientHttpRequestInterceptor... perAttempt) {
+        String prefix = "app.ai.http." + name + ".";
+
+        UpstreamGuard.Settings guard = new UpstreamGuard.Settings(
+                env.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                env.getProperty(prefix + "acquire-timeout", Duration.class, Duration.ofSeconds(2)),
+                env.getProperty(prefix + "max-attempts", Integer.class, maxAttempts),
+                env.getProperty(prefix + "base-backoff", Duration.class, baseBackoff),
+                env.getProperty(prefix + "max-backoff", Duration.class, maxBackoff),
+                env.getProperty(prefix + "retry-budget-ratio", Double.class, retryBudgetRatio),
+                env.getProperty(prefix + "failure-threshold", Integer.class, failureThreshold),
+                env.getProperty(prefix + "open-duration", Duration.class, openDuration)
+        );
+
+        Upstream.Settings settings = new Upstream.Settings(
+                env.getProperty(prefix + "connect-timeout", Duration.class, connectTimeout),
+                env.getProperty(prefix + "read-timeout", Duration.class, readTimeout),
+                env.getProperty(prefix + "warmup-url", warmupUrl),
+                guard
+        );
+        return new Upstream(name, settings, builder, List.of(perAttempt));
+    }
+}
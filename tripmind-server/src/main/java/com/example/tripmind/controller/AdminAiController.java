@@ -0,0 +1,156 @@
+package com.example.tripmind.controller;
+
+import com.example.tripmind.config.RequestLane;
+import com.example.tripmind.service.AiService;
+import com.example.tripmind.service.ImageProxyService;
+import com.example.tripmind.service.ItineraryJobService;
+import com.example.tripmind.service.ItineraryJobWorker;
+import com.example.tripmind.service.ai.GroqRequestScheduler;
+import com.example.tripmind.service.ai.ImageEnrichmentTracker;
+import com.example.tripmind.service.ai.ImageResolutionCache;
+import com.example.tripmind.service.ai.ItineraryContinuation;
+import com.example.tripmind.service.ai.ItineraryResultCache;
+import com.example.tripmind.service.ai.ModelRouter;
+import com.example.tripmind.service.ai.ParallelItineraryGenerator;
+import com.example.tripmind.service.ai.RequestHedger;
+import com.example.tripmind.service.ai.Upstream;
+import com.example.tripmind.service.ai.WikidataLocalIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/ai")
+@RequiredArgsConstructor
+public class AdminAiController {
+
+    private final AiService aiService;
+    private final ImageResolutionCache imageResolutionCache;
+    private final ItineraryResultCache itineraryResultCache;
+    private final ItineraryJobService itineraryJobService;
+    private final ItineraryJobWorker itineraryJobWorker;
+    private final List<Upstream> upstreams;
+    private final List<RequestLane> requestLanes;
+    private final GroqRequestScheduler groqRequestScheduler;
+    private final ImageEnrichmentTracker imageEnrichmentTracker;
+    private final ImageProxyService imageProxyService;
+    private final WikidataLocalIndex wikidataLocalIndex;
+    private final ModelRouter modelRouter;
+    private final ParallelItineraryGenerator parallelItineraryGenerator;
+    private final ItineraryContinuation itineraryContinuation;
+    private final RequestHedger requestHedger;
+
+    @GetMapping("/image-cache")
+    public Map<String, Object> imageCacheStats() {
+        return imageResolutionCache.stats();
+    }
+
+    @GetMapping("/itinerary-cache")
+    public Map<String, Object> itineraryCacheStats() {
+        return itineraryResultCache.stats();
+    }
+
+    @GetMapping("/coalescing")
+    public Map<String, Object> coalescingStats() {
+        return aiService.coalescingStats();
+    }
+
+    // queue depth across all nodes + this node's workers
+    @GetMapping("/jobs")
+    public Map<String, Object> jobStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queue", itineraryJobService.stats());
+        stats.put("worker", itineraryJobWorker.stats());
+        return stats;
+    }
+
+    // per-upstream breaker state, retries, in-flight calls
+    @GetMapping("/upstreams")
+    public Map<String, Object> upstreamStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Upstream upstream : upstreams) {
+            stats.put(upstream.name(), upstream.stats());
+        }
+        return stats;
+    }
+
+    // request bulkheads (AI endpoints vs. the rest): active, queued, admitted, 503s when full / after waiting
+    @GetMapping("/lanes")
+    public Map<String, Object> laneStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (RequestLane lane : requestLanes) {
+            stats.put(lane.name(), lane.stats());
+        }
+        return stats;
+    }
+
+    // fast-path vs. model chat turns, live sessions
+    @GetMapping("/chat")
+    public Map<String, Object> chatStats() {
+        return aiService.chatStats();
+    }
+
+    // Groq quota pacing: bucket levels, queued chat/build calls, waits
+    @GetMapping("/groq-quota")
+    public Map<String, Object> groqQuotaStats() {
+        return groqRequestScheduler.stats();
+    }
+
+    // deferred image enrichment: pending/finished, merged on save
+    @GetMapping("/deferred-images")
+    public Map<String, Object> deferredImageStats() {
+        return imageEnrichmentTracker.stats();
+    }
+
+    // image proxy: on-disk variants, hits/misses, evictions
+    @GetMapping("/image-proxy")
+    public Map<String, Object> imageProxyStats() {
+        return imageProxyService.stats();
+    }
+
+    // model routes: per use case and model, state (ok / slow / cooling-down), latency EWMA, error rate
+    @GetMapping("/models")
+    public Map<String, Object> modelStats() {
+        return modelRouter.stats();
+    }
+
+    // parallel itinerary generation: plans, sub-requests, retries, fallbacks, hotel cache
+    @GetMapping("/fanout")
+    public Map<String, Object> fanoutStats() {
+        return parallelItineraryGenerator.stats();
+    }
+
+    // itineraries cut off at max_tokens: continuation requests, recovered vs. still incomplete
+    @GetMapping("/continuations")
+    public Map<String, Object> continuationStats() {
+        return itineraryContinuation.stats();
+    }
+
+    // hedged chat calls: current delay, hedges fired / won, budget denials, observed p50/p95/p99
+    @GetMapping("/hedging")
+    public Map<String, Object> hedgingStats() {
+        return requestHedger.stats();
+    }
+
+    // work stopped because the client went away: disconnects, builds / streams / model calls / image runs cancelled
+    @GetMapping("/cancellations")
+    public Map<String, Object> cancellationStats() {
+        return aiService.cancellationStats();
+    }
+
+    // offline Wikidata index: load state, size, lookups answered locally vs. sent to Wikidata
+    @GetMapping("/wikidata-index")
+    public Map<String, Object> wikidataIndexStats() {
+        return wikidataLocalIndex.stats();
+    }
+
+    // DELETE /api/admin/ai/itinerary-cache?destination=Istanbul  (no destination = everything)
+    @DeleteMapping("/itinerary-cache")
+    public Map<String, Object> invalidateItineraryCache(@RequestParam(required = false) String destination) {
+        int removed = itineraryResultCache.invalidate(destination);
+        return Map.of("removed", removed);
+    }
+}
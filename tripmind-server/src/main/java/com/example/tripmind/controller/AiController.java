@@ -2,27 +2,99 @@ package com.example.tripmind.controller;
 
 import com.example.tripmind.dto.ai.ChatDtos.AgentReply;
 import com.example.tripmind.dto.ai.ChatDtos.ChatRequest;
+import com.example.tripmind.dto.ai.ChatDtos.SessionMessage;
+import com.example.tripmind.dto.ai.ChatDtos.SessionReply;
+import com.example.tripmind.dto.ai.ChatDtos.SessionView;
 import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.example.tripmind.dto.ai.ItineraryJobDtos.ItineraryJobResponse;
 import com.example.tripmind.service.AiService;
+import com.example.tripmind.service.ItineraryJobService;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class AiController {
 
+    // Long polls stay under the load balancer's 30s idle timeout
+    private static final long MAX_WAIT_MS = 25_000;
+
     private final AiService aiService;
+    private final ItineraryJobService itineraryJobService;
 
     @PostMapping("/ai")
     public ResponseEntity<AgentReply> chat(@RequestBody ChatRequest request) {
         return ResponseEntity.ok(aiService.chat(request));
     }
 
+    // Session chat: send { sessionId, message }; the server keeps the transcript and collected slots
+    @PostMapping("/ai/session")
+    public ResponseEntity<SessionReply> chatInSession(@RequestBody SessionMessage request) {
+        return ResponseEntity.ok(aiService.chatInSession(request));
+    }
+
+    @GetMapping("/ai/session/{sessionId}")
+    public ResponseEntity<SessionView> getSession(@PathVariable String sessionId) {
+        return ResponseEntity.ok(aiService.getSession(sessionId));
+    }
+
+    @DeleteMapping("/ai/session/{sessionId}")
+    public ResponseEntity<Void> endSession(@PathVariable String sessionId) {
+        aiService.endSession(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // ?deferImages=true: respond before image enrichment; trip_plan.image_enrichment_id points at the images
+    // async: when the container reports the client gone (error / timeout), the build is cancelled
     @PostMapping("/ai/itinerary")
-    public ResponseEntity<JsonNode> buildItinerary(@RequestBody FinalPlanInput input) {
-        return ResponseEntity.ok(aiService.buildItinerary(input));
+    public DeferredResult<JsonNode> buildItinerary(
+            @RequestBody FinalPlanInput input,
+            @RequestParam(defaultValue = "false") boolean deferImages) {
+        return aiService.buildItineraryForClient(input, deferImages);
+    }
+
+    // GET /api/ai/itinerary/images/{id}?waitMs=10000  (image patch by hotel / day+activity index)
+    @GetMapping("/ai/itinerary/images/{id}")
+    public ResponseEntity<JsonNode> getImagePatch(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        long wait = Math.min(Math.max(waitMs, 0), MAX_WAIT_MS);
+        return ResponseEntity.ok(aiService.imagePatch(id, Duration.ofMillis(wait)));
+    }
+
+    @GetMapping(value = "/ai/itinerary/images/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamImagePatch(@PathVariable String id) {
+        return aiService.streamImages(id);
+    }
+
+    @PostMapping(value = "/ai/itinerary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamItinerary(@RequestBody FinalPlanInput input) {
+        return aiService.streamItinerary(input);
+    }
+
+    // Queue the build and return the job id right away; any node's workers pick it up
+    @PostMapping("/ai/itinerary/jobs")
+    public ResponseEntity<ItineraryJobResponse> submitItineraryJob(@RequestBody FinalPlanInput input) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(itineraryJobService.submit(input));
+    }
+
+    // GET /api/ai/itinerary/jobs/{id}?waitMs=20000  (waitMs > 0 = long poll until finished)
+    @GetMapping("/ai/itinerary/jobs/{id}")
+    public ResponseEntity<ItineraryJobResponse> getItineraryJob(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        if (waitMs <= 0) return ResponseEntity.ok(itineraryJobService.get(id));
+        long wait = Math.min(waitMs, MAX_WAIT_MS);
+        return ResponseEntity.ok(itineraryJobService.await(id, Duration.ofMillis(wait)));
     }
 }
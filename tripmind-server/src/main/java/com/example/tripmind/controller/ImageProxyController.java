@@ -0,0 +1,48 @@
+package com.example.tripmind.controller;
+
+import com.example.tripmind.service.ImageProxyService;
+import com.example.tripmind.service.image.ImageDiskCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/public/images")
+@RequiredArgsConstructor
+public class ImageProxyController {
+
+    // a file name + width always maps to the same bytes
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final ImageProxyService imageProxyService;
+
+    // GET /api/public/images/commons/Hagia_Sophia.jpg?w=320  (w: one of 320 / 640 / 1200, default the widest)
+    @GetMapping("/commons/{file:.+}")
+    public ResponseEntity<Resource> commonsImage(
+            @PathVariable String file,
+            @RequestParam(defaultValue = "0") int w,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ImageDiskCache.Image image = imageProxyService.variant(file, w);
+        ImageDiskCache.Entry entry = image.entry();
+
+        if (ifNoneMatch != null && (ifNoneMatch.contains(entry.etag()) || ifNoneMatch.trim().equals("*"))) {
+            image.close();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).cacheControl(IMMUTABLE).build();
+        }
+        // the stream was opened before any eviction could delete the file; the converter closes it
+        return ResponseEntity.ok()
+                .eTag(entry.etag())
+                .cacheControl(IMMUTABLE)
+                .contentType(MediaType.parseMediaType(entry.contentType()))
+                .contentLength(entry.size())
+                .body(new InputStreamResource(image.body()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.tripmind.dto.ai;
 
 import java.util.List;
+import java.util.Map;
 
 public class ChatDtos {
 
@@ -18,4 +19,24 @@ public class ChatDtos {
         public String resp;
         public String ui;
     }
+
+    /** One turn of a server-side session: the client sends only its new message. */
+    public static class SessionMessage {
+        public String sessionId;   // null/unknown/expired -> a new session is started
+        public String message;
+    }
+
+    public static class SessionReply {
+        public String sessionId;
+        public String resp;
+        public String ui;
+        public Map<String, Object> state;  // slots collected so far (FinalPlanInput field names)
+    }
+
+    public static class SessionView {
+        public String sessionId;
+        public String ui;
+        public Map<String, Object> state;
+        public List<Msg> messages;
+    }
 }
@@ -0,0 +1,23 @@
+package com.example.tripmind.dto.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class ItineraryJobDtos {
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class ItineraryJobResponse {
+        private UUID id;
+        private String status;     // QUEUED | RUNNING | SUCCEEDED | FAILED
+        private int attempts;
+        private JsonNode result;   // trip_plan JSON once SUCCEEDED
+        private String error;      // set once FAILED
+        private OffsetDateTime createdAt;
+        private OffsetDateTime finishedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.tripmind.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+public class ServiceUnavailableException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public ServiceUnavailableException(String message) {
+        this(message, null);
+    }
+
+    // retryAfter: sent as the Retry-After header (whole seconds)
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message);
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        if (retryAfter == null) return HttpHeaders.EMPTY;
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        return headers;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tripmind.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "image_cache_entries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageCacheEntry {
+
+    // "img:<place>|<destination>|<hotel|place>" or "wd:<Q-id>"
+    @Id
+    @Column(name = "cache_key", length = 512)
+    private String cacheKey;
+
+    // image URL, or Wikidata entity JSON; null means "looked up, nothing found"
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    @Column(name = "stored_at", nullable = false)
+    private OffsetDateTime storedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        storedAt = OffsetDateTime.now();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.tripmind.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(
+        name = "itinerary_jobs",
+        indexes = @Index(name = "idx_itinerary_jobs_claim", columnList = "status, run_after")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItineraryJob {
+
+    @Id
+    @UuidGenerator
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ItineraryJobStatus status;
+
+    // FinalPlanInput as submitted
+    @Column(name = "input_json", columnDefinition = "text", nullable = false)
+    private String inputJson;
+
+    @Column(name = "result_json", columnDefinition = "text")
+    private String resultJson;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // node currently running the job; its claim is valid until lease_until
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "lease_until")
+    private OffsetDateTime leaseUntil;
+
+    // earliest time a queued job may be claimed (retry backoff)
+    @Column(name = "run_after", nullable = false)
+    private OffsetDateTime runAfter;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = OffsetDateTime.now();
+        updatedAt = createdAt;
+        if (status == null) {
+            status = ItineraryJobStatus.QUEUED;
+        }
+        if (runAfter == null) {
+            runAfter = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = OffsetDateTime.now();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.tripmind.model;
+
+public enum ItineraryJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
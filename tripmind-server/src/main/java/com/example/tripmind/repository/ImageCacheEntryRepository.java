@@ -0,0 +1,18 @@
+package com.example.tripmind.repository;
+
+import com.example.tripmind.model.ImageCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+
+public interface ImageCacheEntryRepository extends JpaRepository<ImageCacheEntry, String> {
+
+    @Modifying
+    @Transactional
+    @Query("delete from ImageCacheEntry e where e.expiresAt < :now")
+    int deleteExpired(@Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,46 @@
+package com.example.tripmind.repository;
+
+import com.example.tripmind.model.ItineraryJob;
+import com.example.tripmind.model.ItineraryJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface ItineraryJobRepository extends JpaRepository<ItineraryJob, UUID> {
+
+    // Due queued jobs plus running jobs whose owner stopped renewing its lease.
+    // SKIP LOCKED lets every node poll the same table without blocking on rows another node is claiming.
+    @Query(value = """
+            select * from itinerary_jobs
+            where (status = 'QUEUED' and run_after <= :now)
+               or (status = 'RUNNING' and lease_until < :now)
+            order by created_at
+            limit :limit
+            for update skip locked
+            """, nativeQuery = true)
+    List<ItineraryJob> lockClaimable(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    // Lease renewal by the owner; 0 rows = the lease expired and another node has the job (or it finished)
+    @Modifying
+    @Query("""
+            update ItineraryJob j set j.leaseUntil = :until
+            where j.id = :id and j.lockedBy = :owner
+              and j.status = com.example.tripmind.model.ItineraryJobStatus.RUNNING
+            """)
+    int renewLease(@Param("id") UUID id, @Param("owner") String owner, @Param("until") OffsetDateTime until);
+
+    List<ItineraryJob> findAllByStatusAndLockedBy(ItineraryJobStatus status, String lockedBy);
+
+    long countByStatus(ItineraryJobStatus status);
+
+    @Modifying
+    @Query("delete from ItineraryJob j where j.status in :statuses and j.finishedAt < :before")
+    int deleteFinishedBefore(@Param("statuses") Collection<ItineraryJobStatus> statuses,
+                             @Param("before") OffsetDateTime before);
+}
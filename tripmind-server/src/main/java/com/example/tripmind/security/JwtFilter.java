@@ -30,6 +30,10 @@ public class JwtFilter extends OncePerRequestFilter {
             "/api/auth/login",
             "/api/ai/chat",
             "/api/ai/itinerary",
+            "/api/ai/itinerary/stream",
+            "/api/ai/itinerary/jobs/**",
+            "/api/ai/session",
+            "/api/ai/session/**",
             "/api/public/**",
             "/actuator/health"
     );
@@ -2,67 +2,110 @@ package com.example.tripmind.service;
 
 import com.example.tripmind.dto.ai.ChatDtos.AgentReply;
 import com.example.tripmind.dto.ai.ChatDtos.ChatRequest;
+import com.example.tripmind.dto.ai.ChatDtos.Msg;
+import com.example.tripmind.dto.ai.ChatDtos.SessionMessage;
+import com.example.tripmind.dto.ai.ChatDtos.SessionReply;
+import com.example.tripmind.dto.ai.ChatDtos.SessionView;
 import com.example.tripmind.dto.ai.FinalPlanInput;
 import com.example.tripmind.exception.BadRequestException;
+import com.example.tripmind.exception.ResourceNotFoundException;
+import com.example.tripmind.service.ai.ChatRequestKey;
+import com.example.tripmind.service.ai.ChatSession;
+import com.example.tripmind.service.ai.ChatSessionStore;
+import com.example.tripmind.service.ai.CompactPlanSchema;
+import com.example.tripmind.service.ai.ImageEnrichmentTracker;
+import com.example.tripmind.service.ai.ItineraryContinuation;
+import com.example.tripmind.service.ai.ItineraryResultCache;
+import com.example.tripmind.service.ai.ItineraryStreamParser;
+import com.example.tripmind.service.ai.ModelRouter;
+import com.example.tripmind.service.ai.ModelRouter.UseCase;
+import com.example.tripmind.service.ai.ParallelItineraryGenerator;
+import com.example.tripmind.service.ai.PlanInputKey;
+import com.example.tripmind.service.ai.PlannerFastPath;
+import com.example.tripmind.service.ai.PlannerFastPath.Answer;
+import com.example.tripmind.service.ai.PlannerFastPath.Slot;
+import com.example.tripmind.service.ai.RequestHedger;
+import com.example.tripmind.service.ai.SingleFlight;
+import com.example.tripmind.service.ai.StreamHeartbeat;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AiService {
 
     private static final Logger log = LoggerFactory.getLogger(AiService.class);
 
-    private final RestClient restClient;
+    private final ModelRouter modelRouter;
+    private final ParallelItineraryGenerator parallelItineraryGenerator;
+    private final ItineraryContinuation itineraryContinuation;
+    private final RequestHedger requestHedger;
+    private final StreamHeartbeat streamHeartbeat;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService aiTaskExecutor;
+    private final ImageEnrichmentService imageEnrichmentService;
+    private final ItineraryResultCache itineraryResultCache;
+    private final ChatSessionStore chatSessionStore;
+    private final ImageEnrichmentTracker imageEnrichmentTracker;
+
+    // Identical concurrent requests share one upstream call (and one enrichment pass)
+    private final SingleFlight<ChatRequestKey, AgentReply> chatFlights = new SingleFlight<>();
+    private final SingleFlight<PlanInputKey, JsonNode> itineraryFlights = new SingleFlight<>();
+    private final SingleFlight<PlanInputKey, JsonNode> draftFlights = new SingleFlight<>();
+
+    // chat turns answered locally (PlannerFastPath) vs. by the model
+    private final AtomicLong fastPathReplies = new AtomicLong();
+    private final AtomicLong modelReplies = new AtomicLong();
+
+    // itinerary clients that went away before their answer, and streams stopped because of it
+    private final AtomicLong clientDisconnects = new AtomicLong();
+    private final AtomicLong streamsCancelled = new AtomicLong();
+
+    @Value("${app.ai.stream-timeout-ms:120000}")
+    private long streamTimeoutMs;
+
+    public AiService(ModelRouter modelRouter,
+                     ParallelItineraryGenerator parallelItineraryGenerator,
+                     ItineraryContinuation itineraryContinuation,
+                     RequestHedger requestHedger,
+                     StreamHeartbeat streamHeartbeat,
+                     @Qualifier("aiTaskExecutor") ExecutorService aiTaskExecutor,
+                     ImageEnrichmentService imageEnrichmentService,
+                     ItineraryResultCache itineraryResultCache,
+                     ChatSessionStore chatSessionStore,
+                     ImageEnrichmentTracker imageEnrichmentTracker) {
+        this.modelRouter = modelRouter;
+        this.parallelItineraryGenerator = parallelItineraryGenerator;
+        this.itineraryContinuation = itineraryContinuation;
+        this.requestHedger = requestHedger;
+        this.streamHeartbeat = streamHeartbeat;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.imageEnrichmentService = imageEnrichmentService;
+        this.itineraryResultCache = itineraryResultCache;
+        this.chatSessionStore = chatSessionStore;
+        this.imageEnrichmentTracker = imageEnrichmentTracker;
+    }
 
-    @Value("${grok.api.key}")
-    private String groqKey;
-
-    public AiService(RestClient.Builder restClientBuilder) {
-        this.restClient = restClientBuilder.build();
-    }
-
-    private static final String GROQ_MODEL = "llama-3.3-70b-versatile";
-    private static final String GROQ_URL = "https://api.groq.com/openai/v1/chat/completions";
-
-    private static final Set<String> HOTEL_INSTANCE_OF = Set.of(
-            "Q27686",   // hotel
-            "Q675196",  // hostel
-            "Q875157",  // resort
-            "Q217175",  // inn
-            "Q24127145" // boutique hotel
-    );
-
-    private static final Set<String> ATTRACTION_INSTANCE_OF = Set.of(
-            "Q41176",   // building
-            "Q23413",   // castle
-            "Q16560",   // palace
-            "Q33506",   // museum
-            "Q16970",   // church
-            "Q2977",    // cathedral
-            "Q163577",  // basilica
-            "Q12280",   // bridge
-            "Q4989906", // monument
-            "Q22698",   // park
-            "Q174782",  // square
-            "Q11032",   // zoo
-            "Q811979"   // historical landmark
-    );
-
-    private static final Set<String> DISALLOWED_INSTANCE_OF = Set.of(
-            "Q5" // human
-    );
 
     private static final String PROMPT = """
       You are TripMind’s Trip Planner Agent. Your job is to plan a trip by asking exactly one relevant question at a time and updating the conversation state. Always wait for the user’s reply before asking the next question.
@@ -101,6 +144,26 @@ public class AiService {
       }
     """;
 
+    // Session turns: the server holds the transcript, so the model only sees collected state + the last exchange
+    private static final String SESSION_PROMPT = """
+      You are TripMind’s Trip Planner Agent. Collect these fields in order, one question per turn:
+      source (starting city/country), destination (city/country), groupSize (Solo|Couple|Family|Friends),
+      budget (Low|Medium|High), tripDurationDays (integer number of days), interests (zero or more of
+      Adventure|Sightseeing|Cultural|Food|Nightlife|Relaxation), specialReq (free text, optional).
+
+      Input: {"state": fields collected so far, "assistant": your previous message, "user": the user's reply}
+
+      Rules:
+      - Put whatever the reply answers into state; keep existing values unless the user changes them.
+      - Then ask only about the next missing field. If the reply is unclear, ask a short clarifying question.
+      - Be concise, friendly, and conversational.
+      - When every field is collected (specialReq may be "none"), reply with ONE sentence summarizing the trip,
+        set ui to "final" and ask nothing else.
+
+      Output only one JSON object:
+      {"resp": "text", "ui": "source|destination|groupSize|budget|tripDuration|interests|specialReq|final", "state": { collected fields }}
+    """;
+
     private static final String FINAL_PROMPT = """
       You are TripMind’s itinerary builder. Generate a complete trip plan strictly as valid JSON.
 
@@ -117,60 +180,31 @@ public class AiService {
 
       Requirements:
       - Output ONLY JSON (no markdown fences, no prose).
-      - Use the schema below.
+      - Use the compact schema below.
       - Include 4–8 hotel options fitting the destination and budget if possible.
       - Build a day-by-day itinerary covering the entire tripDurationDays.
       - For each activity, include succinct practical details (address/coords; pricing if relevant; typical visit time).
-      - Keep times/durations realistic. Use ISO-like numeric values for coords (not strings).
+      - Keep times/durations realistic.
       - If you are unsure about pricing, use a short human-readable estimate (e.g., "$10–15") rather than "unknown".
-      - IMPORTANT: For images, set hotel_image_url and place_image_url to null (do NOT invent URLs). Backend will enrich.
+    """ + CompactPlanSchema.RULES + """
 
       Output schema:
-      {
-        "trip_plan": {
-          "origin": "string",
-          "destination": "string",
-          "duration_days": number,
-          "budget": "Low|Medium|High",
-          "group_size": "Solo|Couple|Family|Friends",
-          "interests": [ "string" ],
-          "special_requirements": "string|null",
-          "hotels": [
-            {
-              "hotel_name": "string",
-              "hotel_address": "string",
-              "price_per_night": "string",
-              "hotel_image_url": null,
-              "geo_coordinates": { "latitude": number, "longitude": number },
-              "rating": number,
-              "description": "string"
-            }
-          ],
-          "itinerary": [
-            {
-              "day": number,
-              "day_plan": "string",
-              "best_time_to_visit_day": "string",
-              "activities": [
-                {
-                  "place_name": "string",
-                  "place_details": "string",
-                  "place_image_url": null,
-                  "geo_coordinates": { "latitude": number, "longitude": number },
-                  "place_address": "string",
-                  "ticket_pricing": "string",
-                  "time_travel_each_location": "string",
-                  "best_time_to_visit": "string"
-                }
-              ]
-            }
-          ]
-        }
-      }
-    """;
+      { "hotels": [HOTEL], "days": [DAY] }
+    """ + CompactPlanSchema.HOTEL_SCHEMA + CompactPlanSchema.DAY_SCHEMA;
 
     /** CHAT AGENT **/
     public AgentReply chat(ChatRequest request) {
+        AgentReply quick = fastPathReply(request);
+        if (quick != null) {
+            fastPathReplies.incrementAndGet();
+            return quick;
+        }
+
+        modelReplies.incrementAndGet();
+        return chatFlights.execute(ChatRequestKey.of(request), () -> generateChatReply(request), AiService::copyReply);
+    }
+
+    private AgentReply generateChatReply(ChatRequest request) {
         try {
             StringBuilder conversation = new StringBuilder();
             if (request.messages != null && !request.messages.isEmpty()) {
@@ -185,7 +219,6 @@ public class AiService {
             }
 
             Map<String, Object> requestBody = Map.of(
-                    "model", GROQ_MODEL,
                     "messages", List.of(
                             Map.of("role", "system", "content", PROMPT),
                             Map.of("role", "user", "content", conversation.toString())
@@ -194,10 +227,8 @@ public class AiService {
                     "max_tokens", 512
             );
 
-            String rawResponse = callGroq(requestBody);
-            String jsonResponse = extractBalancedJson(rawResponse);
-
-            return objectMapper.readValue(jsonResponse, AgentReply.class);
+            JsonNode reply = requestHedger.call(() -> modelRouter.complete(UseCase.CHAT, requestBody, request.model));
+            return objectMapper.treeToValue(reply, AgentReply.class);
 
         } catch (Exception e) {
             log.warn("Chat agent failed", e);
@@ -208,696 +239,457 @@ public class AiService {
         }
     }
 
-    /** FINAL ITINERARY **/
-    public JsonNode buildItinerary(FinalPlanInput input) {
-        try {
-            String userState = objectMapper.writeValueAsString(input);
-
-            Map<String, Object> requestBody = Map.of(
-                    "model", GROQ_MODEL,
-                    "messages", List.of(
-                            Map.of("role", "system", "content", FINAL_PROMPT),
-                            Map.of("role", "user", "content", userState)
-                    ),
-                    "temperature", 0.25,
-                    "max_tokens", 8000
-            );
-
-            String rawResponse = callGroq(requestBody);
-            String jsonResponse = extractBalancedJson(rawResponse);
-
-            JsonNode root = objectMapper.readTree(jsonResponse);
-
-            // ✅ DO NOT swallow silently — log the reason (otherwise you always get null and no clue why)
-            try {
-                enrichPlanImages(root);
-            } catch (Exception e) {
-                log.warn("Image enrichment failed (keeping plan without images)", e);
-            }
-
-            return root;
-
-        } catch (Exception e) {
-            String msg = e.getMessage();
-            if (msg == null || msg.isBlank()) {
-                msg = e.getClass().getSimpleName();
+    /**
+     * Stateless turn without the model: the opening greeting, or an enumerated answer to the question
+     * the last assistant message asked. Returns null when the model is needed.
+     */
+    private AgentReply fastPathReply(ChatRequest request) {
+        List<Msg> messages = new ArrayList<>();
+        if (request.messages != null) {
+            for (Msg message : request.messages) {
+                if (message != null) messages.add(message);
             }
-            throw new BadRequestException("Failed to build itinerary: " + msg);
-        }
-    }
-
-    /** =============== GROQ CALL =============== **/
-    private String callGroq(Map<String, Object> requestBody) {
-        ResponseEntity<String> response = restClient.post()
-                .uri(GROQ_URL)
-                .contentType(MediaType.APPLICATION_JSON)
-                .header("Authorization", "Bearer " + groqKey)
-                .body(requestBody)
-                .retrieve()
-                .toEntity(String.class);
-
-        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-            throw new BadRequestException("Groq API error: " + response.getStatusCode());
-        }
-
-        try {
-            JsonNode root = objectMapper.readTree(response.getBody());
-            String content = root.path("choices").path(0).path("message").path("content").asText();
-            return content.trim();
-        } catch (Exception e) {
-            throw new BadRequestException("Failed to parse Groq response: " + e.getMessage());
         }
-    }
 
-    /** Extract balanced JSON from raw response **/
-    private String extractBalancedJson(String raw) {
-        if (raw == null || raw.isBlank()) {
-            return "{}";
+        boolean anyAssistant = messages.stream().anyMatch(m -> "assistant".equals(m.role));
+        if (!anyAssistant && messages.stream().allMatch(m -> PlannerFastPath.isGreeting(m.content))) {
+            return agentReply(PlannerFastPath.OPENING, Slot.SOURCE.ui);
         }
 
-        String text = raw.trim()
-                .replace("```json", "")
-                .replace("```", "")
-                .trim();
+        if (messages.isEmpty() || !"user".equals(messages.get(messages.size() - 1).role)) return null;
 
-        int objectStart = text.indexOf('{');
-        int arrayStart = text.indexOf('[');
-
-        if (text.startsWith("```")) {
-            text = text.replaceFirst("```json", "```");
-            int newlineIndex = text.indexOf('\n');
-            if (newlineIndex > 0) {
-                text = text.substring(newlineIndex + 1).trim();
-            }
-            if (text.endsWith("```")) {
-                text = text.substring(0, text.length() - 3).trim();
+        String lastAssistant = null;
+        for (int i = messages.size() - 2; i >= 0; i--) {
+            if ("assistant".equals(messages.get(i).role)) {
+                lastAssistant = messages.get(i).content;
+                break;
             }
         }
 
-        int startIndex = -1;
-        char openChar = 0;
-        char closeChar = 0;
-
-        if (objectStart >= 0 && (arrayStart < 0 || objectStart < arrayStart)) {
-            startIndex = objectStart;
-            openChar = '{';
-            closeChar = '}';
-        } else if (arrayStart >= 0) {
-            startIndex = arrayStart;
-            openChar = '[';
-            closeChar = ']';
-        }
-
-        if (startIndex < 0) {
-            return text;
-        }
+        String answer = messages.get(messages.size() - 1).content;
+        Optional<Answer> parsed = PlannerFastPath.parse(PlannerFastPath.askedIn(lastAssistant), answer);
+        if (parsed.isEmpty()) return null;
 
-        int depth = 0;
-        boolean inString = false;
-        boolean escaped = false;
-
-        for (int i = startIndex; i < text.length(); i++) {
-            char currentChar = text.charAt(i);
-            if (inString) {
-                if (escaped) {
-                    escaped = false;
-                } else if (currentChar == '\\') {
-                    escaped = true;
-                } else if (currentChar == '"') {
-                    inString = false;
-                }
-            } else {
-                if (currentChar == '"') {
-                    inString = true;
-                } else if (currentChar == openChar) {
-                    depth++;
-                } else if (currentChar == closeChar) {
-                    depth--;
-                    if (depth == 0) {
-                        return text.substring(startIndex, i + 1).trim();
-                    }
-                }
-            }
-        }
-
-        StringBuilder repaired = new StringBuilder(text.substring(startIndex).trim());
-        while (depth-- > 0) {
-            repaired.append(closeChar);
-        }
-        return repaired.toString();
+        // the transcript doesn't carry earlier slot values, so the closing summary is left to the model
+        Slot next = parsed.get().slot().next();
+        return next != null ? agentReply(next.question, next.ui) : null;
     }
 
-    /** ================= IMAGE ENRICHMENT ================= **/
-
-    private void enrichPlanImages(JsonNode root) {
-        JsonNode tripPlan = root.path("trip_plan");
-        if (!tripPlan.isObject()) return;
-
-        String destination = tripPlan.path("destination").asText("");
-
-        // In-request cache so the same lookup isn't repeated N times
-        Map<String, String> imageCache = new HashMap<>();
-        Set<String> usedImages = new HashSet<>();
-
-        // Hotels
-        JsonNode hotels = tripPlan.path("hotels");
-        if (hotels.isArray()) {
-            for (JsonNode hotel : hotels) {
-                if (!hotel.isObject()) continue;
+    private static AgentReply agentReply(String resp, String ui) {
+        AgentReply reply = new AgentReply();
+        reply.resp = resp;
+        reply.ui = ui;
+        return reply;
+    }
 
-                ObjectNode hotelNode = (ObjectNode) hotel;
-                String currentUrl = hotelNode.path("hotel_image_url").asText("");
+    /** CHAT AGENT (server-side session) **/
+    public SessionReply chatInSession(SessionMessage request) {
+        ChatSession session = chatSessionStore.get(request.sessionId);
+        if (session == null) session = chatSessionStore.create();
 
-                if (shouldReplaceImageUrl(currentUrl)) {
-                    String name = hotelNode.path("hotel_name").asText("");
-                    String imageUrl = resolveWikidataImage(name, destination, imageCache, usedImages, true);
+        String message = request.message != null && !request.message.isBlank() ? request.message.trim() : "Hi";
 
-                    if (imageUrl != null && !imageUrl.isBlank()) {
-                        hotelNode.put("hotel_image_url", imageUrl);
-                    } else {
-                        hotelNode.putNull("hotel_image_url");
-                        log.debug("Image miss (hotel): name='{}', destination='{}'", name, destination);
-                    }
+        synchronized (session) {
+            AgentReply reply = sessionFastPath(session, message);
+            try {
+                if (reply != null) {
+                    fastPathReplies.incrementAndGet();
+                } else {
+                    modelReplies.incrementAndGet();
+                    reply = runSessionTurn(session, message);
                 }
+                session.record(message, reply.resp, reply.ui);
+            } catch (Exception e) {
+                // turn is not recorded, so the client can simply resend the message
+                log.warn("Chat session agent failed", e);
+                reply = new AgentReply();
+                reply.resp = "AI service error. Please try again.";
+                reply.ui = session.ui();
             }
-        }
+            chatSessionStore.touch(session);
 
-        // Activities
-        JsonNode itinerary = tripPlan.path("itinerary");
-        if (itinerary.isArray()) {
-            for (JsonNode day : itinerary) {
-                JsonNode activities = day.path("activities");
-                if (!activities.isArray()) continue;
-
-                for (JsonNode activity : activities) {
-                    if (!activity.isObject()) continue;
-
-                    ObjectNode activityNode = (ObjectNode) activity;
-                    String currentUrl = activityNode.path("place_image_url").asText("");
-
-                    if (shouldReplaceImageUrl(currentUrl)) {
-                        String name = activityNode.path("place_name").asText("");
-                        String imageUrl = resolveWikidataImage(name, destination, imageCache, usedImages, false);
-
-                        if (imageUrl != null && !imageUrl.isBlank()) {
-                            activityNode.put("place_image_url", imageUrl);
-                        } else {
-                            activityNode.putNull("place_image_url");
-                            log.debug("Image miss (activity): name='{}', destination='{}'", name, destination);
-                        }
-                    }
-                }
-            }
+            SessionReply sessionReply = new SessionReply();
+            sessionReply.sessionId = session.id();
+            sessionReply.resp = reply.resp;
+            sessionReply.ui = reply.ui;
+            sessionReply.state = new LinkedHashMap<>(session.state());
+            return sessionReply;
         }
     }
 
-    private boolean shouldReplaceImageUrl(String url) {
-        if (url == null) return true;
-        String normalized = url.trim().toLowerCase(Locale.ROOT);
-        if (normalized.isEmpty()) return true;
-        if (!normalized.startsWith("http")) return true;
-        if (normalized.contains("example.com") || normalized.contains("placeholder")) return true;
-        return !isLikelyImageUrl(normalized);
+    public SessionView getSession(String sessionId) {
+        ChatSession session = chatSessionStore.get(sessionId);
+        if (session == null) throw new ResourceNotFoundException("Chat session not found or expired");
+
+        synchronized (session) {
+            SessionView view = new SessionView();
+            view.sessionId = session.id();
+            view.ui = session.ui();
+            view.state = new LinkedHashMap<>(session.state());
+            view.messages = new ArrayList<>(session.transcript());
+            return view;
+        }
     }
 
-    private boolean isLikelyImageUrl(String url) {
-        if (url.contains("upload.wikimedia.org/")
-                || url.contains("commons.wikimedia.org/wiki/special:filepath/")) {
-            return true;
+    public void endSession(String sessionId) {
+        if (!chatSessionStore.remove(sessionId)) {
+            throw new ResourceNotFoundException("Chat session not found or expired");
         }
-        return url.matches(".*\\.(png|jpe?g|gif|webp|bmp|tiff)(\\?.*)?$");
     }
 
-    private String resolveWikidataImage(
-            String placeName,
-            String destination,
-            Map<String, String> cache,
-            Set<String> usedImages,
-            boolean isHotel
-    ) {
-        String name = placeName != null ? placeName.trim() : "";
-        String dest = destination != null ? destination.trim() : "";
+    /** Greeting or enumerated answer: update the slot locally and ask the next missing field. */
+    private AgentReply sessionFastPath(ChatSession session, String message) {
+        if (session.transcript().isEmpty() && PlannerFastPath.isGreeting(message)) {
+            return agentReply(PlannerFastPath.OPENING, Slot.SOURCE.ui);
+        }
 
-        String primaryQuery = name;
-        String secondaryQuery = buildPlaceQuery(name, dest);
+        Optional<Answer> parsed = PlannerFastPath.parse(Slot.fromUi(session.ui()), message);
+        if (parsed.isEmpty()) return null;
 
-        if (primaryQuery.isBlank() && secondaryQuery.isBlank()) return null;
+        session.put(parsed.get().slot().key, parsed.get().value());
+        Slot next = PlannerFastPath.nextMissing(session.state());
+        return next != null
+                ? agentReply(next.question, next.ui)
+                : agentReply(PlannerFastPath.summary(session.state()), "final");
+    }
 
-        String cacheKey = primaryQuery + "||" + secondaryQuery + "||" + isHotel;
-        if (cache.containsKey(cacheKey)) return cache.get(cacheKey);
+    private AgentReply runSessionTurn(ChatSession session, String message) throws Exception {
+        Map<String, Object> turn = new LinkedHashMap<>();
+        turn.put("state", session.state());
+        turn.put("assistant", session.lastAssistantMessage());
+        turn.put("user", message);
+
+        Map<String, Object> requestBody = Map.of(
+                "messages", List.of(
+                        Map.of("role", "system", "content", SESSION_PROMPT),
+                        Map.of("role", "user", "content", objectMapper.writeValueAsString(turn))
+                ),
+                "temperature", 0.2,
+                "max_tokens", 512
+        );
+
+        // the session only changes below, so the call itself can be hedged
+        JsonNode root = requestHedger.call(() -> modelRouter.complete(UseCase.CHAT, requestBody, null));
+        JsonNode state = root.path("state");
+        if (state.isObject()) {
+            session.mergeState(objectMapper.convertValue(state, new TypeReference<Map<String, Object>>() {}));
+        }
+
+        AgentReply reply = new AgentReply();
+        reply.resp = root.path("resp").asText("");
+        reply.ui = root.path("ui").asText(session.ui());
+        return reply;
+    }
 
-        List<WikidataEntity> entities = new ArrayList<>();
-        if (!primaryQuery.isBlank()) entities.addAll(searchWikidata(primaryQuery, 8));
-        if (!secondaryQuery.isBlank() && !secondaryQuery.equals(primaryQuery)) {
-            entities.addAll(searchWikidata(secondaryQuery, 8));
-        }
+    public Map<String, Object> chatStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fastPathReplies", fastPathReplies.get());
+        stats.put("modelReplies", modelReplies.get());
+        stats.put("sessions", chatSessionStore.stats());
+        return stats;
+    }
 
-        log.debug("Wikidata search: primary='{}', secondary='{}', results={}",
-                primaryQuery, secondaryQuery, entities.size());
+    /** FINAL ITINERARY **/
+    public JsonNode buildItinerary(FinalPlanInput input) {
+        return buildItinerary(input, false);
+    }
 
-        String imageUrl = pickBestWikidataImage(entities, name, dest, isHotel, usedImages);
+    /**
+     * With {@code deferImages}, the plan is returned as soon as it is parsed, with
+     * {@code trip_plan.image_enrichment_id} set; images are resolved in the background
+     * (see {@link #imagePatch} / {@link #streamImages}). Cache hits are always complete.
+     */
+    public JsonNode buildItinerary(FinalPlanInput input, boolean deferImages) {
+        JsonNode cached = itineraryResultCache.get(input);
+        if (cached != null) return cached;
 
-        // fallback: try destination alone (sometimes helps for famous sights)
-        if ((imageUrl == null || imageUrl.isBlank()) && !dest.isBlank()) {
-            List<WikidataEntity> destEntities = searchWikidata(dest, 8);
-            log.debug("Wikidata fallback search: destination='{}', results={}", dest, destEntities.size());
-            imageUrl = pickBestWikidataImage(destEntities, name, dest, isHotel, usedImages);
+        if (deferImages) {
+            return draftFlights.execute(PlanInputKey.of(input), () -> generateDraft(input), JsonNode::deepCopy);
         }
+        return itineraryFlights.execute(PlanInputKey.of(input), () -> generateItinerary(input), JsonNode::deepCopy);
+    }
 
-        // fallback: Wikipedia pageimages
-        if (imageUrl == null || imageUrl.isBlank()) {
-            imageUrl = resolveWikipediaImage(name, dest, usedImages, isHotel);
+    /**
+     * {@link #buildItinerary(FinalPlanInput, boolean)} for HTTP clients. A client that goes away (async
+     * error or timeout) leaves the build; when the last one has left, the build is cancelled: the model
+     * call is aborted and pending Wikimedia lookups stop.
+     */
+    public DeferredResult<JsonNode> buildItineraryForClient(FinalPlanInput input, boolean deferImages) {
+        DeferredResult<JsonNode> result = new DeferredResult<>(streamTimeoutMs);
+        JsonNode cached = itineraryResultCache.get(input);
+        if (cached != null) {
+            result.setResult(cached);
+            return result;
         }
 
-        if (imageUrl != null && !imageUrl.isBlank()) usedImages.add(imageUrl);
-
-        cache.put(cacheKey, imageUrl);
-        return imageUrl;
+        CompletableFuture<JsonNode> plan = deferImages
+                ? draftFlights.submit(PlanInputKey.of(input), () -> generateDraft(input), JsonNode::deepCopy, aiTaskExecutor)
+                : itineraryFlights.submit(PlanInputKey.of(input), () -> generateItinerary(input), JsonNode::deepCopy, aiTaskExecutor);
+        plan.whenComplete((json, error) -> {
+            if (error == null) {
+                result.setResult(json);
+            } else if (!plan.isCancelled()) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        result.onError(error -> clientGone(plan));
+        result.onTimeout(() -> clientGone(plan));
+        return result;
     }
 
-    private String buildPlaceQuery(String placeName, String destination) {
-        String name = placeName != null ? placeName.trim() : "";
-        String dest = destination != null ? destination.trim() : "";
-        if (name.isBlank()) return dest;
-        if (dest.isBlank()) return name;
-
-        // slightly more specific than "name dest"
-        return name + ", " + dest;
+    private void clientGone(Future<?> work) {
+        if (work.cancel(true)) clientDisconnects.incrementAndGet();
     }
 
-    /** ---------- Wikidata ---------- */
+    public Map<String, Object> cancellationStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clientDisconnects", clientDisconnects.get());
+        stats.put("buildsAbandoned", itineraryFlights.abandoned() + draftFlights.abandoned());
+        stats.put("streamsCancelled", streamsCancelled.get());
+        stats.put("heartbeat", streamHeartbeat.stats());
+        stats.put("modelCallsCancelled", modelRouter.cancelledCalls());
+        stats.put("enrichmentsCancelled", imageEnrichmentService.cancelledRuns());
+        return stats;
+    }
 
-    private List<WikidataEntity> searchWikidata(String query, int limit) {
-        if (query == null || query.isBlank()) return Collections.emptyList();
+    private JsonNode generateItinerary(FinalPlanInput input) {
         try {
-            String uri = UriComponentsBuilder.fromHttpUrl("https://www.wikidata.org/w/api.php")
-                    .queryParam("action", "wbsearchentities")
-                    .queryParam("format", "json")
-                    .queryParam("language", "en")
-                    .queryParam("limit", limit)
-                    .queryParam("search", query)
-                    .build()
-                    .toUriString();
-
-            ResponseEntity<String> response = restClient.get()
-                    .uri(uri)
-                    .header("User-Agent", "TripMind/1.0 (image-enrichment)")
-                    .retrieve()
-                    .toEntity(String.class);
-
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.debug("Wikidata search failed: status={}, query='{}'", response.getStatusCode(), query);
-                return Collections.emptyList();
-            }
+            JsonNode root = generatePlan(input);
 
-            JsonNode root = objectMapper.readTree(response.getBody());
-            JsonNode search = root.path("search");
-            if (!search.isArray()) return Collections.emptyList();
-
-            List<WikidataEntity> results = new ArrayList<>();
-            for (JsonNode item : search) {
-                String id = item.path("id").asText("");
-                String label = item.path("label").asText("");
-                String description = item.path("description").asText("");
-                if (!id.isBlank()) {
-                    results.add(new WikidataEntity(id, label, description, null, List.of()));
-                }
+            if (enrichImages(root) == Enrichment.COMPLETE) {
+                itineraryResultCache.put(input, root);
             }
-            return results;
+            return root;
+
         } catch (Exception e) {
-            log.debug("Wikidata search exception: query='{}', err={}", query, e.toString());
-            return Collections.emptyList();
+            throw new BadRequestException("Failed to build itinerary: " + describe(e));
         }
     }
 
-    private String pickBestWikidataImage(
-            List<WikidataEntity> entities,
-            String name,
-            String destination,
-            boolean isHotel,
-            Set<String> usedImages
-    ) {
-        if (entities == null || entities.isEmpty()) return null;
-
-        List<String> ids = new ArrayList<>();
-        for (WikidataEntity entity : entities) {
-            if (entity.id() != null && !entity.id().isBlank()) ids.add(entity.id());
+    private JsonNode generateDraft(FinalPlanInput input) {
+        JsonNode root;
+        try {
+            root = generatePlan(input);
+        } catch (Exception e) {
+            throw new BadRequestException("Failed to build itinerary: " + describe(e));
         }
-        if (ids.isEmpty()) return null;
-
-        Map<String, WikidataEntity> details = fetchWikidataDetails(ids);
-        if (details.isEmpty()) return null;
+        if (!(root.path("trip_plan") instanceof ObjectNode tripPlan)) return root;
 
-        String normalizedName = normalizeText(name);
-        String normalizedDestination = normalizeText(destination);
+        // the background pass works on its own copy; the returned plan only gets the id
+        JsonNode enriched = root.deepCopy();
+        String enrichmentId = imageEnrichmentTracker.start();
+        tripPlan.put(ImageEnrichmentTracker.ID_FIELD, enrichmentId);
 
-        WikidataEntity best = null;
-        int bestScore = Integer.MIN_VALUE;
-
-        for (WikidataEntity entity : details.values()) {
-            if (entity.imageFile() == null || entity.imageFile().isBlank()) continue;
-
-            String imageUrl = buildCommonsUrl(entity.imageFile());
-            if (imageUrl == null || imageUrl.isBlank()) continue;
-            if (usedImages.contains(imageUrl)) continue;
-
-            int score = scoreWikidataEntity(entity, normalizedName, normalizedDestination, isHotel);
-
-            if (score > bestScore) {
-                bestScore = score;
-                best = entity;
+        aiTaskExecutor.execute(() -> {
+            Enrichment outcome = enrichImages(enriched);
+            if (outcome == Enrichment.FAILED) {
+                imageEnrichmentTracker.fail(enrichmentId);
+                return;
             }
-        }
-
-        if (best == null) return null;
-
-        log.debug("Wikidata best pick: label='{}', score={}, image='{}'",
-                best.label(), bestScore, best.imageFile());
-
-        return buildCommonsUrl(best.imageFile());
+            if (outcome == Enrichment.COMPLETE) itineraryResultCache.put(input, enriched);
+            imageEnrichmentTracker.complete(enrichmentId, enriched);
+        });
+        return root;
     }
 
-    private Map<String, WikidataEntity> fetchWikidataDetails(List<String> ids) {
-        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
-        try {
-            // reduce payload, but keep claims for P18 and P31
-            String uri = UriComponentsBuilder.fromHttpUrl("https://www.wikidata.org/w/api.php")
-                    .queryParam("action", "wbgetentities")
-                    .queryParam("format", "json")
-                    .queryParam("ids", String.join("|", ids))
-                    .queryParam("props", "labels|descriptions|claims")
-                    .build()
-                    .toUriString();
-
-            ResponseEntity<String> response = restClient.get()
-                    .uri(uri)
-                    .header("User-Agent", "TripMind/1.0 (image-enrichment)")
-                    .retrieve()
-                    .toEntity(String.class);
-
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.debug("Wikidata details failed: status={}, ids={}", response.getStatusCode(), ids.size());
-                return Collections.emptyMap();
-            }
-
-            JsonNode root = objectMapper.readTree(response.getBody());
-            JsonNode entities = root.path("entities");
-            if (!entities.isObject()) return Collections.emptyMap();
-
-            Map<String, WikidataEntity> result = new HashMap<>();
-            Iterator<Map.Entry<String, JsonNode>> fields = entities.fields();
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fields.next();
-                String id = entry.getKey();
-                JsonNode entity = entry.getValue();
-
-                String label = entity.path("labels").path("en").path("value").asText("");
-                String description = entity.path("descriptions").path("en").path("value").asText("");
-
-                String imageFile = extractFirstStringClaim(entity.path("claims").path("P18"));
-                List<String> instanceOf = extractInstanceOf(entity.path("claims").path("P31"));
-
-                result.put(id, new WikidataEntity(id, label, description, imageFile, instanceOf));
+    /** Long trips are built as parallel sub-requests; when that fails, as one request. */
+    private JsonNode generatePlan(FinalPlanInput input) throws IOException {
+        if (parallelItineraryGenerator.applies(input)) {
+            try {
+                return parallelItineraryGenerator.generate(input);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                log.warn("Parallel itinerary generation failed, building with a single request: {}", describe(e));
             }
-            return result;
-        } catch (Exception e) {
-            log.debug("Wikidata details exception: {}", e.toString());
-            return Collections.emptyMap();
         }
+        JsonNode compact = itineraryContinuation.complete(UseCase.BUILD, buildItineraryRequest(input), days(input), true);
+        return CompactPlanSchema.expandPlan(compact, input);
     }
 
-    /** ---------- Wikipedia ---------- */
-
-    private String resolveWikipediaImage(String placeName,
-                                         String destination,
-                                         Set<String> usedImages,
-                                         boolean isHotel) {
-        String name = placeName != null ? placeName.trim() : "";
-        String dest = destination != null ? destination.trim() : "";
-
-        String query = buildPlaceQuery(name, dest);
-        if (query.isBlank()) query = dest;
-        if (query.isBlank()) return null;
-
-        List<ImageCandidate> candidates = new ArrayList<>();
-
-        // try exact title first (redirects enabled)
-        if (!name.isBlank()) candidates.addAll(fetchWikipediaImagesByTitle(name));
-
-        // then search generator
-        candidates.addAll(fetchWikipediaImages(query, 10));
-        if (!name.isBlank()) candidates.addAll(fetchWikipediaImages(name, 8));
-
-        log.debug("Wikipedia candidates: query='{}', name='{}', count={}", query, name, candidates.size());
-
-        return pickBestWikipediaImage(candidates, name, dest, isHotel, usedImages);
+    /** Image patch of a deferred enrichment; waits up to {@code wait} for it to finish. */
+    public JsonNode imagePatch(String enrichmentId, Duration wait) {
+        JsonNode patch = imageEnrichmentTracker.patch(enrichmentId, wait);
+        if (patch == null) throw new ResourceNotFoundException("Image enrichment not found or expired");
+        return patch;
     }
 
-    private List<ImageCandidate> fetchWikipediaImagesByTitle(String title) {
-        if (title == null || title.isBlank()) return Collections.emptyList();
-        try {
-            String uri = UriComponentsBuilder.fromHttpUrl("https://en.wikipedia.org/w/api.php")
-                    .queryParam("action", "query")
-                    .queryParam("format", "json")
-                    .queryParam("redirects", 1)
-                    .queryParam("titles", title)
-                    .queryParam("prop", "pageimages")
-                    .queryParam("piprop", "original|thumbnail")
-                    .queryParam("pithumbsize", 1200)
-                    .build()
-                    .toUriString();
-
-            ResponseEntity<String> response = restClient.get()
-                    .uri(uri)
-                    .header("User-Agent", "TripMind/1.0 (image-enrichment)")
-                    .retrieve()
-                    .toEntity(String.class);
-
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.debug("Wikipedia title query failed: status={}, title='{}'", response.getStatusCode(), title);
-                return Collections.emptyList();
-            }
+    /** One "images" event with the patch once the enrichment finishes (right away if it already has). */
+    public SseEmitter streamImages(String enrichmentId) {
+        CompletableFuture<ObjectNode> done = imageEnrichmentTracker.whenDone(enrichmentId);
+        if (done == null) throw new ResourceNotFoundException("Image enrichment not found or expired");
 
-            JsonNode root = objectMapper.readTree(response.getBody());
-            JsonNode pages = root.path("query").path("pages");
-            if (!pages.isObject()) return Collections.emptyList();
-
-            List<ImageCandidate> candidates = new ArrayList<>();
-            Iterator<JsonNode> values = pages.elements();
-            while (values.hasNext()) {
-                JsonNode page = values.next();
-                String pageTitle = page.path("title").asText("");
-                String source = extractWikipediaImageSource(page);
-                if (source != null && !source.isBlank()) {
-                    candidates.add(new ImageCandidate(pageTitle, source));
-                }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        done.thenAccept(patch -> {
+            try {
+                emitter.send(SseEmitter.event().name("images").data(patch, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                // client already gone
+                emitter.completeWithError(e);
             }
-            return candidates;
-        } catch (Exception e) {
-            log.debug("Wikipedia byTitle exception: title='{}', err={}", title, e.toString());
-            return Collections.emptyList();
-        }
+        });
+        return emitter;
+    }
+
+    /**
+     * FINAL ITINERARY (streamed)
+     * Events: "hotel" / "day" as soon as each entry closes in the model output,
+     * then "plan" with the full enriched document, or "error".
+     */
+    public SseEmitter streamItinerary(FinalPlanInput input) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Future<?> work = aiTaskExecutor.submit(() -> runItineraryStream(input, emitter));
+        emitter.onError(error -> clientGone(work));
+        emitter.onTimeout(() -> clientGone(work));
+        streamHeartbeat.watch(emitter, () -> clientGone(work));
+        return emitter;
     }
 
-    private List<ImageCandidate> fetchWikipediaImages(String query, int limit) {
-        if (query == null || query.isBlank()) return Collections.emptyList();
+    private void runItineraryStream(FinalPlanInput input, SseEmitter emitter) {
         try {
-            String uri = UriComponentsBuilder.fromHttpUrl("https://en.wikipedia.org/w/api.php")
-                    .queryParam("action", "query")
-                    .queryParam("format", "json")
-                    .queryParam("generator", "search")
-                    .queryParam("gsrsearch", query)
-                    .queryParam("gsrlimit", limit)
-                    .queryParam("prop", "pageimages")
-                    .queryParam("piprop", "original|thumbnail")
-                    .queryParam("pithumbsize", 1200)
-                    .queryParam("pilimit", limit)
-                    .build()
-                    .toUriString();
-
-            ResponseEntity<String> response = restClient.get()
-                    .uri(uri)
-                    .header("User-Agent", "TripMind/1.0 (image-enrichment)")
-                    .retrieve()
-                    .toEntity(String.class);
-
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.debug("Wikipedia search failed: status={}, query='{}'", response.getStatusCode(), query);
-                return Collections.emptyList();
+            JsonNode cached = itineraryResultCache.get(input);
+            if (cached != null) {
+                replayPlan(emitter, cached);
+                return;
             }
 
-            JsonNode root = objectMapper.readTree(response.getBody());
-            JsonNode pages = root.path("query").path("pages");
-            if (!pages.isObject()) return Collections.emptyList();
-
-            List<ImageCandidate> candidates = new ArrayList<>();
-            Iterator<JsonNode> values = pages.elements();
-            while (values.hasNext()) {
-                JsonNode page = values.next();
-                String title = page.path("title").asText("");
-                String source = extractWikipediaImageSource(page);
-                if (source != null && !source.isBlank()) {
-                    candidates.add(new ImageCandidate(title, source));
+            ItineraryStreamParser parser = new ItineraryStreamParser(new ItineraryStreamParser.Listener() {
+                @Override
+                public void onHotel(int index, String json) {
+                    sendPlanPart(emitter, "hotel", index, CompactPlanSchema.expandHotel(readPart(json)));
                 }
-            }
-            return candidates;
-        } catch (Exception e) {
-            log.debug("Wikipedia search exception: query='{}', err={}", query, e.toString());
-            return Collections.emptyList();
-        }
-    }
 
-    private String extractWikipediaImageSource(JsonNode page) {
-        JsonNode original = page.path("original");
-        if (original.isObject()) {
-            String source = original.path("source").asText("");
-            if (!source.isBlank()) return source;
-        }
-        JsonNode thumbnail = page.path("thumbnail");
-        if (thumbnail.isObject()) {
-            String source = thumbnail.path("source").asText("");
-            if (!source.isBlank()) return source;
-        }
-        return null;
-    }
-
-    private String pickBestWikipediaImage(List<ImageCandidate> candidates,
-                                          String name,
-                                          String destination,
-                                          boolean isHotel,
-                                          Set<String> usedImages) {
-        if (candidates == null || candidates.isEmpty()) return null;
+                @Override
+                public void onDay(int index, String json) {
+                    sendPlanPart(emitter, "day", index, CompactPlanSchema.expandDay(readPart(json)));
+                }
+            });
 
-        String normalizedName = normalizeText(name);
-        String normalizedDestination = normalizeText(destination);
+            Map<String, Object> request = buildItineraryRequest(input);
+            String finishReason = modelRouter.stream(UseCase.BUILD, request, parser::feed);
 
-        ImageCandidate best = null;
-        int bestScore = Integer.MIN_VALUE;
+            // a cut-off stream is continued; the added days go out as further day events
+            JsonNode compact = itineraryContinuation.resume(UseCase.BUILD, request, parser.buffer(), finishReason,
+                    days(input), true, (index, day) -> sendPlanPart(emitter, "day", index, CompactPlanSchema.expandDay(day)));
+            JsonNode root = CompactPlanSchema.expandPlan(compact, input);
+            if (enrichImages(root) == Enrichment.COMPLETE) {
+                itineraryResultCache.put(input, root);
+            }
 
-        for (ImageCandidate candidate : candidates) {
-            String url = candidate.url();
-            if (url == null || url.isBlank()) continue;
-            if (usedImages.contains(url)) continue;
+            emitter.send(SseEmitter.event().name("plan").data(root, MediaType.APPLICATION_JSON));
+            emitter.complete();
 
-            int score = scoreWikipediaTitle(candidate.title(), normalizedName, normalizedDestination, isHotel);
-            if (score > bestScore) {
-                bestScore = score;
-                best = candidate;
+        } catch (Exception e) {
+            if (e instanceof CancellationException || Thread.currentThread().isInterrupted()) {
+                streamsCancelled.incrementAndGet();
+                log.debug("Itinerary stream stopped: client disconnected");
+                emitter.complete();
+                return;
             }
+            log.warn("Itinerary stream failed", e);
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("error")
+                        .data(Map.of("error", "Failed to build itinerary: " + describe(e)), MediaType.APPLICATION_JSON));
+            } catch (Exception ignored) {
+                // client already gone
+            }
+            emitter.complete();
         }
-
-        if (best != null) {
-            log.debug("Wikipedia best pick: title='{}', score={}, url='{}'",
-                    best.title(), bestScore, best.url());
-        }
-        return best != null ? best.url() : null;
     }
 
-    private int scoreWikipediaTitle(String title,
-                                    String normalizedName,
-                                    String normalizedDestination,
-                                    boolean isHotel) {
-        String normalizedTitle = normalizeText(title);
-        int score = 0;
-
-        if (!normalizedName.isBlank() && normalizedTitle.contains(normalizedName)) score += 20;
-        if (!normalizedDestination.isBlank() && normalizedTitle.contains(normalizedDestination)) score += 6;
-
-        if (isHotel && normalizedTitle.contains("hotel")) score += 6;
-
-        if (!normalizedName.isBlank()) {
-            for (String token : normalizedName.split(" ")) {
-                if (token.length() < 3) continue;
-                if (normalizedTitle.contains(token)) score += 2;
-            }
+    /** Cache hit: same event sequence as a live stream, all at once */
+    private void replayPlan(SseEmitter emitter, JsonNode plan) throws IOException {
+        JsonNode tripPlan = plan.path("trip_plan");
+        int index = 0;
+        for (JsonNode hotel : tripPlan.path("hotels")) {
+            sendPlanPart(emitter, "hotel", index++, hotel);
+        }
+        index = 0;
+        for (JsonNode day : tripPlan.path("itinerary")) {
+            sendPlanPart(emitter, "day", index++, day);
         }
-        return score;
+        emitter.send(SseEmitter.event().name("plan").data(plan, MediaType.APPLICATION_JSON));
+        emitter.complete();
     }
 
-    private String extractFirstStringClaim(JsonNode claims) {
-        if (!claims.isArray() || claims.isEmpty()) return null;
-        JsonNode value = claims.get(0).path("mainsnak").path("datavalue").path("value");
-        return value.isTextual() ? value.asText() : null;
+    private JsonNode readPart(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private List<String> extractInstanceOf(JsonNode claims) {
-        if (!claims.isArray()) return List.of();
-        List<String> ids = new ArrayList<>();
-        for (JsonNode claim : claims) {
-            JsonNode value = claim.path("mainsnak").path("datavalue").path("value");
-            String id = value.path("id").asText("");
-            if (!id.isBlank()) ids.add(id);
+    private void sendPlanPart(SseEmitter emitter, String event, int index, JsonNode part) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("index", index);
+        payload.set(event, part);
+        try {
+            emitter.send(SseEmitter.event().name(event).data(payload, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // client gone: stop the model stream without counting it as a model failure
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Client disconnected");
         }
-        return ids;
     }
 
-    private int scoreWikidataEntity(WikidataEntity entity,
-                                    String normalizedName,
-                                    String normalizedDestination,
-                                    boolean isHotel) {
-        String title = normalizeText(entity.label());
-        String description = normalizeText(entity.description());
-        int score = 0;
-
-        if (!normalizedName.isBlank() && title.contains(normalizedName)) score += 25;
-        if (!normalizedDestination.isBlank() && title.contains(normalizedDestination)) score += 6;
-
-        if (!normalizedName.isBlank()) {
-            for (String token : normalizedName.split(" ")) {
-                if (token.length() < 3) continue;
-                if (title.contains(token)) score += 2;
-            }
-        }
+    /** FAILED keeps the plan without images, PARTIAL with the images found in time; only COMPLETE plans are cached. */
+    private enum Enrichment { COMPLETE, PARTIAL, FAILED }
 
-        if (isHotel) {
-            if (containsAny(entity.instanceOf(), HOTEL_INSTANCE_OF)) score += 18;
-            if (description.contains("hotel") || description.contains("resort")) score += 10;
-        } else {
-            if (containsAny(entity.instanceOf(), ATTRACTION_INSTANCE_OF)) score += 10;
+    private Enrichment enrichImages(JsonNode root) {
+        // ✅ DO NOT swallow silently — log the reason (otherwise you always get null and no clue why)
+        try {
+            if (imageEnrichmentService.enrichPlanImages(root)) return Enrichment.COMPLETE;
+            log.debug("Image enrichment partial (deadline or failed lookups), plan not cached");
+            return Enrichment.PARTIAL;
+        } catch (CancellationException e) {
+            log.debug("Image enrichment cancelled");
+            return Enrichment.FAILED;
+        } catch (Exception e) {
+            log.warn("Image enrichment failed (keeping plan without images)", e);
+            return Enrichment.FAILED;
         }
-
-        if (containsAny(entity.instanceOf(), DISALLOWED_INSTANCE_OF)) score -= 50;
-
-        return score;
     }
 
-    private boolean containsAny(List<String> values, Set<String> allowed) {
-        if (values == null || values.isEmpty()) return false;
-        for (String value : values) {
-            if (allowed.contains(value)) return true;
-        }
-        return false;
+    private Map<String, Object> buildItineraryRequest(FinalPlanInput input) throws IOException {
+        String userState = objectMapper.writeValueAsString(input);
+
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("messages", List.of(
+                Map.of("role", "system", "content", FINAL_PROMPT),
+                Map.of("role", "user", "content", userState)
+        ));
+        requestBody.put("temperature", 0.25);
+        requestBody.put("max_tokens", CompactPlanSchema.maxTokens(days(input), CompactPlanSchema.MAX_HOTELS));
+        return requestBody;
     }
 
-    private String buildCommonsUrl(String imageFile) {
-        if (imageFile == null || imageFile.isBlank()) return null;
-
-        String cleaned = imageFile.trim();
-        if (cleaned.startsWith("File:")) cleaned = cleaned.substring(5);
-        cleaned = cleaned.replace(' ', '_');
-
-        // Important: let UriComponentsBuilder do encoding
-        return UriComponentsBuilder
-                .fromHttpUrl("https://commons.wikimedia.org/wiki/Special:FilePath/")
-                .path(cleaned)
-                .queryParam("width", 1200)
-                .build()
-                .toUriString();
+    private static int days(FinalPlanInput input) {
+        return input.tripDurationDays != null && input.tripDurationDays > 0 ? input.tripDurationDays : 1;
     }
 
-    private String normalizeText(String value) {
-        if (value == null) return "";
-        return value.toLowerCase(Locale.ROOT)
-                .replaceAll("[^a-z0-9\\s]", " ")
-                .replaceAll("\\s+", " ")
-                .trim();
+    public Map<String, Object> coalescingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chat", chatFlights.stats());
+        stats.put("itinerary", itineraryFlights.stats());
+        stats.put("itineraryDeferredImages", draftFlights.stats());
+        return stats;
     }
 
-    private record WikidataEntity(String id,
-                                  String label,
-                                  String description,
-                                  String imageFile,
-                                  List<String> instanceOf) {}
+    private static AgentReply copyReply(AgentReply reply) {
+        AgentReply copy = new AgentReply();
+        copy.resp = reply.resp;
+        copy.ui = reply.ui;
+        return copy;
+    }
 
-    private record ImageCandidate(String title, String url) {}
+    private String describe(Exception e) {
+        String msg = e.getMessage();
+        if (msg == null || msg.isBlank()) {
+            msg = e.getClass().getSimpleName();
+        }
+        return msg;
+    }
 }
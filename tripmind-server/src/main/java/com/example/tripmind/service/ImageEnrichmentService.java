@@ -0,0 +1,516 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.service.ai.ImageResolutionCache;
+import com.example.tripmind.service.ai.ImageCandidateScorer;
+import com.example.tripmind.service.ai.WikidataEntity;
+import com.example.tripmind.service.ai.WikidataLocalIndex;
+import com.example.tripmind.service.ai.WikimediaClient;
+import com.example.tripmind.service.ai.WikimediaClient.PageImage;
+import com.example.tripmind.service.ai.WikimediaLookupPlanner;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Fills hotel_image_url / place_image_url in a generated trip_plan from Wikidata (P18)
+ * with Wikipedia pageimages as fallback.
+ *
+ * All places of a plan are looked up together through a {@link WikimediaLookupPlanner}:
+ * queries are de-duplicated, entity ids and page titles are batched, and each round runs in
+ * parallel (bounded per request and globally, with an overall deadline). Candidates are scored
+ * locally and images are assigned in plan order, so the de-duplication across hotels and
+ * activities gives the same result as a sequential pass. The resolution cache holds each place's
+ * best image, independent of the plan it was resolved for, and a miss only once every lookup for
+ * the place was actually answered.
+ */
+@Service
+public class ImageEnrichmentService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageEnrichmentService.class);
+
+    // extension at the end of the path, optionally followed by a query string
+    private static final Pattern IMAGE_EXTENSION = Pattern.compile(".*\\.(png|jpe?g|gif|webp|bmp|tiff)(\\?.*)?$");
+
+    private final WikimediaClient wikimediaClient;
+    private final ExecutorService aiTaskExecutor;
+    private final ImageResolutionCache imageResolutionCache;
+    private final ImageProxyService imageProxyService;
+    private final WikidataLocalIndex wikidataLocalIndex;
+
+    private final int perRequestConcurrency;
+    private final Semaphore globalPermits;
+    private final long deadlineMs;
+
+    // runs stopped because the caller was interrupted (its client went away)
+    private final AtomicLong cancelledRuns = new AtomicLong();
+
+    public ImageEnrichmentService(WikimediaClient wikimediaClient,
+                                  @Qualifier("aiTaskExecutor") ExecutorService aiTaskExecutor,
+                                  ImageResolutionCache imageResolutionCache,
+                                  ImageProxyService imageProxyService,
+                                  WikidataLocalIndex wikidataLocalIndex,
+                                  @Value("${app.ai.enrichment.per-request-concurrency:6}") int perRequestConcurrency,
+                                  @Value("${app.ai.enrichment.global-concurrency:24}") int globalConcurrency,
+                                  @Value("${app.ai.enrichment.deadline-ms:15000}") long deadlineMs) {
+        this.wikimediaClient = wikimediaClient;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.imageResolutionCache = imageResolutionCache;
+        this.imageProxyService = imageProxyService;
+        this.wikidataLocalIndex = wikidataLocalIndex;
+        this.perRequestConcurrency = Math.max(1, perRequestConcurrency);
+        this.globalPermits = new Semaphore(Math.max(1, globalConcurrency), true);
+        this.deadlineMs = deadlineMs;
+    }
+
+    /** ================= PLAN ENRICHMENT ================= **/
+
+    /**
+     * Fills the image fields in place. Returns false when the result is partial: the deadline cut some
+     * places off, or a lookup behind a pick failed. Such a plan is fine to show but not to cache.
+     */
+    public boolean enrichPlanImages(JsonNode root) {
+        JsonNode tripPlan = root.path("trip_plan");
+        if (!tripPlan.isObject()) return true;
+
+        String destination = tripPlan.path("destination").asText("").trim();
+        long deadline = System.currentTimeMillis() + deadlineMs;
+
+        // Plan order: hotels first, then activities day by day
+        List<ImageSlot> slots = collectSlots(tripPlan);
+        if (slots.isEmpty()) return true;
+
+        Map<PlaceKey, PlaceLookup> places = new LinkedHashMap<>();
+        for (ImageSlot slot : slots) {
+            places.computeIfAbsent(slot.key(), key -> new PlaceLookup(key.name(), destination, key.isHotel()));
+        }
+
+        // Phase 1: plan-wide batched lookups, scored locally
+        Semaphore requestPermits = new Semaphore(perRequestConcurrency);
+        WikimediaLookupPlanner planner = new WikimediaLookupPlanner(
+                wikimediaClient, wikidataLocalIndex, imageResolutionCache, aiTaskExecutor,
+                new WikimediaLookupPlanner.CallRunner() {
+                    @Override
+                    public <T> T run(Callable<T> call) throws Exception {
+                        return withPermits(requestPermits, call);
+                    }
+                },
+                deadline);
+        gatherCandidates(places.values(), planner);
+        if (Thread.currentThread().isInterrupted()) {
+            cancelledRuns.incrementAndGet();
+            throw new CancellationException("Image enrichment cancelled");
+        }
+
+        // Phase 2: assign images in plan order (deterministic de-duplication)
+        Map<PlaceKey, String> assigned = new HashMap<>();
+        Set<String> usedImages = new HashSet<>();
+        boolean complete = true;
+        for (ImageSlot slot : slots) {
+            PlaceKey key = slot.key();
+            String imageUrl;
+            if (assigned.containsKey(key)) {
+                imageUrl = assigned.get(key);
+            } else {
+                PlaceLookup lookup = places.get(key);
+                imageUrl = assign(lookup, usedImages, planner);
+                if (imageUrl != null) usedImages.add(imageUrl);
+                assigned.put(key, imageUrl);
+                complete &= lookup.settled;
+            }
+
+            if (imageUrl != null && !imageUrl.isBlank()) {
+                // de-duplication and the resolution cache work on Commons URLs; clients get the proxy
+                slot.node().put(slot.field(), imageProxyService.publicUrl(imageUrl));
+            } else {
+                slot.node().putNull(slot.field());
+                log.debug("Image miss ({}): name='{}', destination='{}'",
+                        key.isHotel() ? "hotel" : "activity", key.name(), destination);
+            }
+        }
+
+        log.debug("Image enrichment: places={}, upstream calls={}, complete={}", places.size(), planner.calls(), complete);
+        return complete;
+    }
+
+    public long cancelledRuns() {
+        return cancelledRuns.get();
+    }
+
+    private List<ImageSlot> collectSlots(JsonNode tripPlan) {
+        List<ImageSlot> slots = new ArrayList<>();
+
+        JsonNode hotels = tripPlan.path("hotels");
+        if (hotels.isArray()) {
+            for (JsonNode hotel : hotels) {
+                if (!hotel.isObject()) continue;
+                ObjectNode hotelNode = (ObjectNode) hotel;
+                if (shouldReplaceImageUrl(hotelNode.path("hotel_image_url").asText(""))) {
+                    String name = hotelNode.path("hotel_name").asText("").trim();
+                    slots.add(new ImageSlot(hotelNode, "hotel_image_url", new PlaceKey(name, true)));
+                }
+            }
+        }
+
+        JsonNode itinerary = tripPlan.path("itinerary");
+        if (itinerary.isArray()) {
+            for (JsonNode day : itinerary) {
+                JsonNode activities = day.path("activities");
+                if (!activities.isArray()) continue;
+
+                for (JsonNode activity : activities) {
+                    if (!activity.isObject()) continue;
+                    ObjectNode activityNode = (ObjectNode) activity;
+                    if (shouldReplaceImageUrl(activityNode.path("place_image_url").asText(""))) {
+                        String name = activityNode.path("place_name").asText("").trim();
+                        slots.add(new ImageSlot(activityNode, "place_image_url", new PlaceKey(name, false)));
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+
+    private <T> T withPermits(Semaphore requestPermits, Callable<T> task) throws Exception {
+        requestPermits.acquire();
+        try {
+            globalPermits.acquire();
+            try {
+                return task.call();
+            } finally {
+                globalPermits.release();
+            }
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private boolean shouldReplaceImageUrl(String url) {
+        if (url == null) return true;
+        String normalized = url.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) return true;
+        if (!normalized.startsWith("http")) return true;
+        if (normalized.contains("example.com") || normalized.contains("placeholder")) return true;
+        return !isLikelyImageUrl(normalized);
+    }
+
+    static boolean isLikelyImageUrl(String url) {
+        if (url.contains("upload.wikimedia.org/")
+                || url.contains("commons.wikimedia.org/wiki/special:filepath/")) {
+            return true;
+        }
+        return IMAGE_EXTENSION.matcher(url).matches();
+    }
+
+    /** ================= CANDIDATES ================= **/
+
+    private void gatherCandidates(Collection<PlaceLookup> places, WikimediaLookupPlanner planner) {
+        List<PlaceLookup> pending = new ArrayList<>();
+        for (PlaceLookup lookup : places) {
+            if (lookup.isBlank()) continue;
+            lookup.cached = imageResolutionCache.getImage(lookup.name, lookup.destination, lookup.isHotel);
+            if (lookup.cached == null) pending.add(lookup);
+        }
+        if (pending.isEmpty()) return;
+
+        loadWikidataCandidates(pending, planner);
+
+        List<PlaceLookup> withoutWikidata = new ArrayList<>();
+        for (PlaceLookup lookup : pending) {
+            if (lookup.primary.isEmpty() && lookup.destinationFallback.isEmpty()) withoutWikidata.add(lookup);
+        }
+        loadWikipediaCandidates(withoutWikidata, planner);
+    }
+
+    /** Round 1: every entity search of the plan (incl. the shared destination fallback); round 2: batched details. */
+    private void loadWikidataCandidates(List<PlaceLookup> lookups, WikimediaLookupPlanner planner) {
+        for (PlaceLookup lookup : lookups) {
+            // a local index hit on the name alone makes the "name, destination" search unnecessary
+            if (!planner.requestEntitySearch(lookup.primaryQuery, 8)) {
+                planner.requestEntitySearch(lookup.secondaryQuery, 8);
+            }
+            planner.requestEntitySearch(lookup.destination, 8);
+        }
+        planner.execute();
+
+        List<String> ids = new ArrayList<>();
+        for (PlaceLookup lookup : lookups) {
+            for (WikidataEntity entity : primaryEntities(lookup, planner)) ids.add(entity.id());
+            for (WikidataEntity entity : planner.entitySearch(lookup.destination)) ids.add(entity.id());
+        }
+        planner.requestEntities(ids);
+        planner.execute();
+
+        for (PlaceLookup lookup : lookups) {
+            scoreWikidataCandidates(lookup, planner);
+        }
+    }
+
+    private void scoreWikidataCandidates(PlaceLookup lookup, WikimediaLookupPlanner planner) {
+        lookup.primary = rankWikidataImages(primaryEntities(lookup, planner), lookup, planner);
+
+        // fallback: try destination alone (sometimes helps for famous sights)
+        lookup.destinationFallback = lookup.destination.isBlank()
+                ? List.of()
+                : rankWikidataImages(planner.entitySearch(lookup.destination), lookup, planner);
+
+        boolean answered = planner.entitySearchAnswered(lookup.primaryQuery)
+                && planner.entitySearchAnswered(lookup.secondaryQuery)
+                && planner.entitySearchAnswered(lookup.destination);
+        List<WikidataEntity> found = new ArrayList<>(primaryEntities(lookup, planner));
+        found.addAll(planner.entitySearch(lookup.destination));
+        for (WikidataEntity entity : found) answered &= planner.entityAnswered(entity.id());
+        lookup.wikidataAnswered = answered;
+
+        log.debug("Wikidata candidates: primary='{}', secondary='{}', ranked={}, fallback={}",
+                lookup.primaryQuery, lookup.secondaryQuery, lookup.primary.size(), lookup.destinationFallback.size());
+    }
+
+    private List<WikidataEntity> primaryEntities(PlaceLookup lookup, WikimediaLookupPlanner planner) {
+        List<WikidataEntity> entities = new ArrayList<>();
+        if (!lookup.primaryQuery.isBlank()) entities.addAll(planner.entitySearch(lookup.primaryQuery));
+        if (!lookup.secondaryQuery.isBlank() && !lookup.secondaryQuery.equals(lookup.primaryQuery)) {
+            entities.addAll(planner.entitySearch(lookup.secondaryQuery));
+        }
+        return entities;
+    }
+
+    /** Round 3: batched exact-title pageimages plus search-generator queries for places Wikidata missed. */
+    private void loadWikipediaCandidates(List<PlaceLookup> lookups, WikimediaLookupPlanner planner) {
+        if (lookups.isEmpty()) return;
+
+        for (PlaceLookup lookup : lookups) {
+            // try exact title first (redirects enabled), then search generator
+            if (!lookup.name.isBlank()) {
+                planner.requestTitle(lookup.name);
+                planner.requestPageSearch(lookup.name, 8);
+            }
+            planner.requestPageSearch(lookup.wikipediaQuery(), 10);
+        }
+        planner.execute();
+
+        for (PlaceLookup lookup : lookups) {
+            List<PageImage> candidates = new ArrayList<>();
+            if (!lookup.name.isBlank()) candidates.addAll(planner.titleImages(lookup.name));
+            candidates.addAll(planner.pageSearch(lookup.wikipediaQuery(), 10));
+            if (!lookup.name.isBlank()) candidates.addAll(planner.pageSearch(lookup.name, 8));
+
+            log.debug("Wikipedia candidates: query='{}', name='{}', count={}",
+                    lookup.wikipediaQuery(), lookup.name, candidates.size());
+
+            lookup.wikipedia = rankWikipediaImages(candidates, lookup.name, lookup.destination, lookup.isHotel);
+            lookup.wikipediaAnswered = planner.pageSearchAnswered(lookup.wikipediaQuery(), 10)
+                    && (lookup.name.isBlank()
+                    || (planner.titleAnswered(lookup.name) && planner.pageSearchAnswered(lookup.name, 8)));
+        }
+    }
+
+    /**
+     * Phase 2 (plan order): same precedence as a sequential pass — best unused Wikidata hit,
+     * then the destination fallback, then Wikipedia. Wikipedia is only fetched here when every
+     * Wikidata candidate is already used by another place. De-duplication happens here only;
+     * the cache gets the place's best pick (see {@link #remember}). Marks the lookup settled when
+     * the pick rests on answered lookups only.
+     */
+    private String assign(PlaceLookup lookup, Set<String> usedImages, WikimediaLookupPlanner planner) {
+        if (lookup.isBlank()) {
+            lookup.settled = true;
+            return null;
+        }
+
+        if (lookup.cached != null) {
+            String cachedUrl = lookup.cached.url();
+            if (cachedUrl == null || !usedImages.contains(cachedUrl)) {
+                lookup.settled = true;
+                return cachedUrl;
+            }
+
+            // cached image already used in this plan: find the next best one, the cache keeps the best
+            if (lookup.primary == null) {
+                if (planner.expired()) return null;
+                loadWikidataCandidates(List.of(lookup), planner);
+            }
+        }
+        if (lookup.primary == null) return null; // cut off by the deadline
+
+        String imageUrl = firstUnused(lookup.primary, usedImages);
+        if (imageUrl == null) imageUrl = firstUnused(lookup.destinationFallback, usedImages);
+        boolean answered = lookup.wikidataAnswered;
+
+        if (imageUrl == null) {
+            if (lookup.wikipedia == null) {
+                if (planner.expired()) return null;
+                loadWikipediaCandidates(List.of(lookup), planner);
+            }
+            imageUrl = firstUnused(lookup.wikipedia, usedImages);
+            answered &= lookup.wikipediaAnswered;
+        }
+        lookup.settled = answered;
+
+        log.debug("Image pick: name='{}', url='{}'", lookup.name, imageUrl);
+        if (lookup.cached == null) remember(lookup);
+        return imageUrl;
+    }
+
+    /**
+     * Caches the top-ranked image of the place, whatever this plan's other places use. Only lookups
+     * that were all answered count: a failed or cut-off call is not evidence about the place, and
+     * a cached entry (a miss in particular) is served without asking upstream again.
+     */
+    private void remember(PlaceLookup lookup) {
+        String best = first(lookup.primary);
+        if (best == null) best = first(lookup.destinationFallback);
+        boolean answered = lookup.wikidataAnswered;
+        if (best == null) {
+            if (lookup.wikipedia == null) return; // not fetched before the deadline
+            best = first(lookup.wikipedia);
+            answered &= lookup.wikipediaAnswered;
+        }
+        if (answered) {
+            imageResolutionCache.putImage(lookup.name, lookup.destination, lookup.isHotel, best);
+        }
+    }
+
+    private static String first(List<String> ranked) {
+        return ranked == null || ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    private String firstUnused(List<String> ranked, Set<String> usedImages) {
+        for (String url : ranked) {
+            if (!usedImages.contains(url)) return url;
+        }
+        return null;
+    }
+
+    private String buildPlaceQuery(String placeName, String destination) {
+        String name = placeName != null ? placeName.trim() : "";
+        String dest = destination != null ? destination.trim() : "";
+        if (name.isBlank()) return dest;
+        if (dest.isBlank()) return name;
+
+        // slightly more specific than "name dest"
+        return name + ", " + dest;
+    }
+
+    /** Image URLs of the entities, best score first (ties keep lookup order). */
+    private List<String> rankWikidataImages(List<WikidataEntity> entities,
+                                            PlaceLookup lookup,
+                                            WikimediaLookupPlanner planner) {
+        if (entities == null || entities.isEmpty()) return List.of();
+
+        Map<String, WikidataEntity> details = new HashMap<>();
+        for (WikidataEntity entity : entities) {
+            if (entity.id() == null || entity.id().isBlank()) continue;
+            WikidataEntity loaded = planner.entity(entity.id());
+            if (loaded != null) details.put(entity.id(), loaded);
+        }
+        if (details.isEmpty()) return List.of();
+
+        ImageCandidateScorer scorer = new ImageCandidateScorer(lookup.name, lookup.destination, lookup.isHotel);
+
+        List<ScoredImage> scored = new ArrayList<>();
+        for (WikidataEntity entity : details.values()) {
+            if (entity.imageFile() == null || entity.imageFile().isBlank()) continue;
+
+            String imageUrl = buildCommonsUrl(entity.imageFile());
+            if (imageUrl == null || imageUrl.isBlank()) continue;
+
+            int score = scorer.scoreEntity(entity);
+            scored.add(new ScoredImage(imageUrl, score));
+        }
+        return ranked(scored);
+    }
+
+    private List<String> rankWikipediaImages(List<PageImage> candidates,
+                                             String name,
+                                             String destination,
+                                             boolean isHotel) {
+        if (candidates == null || candidates.isEmpty()) return List.of();
+
+        ImageCandidateScorer scorer = new ImageCandidateScorer(name, destination, isHotel);
+
+        List<ScoredImage> scored = new ArrayList<>();
+        for (PageImage candidate : candidates) {
+            String url = candidate.url();
+            if (url == null || url.isBlank()) continue;
+
+            int score = scorer.scoreTitle(candidate.title());
+            scored.add(new ScoredImage(url, score));
+        }
+        return ranked(scored);
+    }
+
+    /** Stable sort by score (desc), duplicates dropped: the first unused entry is the best unused pick. */
+    private List<String> ranked(List<ScoredImage> scored) {
+        scored.sort(Comparator.comparingInt(ScoredImage::score).reversed());
+        LinkedHashSet<String> urls = new LinkedHashSet<>();
+        for (ScoredImage image : scored) urls.add(image.url());
+        return new ArrayList<>(urls);
+    }
+
+    static String buildCommonsUrl(String imageFile) {
+        if (imageFile == null || imageFile.isBlank()) return null;
+
+        String cleaned = imageFile.trim();
+        if (cleaned.startsWith("File:")) cleaned = cleaned.substring(5);
+        cleaned = cleaned.replace(' ', '_');
+
+        // Important: let UriComponentsBuilder do encoding
+        return UriComponentsBuilder
+                .fromHttpUrl("https://commons.wikimedia.org/wiki/Special:FilePath/")
+                .path(cleaned)
+                .queryParam("width", 1200)
+                .build()
+                .toUriString();
+    }
+
+    private record PlaceKey(String name, boolean isHotel) {}
+
+    private record ImageSlot(ObjectNode node, String field, PlaceKey key) {}
+
+    private record ScoredImage(String url, int score) {}
+
+    /** Candidates for one place; a null list means "not fetched yet". */
+    private final class PlaceLookup {
+        final String name;
+        final String destination;
+        final boolean isHotel;
+        final String primaryQuery;
+        final String secondaryQuery;
+
+        ImageResolutionCache.CachedImage cached;
+        List<String> primary;
+        List<String> destinationFallback;
+        List<String> wikipedia;
+        // every lookup behind the list got an answer, so an empty list is a real miss
+        boolean wikidataAnswered;
+        boolean wikipediaAnswered;
+        // the assigned image is final: from the cache or from answered lookups
+        boolean settled;
+
+        PlaceLookup(String name, String destination, boolean isHotel) {
+            this.name = name;
+            this.destination = destination;
+            this.isHotel = isHotel;
+            this.primaryQuery = name;
+            this.secondaryQuery = buildPlaceQuery(name, destination);
+        }
+
+        boolean isBlank() {
+            return primaryQuery.isBlank() && secondaryQuery.isBlank();
+        }
+
+        String wikipediaQuery() {
+            return secondaryQuery.isBlank() ? destination : secondaryQuery;
+        }
+    }
+}
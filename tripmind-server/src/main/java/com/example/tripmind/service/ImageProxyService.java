@@ -0,0 +1,232 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.exception.BadRequestException;
+import com.example.tripmind.exception.ResourceNotFoundException;
+import com.example.tripmind.exception.ServiceUnavailableException;
+import com.example.tripmind.service.ai.SingleFlight;
+import com.example.tripmind.service.ai.Upstream;
+import com.example.tripmind.service.image.ImageDiskCache;
+import com.example.tripmind.service.image.ImageResizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves Wikimedia Commons images through this server (GET /api/public/images/commons/{file}?w=).
+ * <p>
+ * The widest variant is fetched once via {@code Special:FilePath?width=} (the redirect to
+ * upload.wikimedia.org is followed here, not by the client); narrower variants are scaled from it
+ * locally. All variants are kept in an {@link ImageDiskCache}. Itinerary JSON references these
+ * URLs instead of Commons (see {@link #publicUrl}).
+ */
+@Service
+public class ImageProxyService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProxyService.class);
+
+    public static final String PATH = "/api/public/images/commons/";
+
+    private static final String FILE_PATH_MARKER = "commons.wikimedia.org/wiki/special:filepath/";
+    private static final String UPLOAD_MARKER = "upload.wikimedia.org/wikipedia/commons/";
+
+    private final RestClient restClient;
+    private final ImageDiskCache cache;
+    private final SingleFlight<String, ImageDiskCache.Entry> loads = new SingleFlight<>();
+
+    private final List<Integer> widths;
+    private final int sourceWidth;
+    private final long maxSourceBytes;
+    private final String sourceUrl;
+    private final boolean enabled;
+    private final String publicBaseUrl;
+
+    public ImageProxyService(@Qualifier("commonsUpstream") Upstream commonsUpstream,
+                             @Value("${app.images.cache-dir:${java.io.tmpdir}/tripmind-images}") Path cacheDir,
+                             @Value("${app.images.cache-max-bytes:536870912}") long cacheMaxBytes,
+                             @Value("${app.images.widths:320,640,1200}") List<Integer> widths,
+                             @Value("${app.images.max-source-bytes:10485760}") long maxSourceBytes,
+                             @Value("${app.images.source-url:https://commons.wikimedia.org/wiki/Special:FilePath/}") String sourceUrl,
+                             @Value("${app.images.proxy-enabled:true}") boolean enabled,
+                             @Value("${app.site-url:}") String siteUrl) {
+        this.restClient = commonsUpstream.restClient();
+        this.cache = new ImageDiskCache(cacheDir, cacheMaxBytes);
+        this.widths = widths.stream().filter(w -> w > 0).sorted().distinct().toList();
+        if (this.widths.isEmpty()) throw new IllegalArgumentException("app.images.widths must list at least one width");
+        this.sourceWidth = this.widths.get(this.widths.size() - 1);
+        this.maxSourceBytes = maxSourceBytes;
+        this.sourceUrl = sourceUrl;
+        this.enabled = enabled;
+        this.publicBaseUrl = siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+    }
+
+    /**
+     * The image at one of the configured widths (0 = the widest), open for reading; the caller closes it.
+     * Other widths are rejected, so a caller cannot fill the cache with variants nobody links to.
+     */
+    public ImageDiskCache.Image variant(String file, int requestedWidth) {
+        String name = fileName(file);
+        int width = width(requestedWidth);
+        String key = key(name, width);
+
+        // a variant evicted between load and open is loaded again, once
+        for (int attempt = 1; ; attempt++) {
+            ImageDiskCache.Image cached = cache.open(key);
+            if (cached != null) return cached;
+            if (attempt > 2) throw new ServiceUnavailableException("Image cache is busy, try again shortly");
+            loads.execute(key, () -> load(name, width, key), entry -> entry);
+        }
+    }
+
+    /**
+     * Proxy URL for a Commons image URL ({@code Special:FilePath} or upload.wikimedia.org, thumbnails included);
+     * any other URL is returned unchanged.
+     */
+    public String publicUrl(String imageUrl) {
+        if (!enabled || imageUrl == null) return imageUrl;
+        String file = commonsFile(imageUrl);
+        if (file == null) return imageUrl;
+        return publicBaseUrl + PATH + UriUtils.encodePathSegment(file, StandardCharsets.UTF_8) + "?w=" + sourceWidth;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("widths", widths);
+        stats.put("cache", cache.stats());
+        stats.put("loads", loads.stats());
+        return stats;
+    }
+
+    private ImageDiskCache.Entry load(String file, int width, String key) {
+        Fetched source = width == sourceWidth ? null : cachedSource(file);
+        if (source == null) {
+            source = fetch(file, sourceWidth);
+            ImageDiskCache.Entry stored = cache.put(key(file, sourceWidth), source.bytes(), source.contentType());
+            if (width == sourceWidth) return stored;
+        }
+
+        try {
+            ImageResizer.Resized resized = ImageResizer.resize(source.bytes(), source.contentType(), width);
+            if (resized != null) return cache.put(key, resized.bytes(), resized.contentType());
+        } catch (IOException e) {
+            log.debug("Local resize failed for '{}' ({}), asking Commons for the thumbnail", file, e.toString());
+        }
+
+        // formats ImageIO cannot read (WebP, SVG): let Commons render this width
+        Fetched fetched = fetch(file, width);
+        return cache.put(key, fetched.bytes(), fetched.contentType());
+    }
+
+    private Fetched cachedSource(String file) {
+        try (ImageDiskCache.Image image = cache.open(key(file, sourceWidth))) {
+            return image == null ? null : new Fetched(image.body().readAllBytes(), image.entry().contentType());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Fetched fetch(String file, int width) {
+        URI uri = UriComponentsBuilder.fromUriString(sourceUrl)
+                .path(file)
+                .queryParam("width", width)
+                .encode()
+                .build()
+                .toUri();
+        ResponseEntity<byte[]> response;
+        try {
+            response = restClient.get().uri(uri).retrieve().toEntity(byte[].class);
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                throw new ResourceNotFoundException("Image not found: " + file);
+            }
+            throw new ServiceUnavailableException("Image source unavailable (" + e.getStatusCode().value() + ")");
+        } catch (RestClientException e) {
+            throw new ServiceUnavailableException("Image source unavailable: " + e.getMessage());
+        }
+
+        byte[] body = response.getBody();
+        MediaType type = response.getHeaders().getContentType();
+        if (body == null || body.length == 0 || type == null || !"image".equals(type.getType())) {
+            throw new BadRequestException("Not an image: " + file);
+        }
+        if (body.length > maxSourceBytes) {
+            throw new BadRequestException("Image too large: " + file);
+        }
+        return new Fetched(body, type.getType() + "/" + type.getSubtype());
+    }
+
+    private int width(int requestedWidth) {
+        if (requestedWidth <= 0) return sourceWidth;
+        if (!widths.contains(requestedWidth)) throw new BadRequestException("Image width must be one of " + widths);
+        return requestedWidth;
+    }
+
+    private static String fileName(String file) {
+        String name = file == null ? "" : file.trim();
+        if (name.regionMatches(true, 0, "File:", 0, 5)) name = name.substring(5);
+        name = name.replace(' ', '_');
+        if (name.isBlank() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new BadRequestException("Invalid image file name");
+        }
+        return name;
+    }
+
+    // file names are case-sensitive on Commons, so the key hashes the exact name
+    private static String key(String file, int width) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + "-" + width;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String commonsFile(String imageUrl) {
+        String lower = imageUrl.toLowerCase(Locale.ROOT);
+
+        int marker = lower.indexOf(FILE_PATH_MARKER);
+        if (marker >= 0) {
+            String rest = imageUrl.substring(marker + FILE_PATH_MARKER.length());
+            int query = rest.indexOf('?');
+            return decode(query >= 0 ? rest.substring(0, query) : rest);
+        }
+
+        // .../commons/a/ab/File.jpg or .../commons/thumb/a/ab/File.jpg/1200px-File.jpg
+        marker = lower.indexOf(UPLOAD_MARKER);
+        if (marker >= 0) {
+            String[] parts = imageUrl.substring(marker + UPLOAD_MARKER.length()).split("[/?]");
+            int index = parts.length > 0 && parts[0].equals("thumb") ? 3 : 2;
+            return parts.length > index ? decode(parts[index]) : null;
+        }
+        return null;
+    }
+
+    private static String decode(String segment) {
+        String decoded = UriUtils.decode(segment, StandardCharsets.UTF_8);
+        return decoded.isBlank() ? null : decoded;
+    }
+
+    private record Fetched(byte[] bytes, String contentType) {}
+}
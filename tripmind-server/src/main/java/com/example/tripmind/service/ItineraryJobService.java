@@ -0,0 +1,263 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.example.tripmind.dto.ai.ItineraryJobDtos.ItineraryJobResponse;
+import com.example.tripmind.exception.BadRequestException;
+import com.example.tripmind.exception.ResourceNotFoundException;
+import com.example.tripmind.model.ItineraryJob;
+import com.example.tripmind.model.ItineraryJobStatus;
+import com.example.tripmind.repository.ItineraryJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Postgres-backed queue for itinerary generation.
+ * Jobs are claimed with a time-limited lease that the worker renews while it runs; a job whose
+ * node dies mid-run is picked up again by any node once the lease runs out, and failed runs are retried with backoff.
+ */
+@Service
+@Transactional
+public class ItineraryJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItineraryJobService.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final long AWAIT_POLL_MS = 500;
+
+    /** A job handed to a worker: id plus the submitted input. */
+    public record ClaimedJob(UUID id, FinalPlanInput input) {}
+
+    private final ItineraryJobRepository repository;
+    private final ObjectMapper objectMapper;
+
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration retention;
+
+    public ItineraryJobService(
+            ItineraryJobRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${app.ai.jobs.lease:PT5M}") Duration lease,
+            @Value("${app.ai.jobs.max-attempts:3}") int maxAttempts,
+            @Value("${app.ai.jobs.retry-backoff:PT10S}") Duration retryBackoff,
+            @Value("${app.ai.jobs.retention:P7D}") Duration retention
+    ) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.lease = lease;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.retention = retention;
+    }
+
+    public ItineraryJobResponse submit(FinalPlanInput input) {
+        if (input == null || input.destination == null || input.destination.isBlank()) {
+            throw new BadRequestException("destination is required");
+        }
+
+        String inputJson;
+        try {
+            inputJson = objectMapper.writeValueAsString(input);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Invalid itinerary input");
+        }
+
+        ItineraryJob job = ItineraryJob.builder()
+                .status(ItineraryJobStatus.QUEUED)
+                .inputJson(inputJson)
+                .attempts(0)
+                .build();
+        return toResponse(repository.save(job));
+    }
+
+    @Transactional(readOnly = true)
+    public ItineraryJobResponse get(UUID id) {
+        return toResponse(find(id));
+    }
+
+    /**
+     * Long poll: waits up to {@code wait} for the job to finish, then returns its current state.
+     * Runs outside a transaction so no connection is held while sleeping.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ItineraryJobResponse await(UUID id, Duration wait) {
+        long deadline = System.nanoTime() + wait.toNanos();
+        ItineraryJob job = find(id);
+        while (!isFinished(job) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(AWAIT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            job = find(id);
+        }
+        return toResponse(job);
+    }
+
+    /**
+     * Locks up to {@code limit} runnable jobs and leases them to {@code owner}.
+     * Jobs that already used up their attempts (e.g. a node kept dying on them) are failed instead.
+     */
+    public List<ClaimedJob> claim(String owner, int limit) {
+        if (limit <= 0) return List.of();
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ClaimedJob> claimed = new ArrayList<>();
+
+        for (ItineraryJob job : repository.lockClaimable(now, limit)) {
+            if (job.getAttempts() >= maxAttempts) {
+                finish(job, ItineraryJobStatus.FAILED, null, "Gave up after " + job.getAttempts() + " attempts");
+                continue;
+            }
+
+            FinalPlanInput input;
+            try {
+                input = objectMapper.readValue(job.getInputJson(), FinalPlanInput.class);
+            } catch (JsonProcessingException e) {
+                finish(job, ItineraryJobStatus.FAILED, null, "Unreadable job input");
+                continue;
+            }
+
+            job.setStatus(ItineraryJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(owner);
+            job.setLeaseUntil(now.plus(lease));
+            claimed.add(new ClaimedJob(job.getId(), input));
+        }
+        return claimed;
+    }
+
+    /** Extends the lease of a running job; false when {@code owner} no longer holds it. */
+    public boolean renewLease(UUID id, String owner) {
+        return repository.renewLease(id, owner, OffsetDateTime.now().plus(lease)) > 0;
+    }
+
+    /** Stores the result, unless the lease was lost and the job now belongs to someone else. */
+    public boolean complete(UUID id, String owner, JsonNode result) {
+        ItineraryJob job = repository.findById(id).orElse(null);
+        if (!ownedBy(job, owner)) return false;
+
+        try {
+            finish(job, ItineraryJobStatus.SUCCEEDED, objectMapper.writeValueAsString(result), null);
+            return true;
+        } catch (JsonProcessingException e) {
+            finish(job, ItineraryJobStatus.FAILED, null, "Could not store itinerary");
+            return false;
+        }
+    }
+
+    /** Requeues the job with linear backoff, or fails it for good once attempts are used up. */
+    public void fail(UUID id, String owner, String error) {
+        ItineraryJob job = repository.findById(id).orElse(null);
+        if (!ownedBy(job, owner)) return;
+
+        if (job.getAttempts() >= maxAttempts) {
+            finish(job, ItineraryJobStatus.FAILED, null, error);
+            return;
+        }
+
+        job.setStatus(ItineraryJobStatus.QUEUED);
+        job.setLockedBy(null);
+        job.setLeaseUntil(null);
+        job.setRunAfter(OffsetDateTime.now().plus(retryBackoff.multipliedBy(job.getAttempts())));
+        job.setError(truncate(error));
+    }
+
+    /** Hands this node's running jobs back to the queue (shutdown), so they don't wait out their lease. */
+    public int release(String owner) {
+        List<ItineraryJob> owned = repository.findAllByStatusAndLockedBy(ItineraryJobStatus.RUNNING, owner);
+        for (ItineraryJob job : owned) {
+            job.setStatus(ItineraryJobStatus.QUEUED);
+            job.setAttempts(Math.max(0, job.getAttempts() - 1));
+            job.setLockedBy(null);
+            job.setLeaseUntil(null);
+            job.setRunAfter(OffsetDateTime.now());
+        }
+        return owned.size();
+    }
+
+    public int purgeFinished() {
+        int removed = repository.deleteFinishedBefore(
+                List.of(ItineraryJobStatus.SUCCEEDED, ItineraryJobStatus.FAILED),
+                OffsetDateTime.now().minus(retention));
+        if (removed > 0) log.info("Itinerary jobs: purged {} finished jobs", removed);
+        return removed;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (ItineraryJobStatus status : ItineraryJobStatus.values()) {
+            stats.put(status.name().toLowerCase(), repository.countByStatus(status));
+        }
+        stats.put("lease", lease.toString());
+        stats.put("maxAttempts", maxAttempts);
+        return stats;
+    }
+
+    private static boolean isFinished(ItineraryJob job) {
+        return job.getStatus() == ItineraryJobStatus.SUCCEEDED || job.getStatus() == ItineraryJobStatus.FAILED;
+    }
+
+    private boolean ownedBy(ItineraryJob job, String owner) {
+        return job != null
+                && job.getStatus() == ItineraryJobStatus.RUNNING
+                && owner.equals(job.getLockedBy());
+    }
+
+    private void finish(ItineraryJob job, ItineraryJobStatus status, String resultJson, String error) {
+        job.setStatus(status);
+        job.setResultJson(resultJson);
+        job.setError(truncate(error));
+        job.setLockedBy(null);
+        job.setLeaseUntil(null);
+        job.setFinishedAt(OffsetDateTime.now());
+    }
+
+    private ItineraryJob find(UUID id) {
+        return repository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Itinerary job not found"));
+    }
+
+    private ItineraryJobResponse toResponse(ItineraryJob job) {
+        JsonNode result = null;
+        if (job.getResultJson() != null) {
+            try {
+                result = objectMapper.readTree(job.getResultJson());
+            } catch (JsonProcessingException e) {
+                log.warn("Itinerary job {}: stored result is not valid JSON", job.getId());
+            }
+        }
+        return new ItineraryJobResponse(
+                job.getId(),
+                job.getStatus().name(),
+                job.getAttempts(),
+                result,
+                job.getError(),
+                job.getCreatedAt(),
+                job.getFinishedAt()
+        );
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
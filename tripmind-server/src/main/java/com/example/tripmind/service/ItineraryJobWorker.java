@@ -0,0 +1,175 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.service.ItineraryJobService.ClaimedJob;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-node consumer of the itinerary job queue.
+ * Polls for work only while it has free slots, so each node runs at most {@code workers} jobs;
+ * throughput scales by adding nodes that point at the same database.
+ */
+@Component
+public class ItineraryJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ItineraryJobWorker.class);
+
+    private final ItineraryJobService jobService;
+    private final AiService aiService;
+    private final ExecutorService aiTaskExecutor;
+
+    private final boolean enabled;
+    private final int workers;
+    private final Semaphore slots;
+    private final String nodeId;
+
+    private volatile boolean stopping;
+
+    // jobs running on this node -> their thread, for lease renewal and cancellation
+    private final Map<UUID, Thread> running = new ConcurrentHashMap<>();
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pollErrors = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+
+    public ItineraryJobWorker(
+            ItineraryJobService jobService,
+            AiService aiService,
+            @Qualifier("aiTaskExecutor") ExecutorService aiTaskExecutor,
+            @Value("${app.ai.jobs.enabled:true}") boolean enabled,
+            @Value("${app.ai.jobs.workers:4}") int workers
+    ) {
+        this.jobService = jobService;
+        this.aiService = aiService;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.enabled = enabled;
+        this.workers = Math.max(1, workers);
+        this.slots = new Semaphore(this.workers);
+        // "<pid>@<host>" plus a suffix so two JVMs on one host never share an owner id
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ai.jobs.poll-interval-ms:1000}", initialDelayString = "${app.ai.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled || stopping) return;
+
+        int free = slots.availablePermits();
+        if (free == 0) return;
+
+        List<ClaimedJob> jobs;
+        try {
+            jobs = jobService.claim(nodeId, free);
+        } catch (Exception e) {
+            if (pollErrors.incrementAndGet() % 60 == 1) log.warn("Itinerary jobs: claim failed: {}", e.toString());
+            return;
+        }
+
+        for (ClaimedJob job : jobs) {
+            slots.acquireUninterruptibly();
+            try {
+                aiTaskExecutor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                jobService.fail(job.id(), nodeId, "Node shutting down");
+            }
+        }
+    }
+
+    /**
+     * Renews the lease of every job still running here (interval well below {@code app.ai.jobs.lease}),
+     * so a slow build is not reclaimed and re-run by another node. A job whose lease was lost anyway
+     * (e.g. the database was unreachable for longer than the lease) is cancelled: its result would be discarded.
+     */
+    @Scheduled(fixedDelayString = "${app.ai.jobs.heartbeat-interval-ms:60000}", initialDelayString = "${app.ai.jobs.heartbeat-interval-ms:60000}")
+    public void renewLeases() {
+        running.forEach((id, thread) -> {
+            boolean held;
+            try {
+                held = jobService.renewLease(id, nodeId);
+            } catch (Exception e) {
+                log.warn("Itinerary job {}: lease renewal failed: {}", id, e.toString());
+                return; // try again on the next beat, the lease has some time left
+            }
+            if (!held && running.remove(id, thread)) {
+                leasesLost.incrementAndGet();
+                log.warn("Itinerary job {}: lease lost, cancelling the run", id);
+                thread.interrupt();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.ai.jobs.cleanup-interval-ms:3600000}", initialDelay = 60_000)
+    public void purgeFinished() {
+        if (!enabled) return;
+        try {
+            jobService.purgeFinished();
+        } catch (Exception e) {
+            log.warn("Itinerary jobs: purge failed: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        if (!enabled) return;
+        try {
+            int released = jobService.release(nodeId);
+            if (released > 0) log.info("Itinerary jobs: released {} running jobs on shutdown", released);
+        } catch (Exception e) {
+            log.warn("Itinerary jobs: release on shutdown failed: {}", e.toString());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("node", nodeId);
+        stats.put("enabled", enabled);
+        stats.put("workers", workers);
+        stats.put("busy", workers - slots.availablePermits());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("leasesLost", leasesLost.get());
+        return stats;
+    }
+
+    private void run(ClaimedJob job) {
+        Thread thread = Thread.currentThread();
+        running.put(job.id(), thread);
+        try {
+            JsonNode plan = aiService.buildItinerary(job.input());
+            if (jobService.complete(job.id(), nodeId, plan)) succeeded.incrementAndGet();
+        } catch (Exception e) {
+            if (!running.containsKey(job.id())) return; // cancelled after losing the lease; the job is someone else's
+            failed.incrementAndGet();
+            log.warn("Itinerary job {} failed: {}", job.id(), e.toString());
+            try {
+                jobService.fail(job.id(), nodeId, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            } catch (Exception storeError) {
+                // lease expiry will hand the job to another attempt
+                log.warn("Itinerary job {}: could not record failure: {}", job.id(), storeError.toString());
+            }
+        } finally {
+            running.remove(job.id(), thread);
+            Thread.interrupted(); // a late cancel must not leak into the next task
+            slots.release();
+        }
+    }
+}
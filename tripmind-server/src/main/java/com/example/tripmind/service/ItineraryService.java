@@ -7,12 +7,16 @@ import com.example.tripmind.model.Itinerary;
 import com.example.tripmind.model.Trip;
 import com.example.tripmind.repository.ItineraryRepository;
 import com.example.tripmind.repository.TripRepository;
+import com.example.tripmind.service.ai.ImageEnrichmentTracker;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -28,11 +32,16 @@ public class ItineraryService {
     private final ItineraryRepository itineraryRepository;
     private final TripRepository tripRepository;
     private final ObjectMapper objectMapper;
+    private final ImageEnrichmentTracker imageEnrichmentTracker;
+    private final PlatformTransactionManager transactionManager;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
 
     public SaveItineraryResponse saveItinerary(SaveItineraryRequest request, Authentication authentication) {
         String userEmail = authentication.getName();
 
+        // plans built with deferred images: fill in what the background pass resolved
+        String pendingImages = imageEnrichmentTracker.mergeInto(request.getItineraryData());
+
         // Validate trip ownership if tripId is provided
         if (request.getTripId() != null) {
             Trip trip = tripRepository.findById(request.getTripId())
@@ -53,6 +62,12 @@ public class ItineraryService {
                     .build();
 
             Itinerary saved = itineraryRepository.save(itinerary);
+            if (pendingImages != null) {
+                UUID itineraryId = saved.getId();
+                imageEnrichmentTracker.mergeLater(pendingImages, merge -> newTransaction().executeWithoutResult(status ->
+                        itineraryRepository.findById(itineraryId)
+                                .ifPresent(stored -> stored.setItineraryJson(merge.apply(stored.getItineraryJson())))));
+            }
             return new SaveItineraryResponse(saved.getId(), "Itinerary saved successfully");
         } catch (Exception e) {
             throw new RuntimeException("Failed to save itinerary: " + e.getMessage(), e);
@@ -128,4 +143,11 @@ public class ItineraryService {
                 .orElseThrow(() -> new ResourceNotFoundException("Itinerary not found"));
         itineraryRepository.delete(itinerary);
     }
+
+    /** Runs the late image merge in its own transaction: it happens after the save has committed. */
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
 }
@@ -5,12 +5,16 @@ import com.example.tripmind.exception.ForbiddenException;
 import com.example.tripmind.exception.ResourceNotFoundException;
 import com.example.tripmind.model.Trip;
 import com.example.tripmind.repository.TripRepository;
+import com.example.tripmind.service.ai.ImageEnrichmentTracker;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -23,11 +27,16 @@ public class TripService {
 
     private final TripRepository tripRepository;
     private final ObjectMapper objectMapper;
+    private final ImageEnrichmentTracker imageEnrichmentTracker;
+    private final PlatformTransactionManager transactionManager;
 
     @Transactional
     public SaveTripResponse save(SaveTripRequest request, Authentication authentication) {
         String userEmail = authentication.getName();
         
+        // plans built with deferred images: fill in what the background pass resolved
+        String pendingImages = imageEnrichmentTracker.mergeInto(request.getPlan());
+
         try {
             String planJson = objectMapper.writeValueAsString(request.getPlan());
             String title = request.getTitle() != null && !request.getTitle().isBlank()
@@ -54,6 +63,12 @@ public class TripService {
                     .build();
 
             Trip saved = tripRepository.save(trip);
+            if (pendingImages != null) {
+                UUID tripId = saved.getId();
+                imageEnrichmentTracker.mergeLater(pendingImages, merge -> newTransaction().executeWithoutResult(status ->
+                        tripRepository.findById(tripId)
+                                .ifPresent(stored -> stored.setPlanJson(merge.apply(stored.getPlanJson())))));
+            }
             return new SaveTripResponse(saved.getId());
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Failed to serialize trip plan: " + e.getMessage(), e);
@@ -78,4 +93,11 @@ public class TripService {
         
         return trip;
     }
+
+    /** Runs the late image merge in its own transaction: it happens after the save has committed. */
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
 }
@@ -0,0 +1,24 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.ChatDtos.ChatRequest;
+import com.example.tripmind.dto.ai.ChatDtos.Msg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Identity of a chat turn for coalescing: the transcript (role + trimmed content) and requested model. */
+public record ChatRequestKey(String model, List<String> turns) {
+
+    public static ChatRequestKey of(ChatRequest request) {
+        List<String> turns = new ArrayList<>();
+        if (request.messages != null) {
+            for (Msg message : request.messages) {
+                if (message == null) continue;
+                String role = message.role != null ? message.role.trim() : "";
+                String content = message.content != null ? message.content.trim() : "";
+                turns.add(role + ":" + content);
+            }
+        }
+        return new ChatRequestKey(request.model != null ? request.model.trim() : "", List.copyOf(turns));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.ChatDtos.Msg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side state of one planner conversation: the slots collected so far
+ * (same names as {@link com.example.tripmind.dto.ai.FinalPlanInput}) and a bounded transcript.
+ * Callers synchronize on the session while running a turn.
+ */
+public class ChatSession {
+
+    /** Slot names in the order the planner asks for them. */
+    public static final List<String> SLOTS = List.of(
+            "source", "destination", "groupSize", "budget", "tripDurationDays", "interests", "specialReq");
+
+    private final String id;
+    private final int maxMessages;
+    private final int maxMessageLength;
+
+    private final Map<String, Object> state = new LinkedHashMap<>();
+    private final List<Msg> transcript = new ArrayList<>();
+    private String ui = "source";
+
+    public ChatSession(String id, int maxMessages, int maxMessageLength) {
+        this.id = id;
+        this.maxMessages = maxMessages;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String ui() {
+        return ui;
+    }
+
+    public Map<String, Object> state() {
+        return state;
+    }
+
+    public List<Msg> transcript() {
+        return transcript;
+    }
+
+    /** Last assistant message, i.e. the question the user is answering. */
+    public String lastAssistantMessage() {
+        for (int i = transcript.size() - 1; i >= 0; i--) {
+            if ("assistant".equals(transcript.get(i).role)) return transcript.get(i).content;
+        }
+        return null;
+    }
+
+    public void record(String userMessage, String assistantMessage, String nextUi) {
+        append("user", userMessage);
+        append("assistant", assistantMessage);
+        if (nextUi != null && !nextUi.isBlank()) ui = nextUi;
+    }
+
+    /**
+     * Merges slot values reported by the model. Unknown keys are ignored, null/blank values leave the slot as is,
+     * and each value is coerced to the type the itinerary builder expects.
+     */
+    public void mergeState(Map<String, Object> update) {
+        if (update == null) return;
+        for (String slot : SLOTS) {
+            Object value = coerce(slot, update.get(slot));
+            if (value != null) state.put(slot, value);
+        }
+    }
+
+    /** Stores an already-validated slot value as is (e.g. "" for "no special requirements"). */
+    public void put(String slot, Object value) {
+        state.put(slot, value);
+    }
+
+    private void append(String role, String content) {
+        Msg message = new Msg();
+        message.role = role;
+        message.content = content != null && content.length() > maxMessageLength
+                ? content.substring(0, maxMessageLength)
+                : content;
+        transcript.add(message);
+        while (transcript.size() > maxMessages) {
+            transcript.remove(0);
+        }
+    }
+
+    private static Object coerce(String slot, Object value) {
+        if (value == null) return null;
+        switch (slot) {
+            case "tripDurationDays": {
+                if (value instanceof Number number) return number.intValue() > 0 ? number.intValue() : null;
+                String digits = value.toString().replaceAll("[^0-9]", "");
+                if (digits.isEmpty() || digits.length() > 3) return null;
+                int days = Integer.parseInt(digits);
+                return days > 0 ? days : null;
+            }
+            case "interests": {
+                List<String> interests = new ArrayList<>();
+                if (value instanceof Collection<?> items) {
+                    for (Object item : items) {
+                        if (item != null && !item.toString().isBlank()) interests.add(item.toString().trim());
+                    }
+                } else if (!value.toString().isBlank()) {
+                    for (String item : value.toString().split(",")) {
+                        if (!item.isBlank()) interests.add(item.trim());
+                    }
+                }
+                return interests;
+            }
+            default: {
+                String text = value.toString().trim();
+                return text.isEmpty() || "null".equalsIgnoreCase(text) ? null : text;
+            }
+        }
+    }
+}
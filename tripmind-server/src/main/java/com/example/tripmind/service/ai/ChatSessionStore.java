@@ -0,0 +1,62 @@
+package com.example.tripmind.service.ai;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory planner sessions. Bounded by session count (LRU) and per-session transcript size;
+ * a session expires after {@code idle-ttl} without a new message.
+ */
+@Component
+public class ChatSessionStore {
+
+    private final TtlLruCache<String, ChatSession> sessions;
+    private final Duration idleTtl;
+    private final int maxMessages;
+    private final int maxMessageLength;
+
+    public ChatSessionStore(
+            @Value("${app.ai.chat-session.max-sessions:10000}") int maxSessions,
+            @Value("${app.ai.chat-session.idle-ttl:PT30M}") Duration idleTtl,
+            @Value("${app.ai.chat-session.max-messages:40}") int maxMessages,
+            @Value("${app.ai.chat-session.max-message-length:2000}") int maxMessageLength
+    ) {
+        this.sessions = new TtlLruCache<>(maxSessions);
+        this.idleTtl = idleTtl;
+        this.maxMessages = Math.max(2, maxMessages);
+        this.maxMessageLength = Math.max(1, maxMessageLength);
+    }
+
+    /** Returns the live session, or null when unknown or expired. */
+    public ChatSession get(String id) {
+        if (id == null || id.isBlank()) return null;
+        return sessions.get(id);
+    }
+
+    public ChatSession create() {
+        ChatSession session = new ChatSession(UUID.randomUUID().toString(), maxMessages, maxMessageLength);
+        sessions.put(session.id(), session, idleTtl);
+        return session;
+    }
+
+    /** Restarts the idle timer after a turn. */
+    public void touch(ChatSession session) {
+        sessions.put(session.id(), session, idleTtl);
+    }
+
+    public boolean remove(String id) {
+        return id != null && sessions.remove(id) != null;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(sessions.stats());
+        stats.put("idleTtl", idleTtl.toString());
+        stats.put("maxMessages", maxMessages);
+        return stats;
+    }
+}
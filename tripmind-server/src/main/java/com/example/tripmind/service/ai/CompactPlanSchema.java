@@ -0,0 +1,145 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Short-key wire format the model writes plans in, and its expansion to the {@code trip_plan} shape
+ * clients and the database use. Keys like {@code time_travel_each_location} repeated for every activity
+ * were a large share of the output tokens; here they are one token each, coordinates are a
+ * {@code [lat, lng]} pair, image fields are left out (the backend adds them) and the trip header is
+ * filled from the input instead of being echoed back.
+ * <p>
+ * Expansion is lenient: objects already in the long form pass through unchanged, so a model that
+ * ignores the instructions still produces a valid plan.
+ */
+public final class CompactPlanSchema {
+
+    /** Roots of a compact plan; {@link ItineraryStreamParser} also knows these. */
+    public static final String HOTELS = "hotels";
+    public static final String DAYS = "days";
+
+    /** Hotels the prompts ask for (upper bound), for the token budget. */
+    public static final int MAX_HOTELS = 8;
+
+    // rough compact sizes: a hotel, a day of ~4 activities, the wrapper; +25% headroom
+    private static final int TOKENS_PER_HOTEL = 90;
+    private static final int TOKENS_PER_DAY = 450;
+    private static final int TOKENS_BASE = 100;
+    private static final int MIN_TOKENS = 1024;
+    private static final int MAX_TOKENS = 8000;
+
+    public static final String HOTEL_SCHEMA = """
+      HOTEL: {"n": "hotel name", "addr": "address", "price": "price per night", "c": [latitude, longitude], "r": rating, "desc": "short description"}
+    """;
+
+    public static final String DAY_SCHEMA = """
+      DAY: {"d": day number, "plan": "day plan", "best": "best time of day", "acts": [ACTIVITY]}
+      ACTIVITY: {"n": "place name", "desc": "place details", "c": [latitude, longitude], "addr": "address", "price": "ticket pricing", "time": "travel time to this place", "best": "best time to visit"}
+    """;
+
+    public static final String RULES = """
+      - Use exactly these short keys, no other keys and no image fields (the backend adds images).
+      - latitude, longitude and rating are numbers.
+    """;
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private CompactPlanSchema() {
+    }
+
+    /** max_tokens for a completion with this many days and hotels, within [1024, 8000]. */
+    public static int maxTokens(int days, int hotels) {
+        long estimate = TOKENS_BASE + (long) days * TOKENS_PER_DAY + (long) hotels * TOKENS_PER_HOTEL;
+        return (int) Math.max(MIN_TOKENS, Math.min(MAX_TOKENS, estimate * 5 / 4));
+    }
+
+    /**
+     * {@code {"hotels": [...], "days": [...]}} to {@code {"trip_plan": {...}}} with the header from
+     * {@code input}. A root that already has {@code trip_plan} is returned as is.
+     */
+    public static JsonNode expandPlan(JsonNode compact, FinalPlanInput input) {
+        if (compact.has("trip_plan")) return compact;
+
+        ArrayNode hotels = NODES.arrayNode();
+        for (JsonNode hotel : compact.path(HOTELS)) hotels.add(expandHotel(hotel));
+        ArrayNode days = NODES.arrayNode();
+        JsonNode source = compact.has(DAYS) ? compact.path(DAYS) : compact.path("itinerary");
+        for (JsonNode day : source) days.add(expandDay(day));
+
+        ObjectNode root = NODES.objectNode();
+        root.set("trip_plan", tripPlan(input, hotels, days));
+        return root;
+    }
+
+    /** The {@code trip_plan} object: header fields from the input, then hotels and itinerary. */
+    public static ObjectNode tripPlan(FinalPlanInput input, ArrayNode hotels, ArrayNode itinerary) {
+        ObjectNode tripPlan = NODES.objectNode();
+        tripPlan.put("origin", input.source);
+        tripPlan.put("destination", input.destination);
+        tripPlan.put("duration_days", itinerary.size());
+        tripPlan.put("budget", input.budget);
+        tripPlan.put("group_size", input.groupSize);
+        ArrayNode interests = tripPlan.putArray("interests");
+        if (input.interests != null) input.interests.forEach(interests::add);
+        tripPlan.put("special_requirements", input.specialReq);
+        tripPlan.set("hotels", hotels);
+        tripPlan.set("itinerary", itinerary);
+        return tripPlan;
+    }
+
+    public static JsonNode expandHotel(JsonNode hotel) {
+        if (!hotel.isObject() || hotel.has("hotel_name")) return hotel;
+        ObjectNode expanded = NODES.objectNode();
+        expanded.set("hotel_name", hotel.path("n"));
+        expanded.set("hotel_address", hotel.path("addr"));
+        expanded.set("price_per_night", hotel.path("price"));
+        expanded.putNull("hotel_image_url");
+        expanded.set("geo_coordinates", coordinates(hotel.path("c")));
+        expanded.set("rating", hotel.path("r"));
+        expanded.set("description", hotel.path("desc"));
+        return withoutMissing(expanded);
+    }
+
+    public static JsonNode expandDay(JsonNode day) {
+        if (!day.isObject() || day.has("activities")) return day;
+        ObjectNode expanded = NODES.objectNode();
+        expanded.set("day", day.path("d"));
+        expanded.set("day_plan", day.path("plan"));
+        expanded.set("best_time_to_visit_day", day.path("best"));
+        ArrayNode activities = expanded.putArray("activities");
+        for (JsonNode activity : day.path("acts")) activities.add(expandActivity(activity));
+        return withoutMissing(expanded);
+    }
+
+    static JsonNode expandActivity(JsonNode activity) {
+        if (!activity.isObject() || activity.has("place_name")) return activity;
+        ObjectNode expanded = NODES.objectNode();
+        expanded.set("place_name", activity.path("n"));
+        expanded.set("place_details", activity.path("desc"));
+        expanded.putNull("place_image_url");
+        expanded.set("geo_coordinates", coordinates(activity.path("c")));
+        expanded.set("place_address", activity.path("addr"));
+        expanded.set("ticket_pricing", activity.path("price"));
+        expanded.set("time_travel_each_location", activity.path("time"));
+        expanded.set("best_time_to_visit", activity.path("best"));
+        return withoutMissing(expanded);
+    }
+
+    // [lat, lng] -> {"latitude", "longitude"}; an object is kept
+    private static JsonNode coordinates(JsonNode value) {
+        if (!value.isArray() || value.size() < 2) return value;
+        ObjectNode coordinates = NODES.objectNode();
+        coordinates.set("latitude", value.get(0));
+        coordinates.set("longitude", value.get(1));
+        return coordinates;
+    }
+
+    private static ObjectNode withoutMissing(ObjectNode node) {
+        node.properties().removeIf(field -> field.getValue().isMissingNode());
+        return node;
+    }
+}
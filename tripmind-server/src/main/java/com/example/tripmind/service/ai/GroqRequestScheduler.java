@@ -0,0 +1,377 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paces every Groq call against the account's requests-per-minute and tokens-per-minute quotas
+ * instead of running into 429s.
+ * <p>
+ * Two local token buckets (requests, tokens) refill continuously and are re-synced from the
+ * {@code x-ratelimit-*} headers of each response. A call costs one request plus an estimate of
+ * {@code max_tokens} + prompt size. Waiting calls queue FIFO per priority; chat turns go first,
+ * but after {@code chat-burst} chat grants a waiting itinerary build gets its turn.
+ * <p>
+ * Installed twice on the Groq upstream: as a RestClient interceptor in front of the {@link UpstreamGuard}, so
+ * a call queues for quota before it takes a connection slot, and as the guard's per-attempt {@link #attempts()},
+ * so every retry the guard makes (429s included) queues again and each response's headers are read.
+ * Callers tag requests with {@link #PRIORITY}.
+ */
+@Component
+public class GroqRequestScheduler implements ClientHttpRequestInterceptor {
+
+    /** Request attribute carrying a {@link Priority}; untagged requests are treated as {@link Priority#BUILD}. */
+    public static final String PRIORITY = GroqRequestScheduler.class.getName() + ".priority";
+
+    public enum Priority { CHAT, BUILD }
+
+    // grant taken by intercept() for the first attempt (its token cost)
+    private static final String GRANT = GroqRequestScheduler.class.getName() + ".grant";
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final int DEFAULT_MAX_TOKENS = 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+
+    private final Deque<Ticket> chatQueue = new ArrayDeque<>();
+    private final Deque<Ticket> buildQueue = new ArrayDeque<>();
+
+    private final Duration chatMaxWait;
+    private final Duration buildMaxWait;
+    private final int chatBurst;
+
+    // guarded by lock
+    private double requestLimit;
+    private double tokenLimit;
+    private double requestsAvailable;
+    private double tokensAvailable;
+    private long lastRefillNanos = System.nanoTime();
+    private long blockedUntilNanos = System.nanoTime();
+    private long inFlightTokens;
+    private int chatStreak;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong totalWaitMs = new AtomicLong();
+
+    public GroqRequestScheduler(
+            @Value("${app.ai.groq.requests-per-minute:30}") int requestsPerMinute,
+            @Value("${app.ai.groq.tokens-per-minute:12000}") int tokensPerMinute,
+            @Value("${app.ai.groq.chat-max-wait:20s}") Duration chatMaxWait,
+            @Value("${app.ai.groq.build-max-wait:120s}") Duration buildMaxWait,
+            @Value("${app.ai.groq.chat-burst:4}") int chatBurst
+    ) {
+        this.requestLimit = Math.max(1, requestsPerMinute);
+        this.tokenLimit = Math.max(1, tokensPerMinute);
+        this.requestsAvailable = requestLimit;
+        this.tokensAvailable = tokenLimit;
+        this.chatMaxWait = chatMaxWait;
+        this.buildMaxWait = buildMaxWait;
+        this.chatBurst = Math.max(1, chatBurst);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        long cost = estimateTokens(body);
+
+        acquire(priority(request), cost);
+        request.getAttributes().put(GRANT, cost);
+        try {
+            return execution.execute(request, body);
+        } finally {
+            request.getAttributes().remove(GRANT);
+            release(cost);
+        }
+    }
+
+    /** Per-attempt half, installed inside the guard: the first attempt uses the call's grant, retries queue again. */
+    public ClientHttpRequestInterceptor attempts() {
+        return (request, body, execution) -> {
+            Object grant = request.getAttributes().remove(GRANT);
+            boolean retry = !(grant instanceof Long);
+            long cost = grant instanceof Long granted ? granted : estimateTokens(body);
+            if (retry) {
+                acquire(priority(request), cost);
+                retries.incrementAndGet();
+            }
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                observe(response.getStatusCode().value(), response.getHeaders(), cost);
+                return response;
+            } finally {
+                if (retry) release(cost);
+            }
+        };
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            stats.put("requestsPerMinute", (long) requestLimit);
+            stats.put("tokensPerMinute", (long) tokenLimit);
+            stats.put("requestsAvailable", (long) requestsAvailable);
+            stats.put("tokensAvailable", (long) tokensAvailable);
+            stats.put("queuedChat", chatQueue.size());
+            stats.put("queuedBuild", buildQueue.size());
+            stats.put("inFlightTokens", inFlightTokens);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("granted", granted.get());
+        stats.put("delayed", delayed.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("retries", retries.get());
+        stats.put("totalWaitMs", totalWaitMs.get());
+        return stats;
+    }
+
+    /** ---------- Admission ---------- */
+
+    // identity matters: equal-looking tickets of different callers must stay distinct in the queues
+    private static final class Ticket {
+        private final Priority priority;
+        private final long cost;
+
+        Ticket(Priority priority, long cost) {
+            this.priority = priority;
+            this.cost = cost;
+        }
+
+        long cost() {
+            return cost;
+        }
+    }
+
+    private void acquire(Priority priority, long cost) throws IOException {
+        Ticket ticket = new Ticket(priority, cost);
+        Duration maxWait = priority == Priority.CHAT ? chatMaxWait : buildMaxWait;
+        long start = System.nanoTime();
+        long deadline = start + maxWait.toNanos();
+        boolean waited = false;
+
+        lock.lock();
+        try {
+            queueOf(priority).addLast(ticket);
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                if (next() == ticket && affordable(ticket, now)) {
+                    queueOf(priority).removeFirst();
+                    requestsAvailable -= 1;
+                    tokensAvailable -= cappedCost(ticket);
+                    inFlightTokens += ticket.cost();
+                    countGrant(priority);
+                    changed.signalAll();
+                    break;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    queueOf(priority).remove(ticket);
+                    timedOut.incrementAndGet();
+                    changed.signalAll();
+                    throw new ServiceUnavailableException("AI service is at capacity, please retry shortly");
+                }
+
+                waited = true;
+                changed.awaitNanos(Math.min(remaining, nanosUntilAffordable(next(), now)));
+            }
+        } catch (InterruptedException e) {
+            queueOf(priority).remove(ticket);
+            changed.signalAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Groq quota");
+        } finally {
+            lock.unlock();
+        }
+
+        granted.incrementAndGet();
+        if (waited) {
+            delayed.incrementAndGet();
+            totalWaitMs.addAndGet((System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void release(long cost) {
+        lock.lock();
+        try {
+            inFlightTokens -= cost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Priority priority(HttpRequest request) {
+        return request.getAttributes().get(PRIORITY) instanceof Priority p ? p : Priority.BUILD;
+    }
+
+    private Deque<Ticket> queueOf(Priority priority) {
+        return priority == Priority.CHAT ? chatQueue : buildQueue;
+    }
+
+    /** Chat first, unless builds are waiting and chat already had {@code chatBurst} turns in a row. */
+    private Ticket next() {
+        if (!chatQueue.isEmpty() && (buildQueue.isEmpty() || chatStreak < chatBurst)) return chatQueue.peekFirst();
+        return buildQueue.peekFirst();
+    }
+
+    private void countGrant(Priority priority) {
+        if (priority == Priority.CHAT) {
+            chatStreak = buildQueue.isEmpty() ? 0 : chatStreak + 1;
+        } else {
+            chatStreak = 0;
+        }
+    }
+
+    private boolean affordable(Ticket ticket, long now) {
+        return now - blockedUntilNanos >= 0
+                && requestsAvailable >= 1
+                && tokensAvailable >= cappedCost(ticket);
+    }
+
+    private long nanosUntilAffordable(Ticket ticket, long now) {
+        if (ticket == null) return TimeUnit.MILLISECONDS.toNanos(50);
+
+        long wait = Math.max(0, blockedUntilNanos - now);
+        if (requestsAvailable < 1) {
+            wait = Math.max(wait, (long) ((1 - requestsAvailable) * NANOS_PER_MINUTE / requestLimit));
+        }
+        double tokensNeeded = cappedCost(ticket) - tokensAvailable;
+        if (tokensNeeded > 0) {
+            wait = Math.max(wait, (long) (tokensNeeded * NANOS_PER_MINUTE / tokenLimit));
+        }
+        return Math.max(wait, TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    // a single request larger than the whole minute's budget still runs once the bucket is full
+    private double cappedCost(Ticket ticket) {
+        return Math.min(ticket.cost(), tokenLimit);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) return;
+        requestsAvailable = Math.min(requestLimit, requestsAvailable + requestLimit * elapsed / NANOS_PER_MINUTE);
+        tokensAvailable = Math.min(tokenLimit, tokensAvailable + tokenLimit * elapsed / NANOS_PER_MINUTE);
+        lastRefillNanos = now;
+    }
+
+    /** ---------- Rate-limit headers ---------- */
+
+    private void observe(int status, HttpHeaders headers, long cost) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+
+            // Groq: *-tokens headers are per minute, *-requests headers are per day
+            Double limitTokens = number(headers, "x-ratelimit-limit-tokens");
+            Double remainingTokens = number(headers, "x-ratelimit-remaining-tokens");
+            Double remainingRequests = number(headers, "x-ratelimit-remaining-requests");
+
+            if (limitTokens != null && limitTokens > 0) tokenLimit = limitTokens;
+
+            // server's view, minus what other in-flight calls have reserved but not yet spent
+            if (remainingTokens != null) {
+                tokensAvailable = Math.min(tokenLimit, Math.max(0, remainingTokens - (inFlightTokens - cost)));
+            }
+            if (remainingRequests != null && remainingRequests <= 0) {
+                Duration reset = duration(headers.getFirst("x-ratelimit-reset-requests"));
+                if (reset != null) blockedUntilNanos = Math.max(blockedUntilNanos, now + reset.toNanos());
+            }
+
+            if (status == 429) {
+                rateLimited.incrementAndGet();
+                Duration wait = duration(headers.getFirst(HttpHeaders.RETRY_AFTER));
+                if (wait == null) wait = duration(headers.getFirst("x-ratelimit-reset-tokens"));
+                if (wait == null) wait = Duration.ofSeconds(1);
+                blockedUntilNanos = Math.max(blockedUntilNanos, now + wait.toNanos());
+            } else if (remainingTokens != null && remainingTokens <= 0) {
+                Duration reset = duration(headers.getFirst("x-ratelimit-reset-tokens"));
+                if (reset != null) blockedUntilNanos = Math.max(blockedUntilNanos, now + reset.toNanos());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** max_tokens from the request plus ~4 bytes per prompt token. */
+    private long estimateTokens(byte[] body) {
+        if (body == null || body.length == 0) return DEFAULT_MAX_TOKENS;
+        long promptTokens = body.length / 4L;
+        try {
+            return promptTokens + objectMapper.readTree(body).path("max_tokens").asInt(DEFAULT_MAX_TOKENS);
+        } catch (IOException e) {
+            return promptTokens + DEFAULT_MAX_TOKENS;
+        }
+    }
+
+    private static Double number(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Parses "2", "7.66s", "2m59.56s", "120ms" style values. */
+    static Duration duration(String value) {
+        if (value == null || value.isBlank()) return null;
+        String text = value.trim();
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(text) * 1000));
+        } catch (NumberFormatException ignored) {
+            // unit form below
+        }
+
+        Matcher matcher = DURATION_PART.matcher(text);
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return found ? Duration.ofMillis((long) millis) : null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.tripmind.service.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scores Wikidata entities and Wikipedia titles for one place lookup.
+ * <p>
+ * The place name and destination are normalized and tokenized once; each candidate is normalized
+ * into a reusable buffer and matched against them with plain char scans, so scoring a candidate
+ * allocates nothing. Not thread-safe: create one per lookup.
+ */
+public final class ImageCandidateScorer {
+
+    static final Set<String> HOTEL_INSTANCE_OF = Set.of(
+            "Q27686",   // hotel
+            "Q675196",  // hostel
+            "Q875157",  // resort
+            "Q217175",  // inn
+            "Q24127145" // boutique hotel
+    );
+
+    static final Set<String> ATTRACTION_INSTANCE_OF = Set.of(
+            "Q41176",   // building
+            "Q23413",   // castle
+            "Q16560",   // palace
+            "Q33506",   // museum
+            "Q16970",   // church
+            "Q2977",    // cathedral
+            "Q163577",  // basilica
+            "Q12280",   // bridge
+            "Q4989906", // monument
+            "Q22698",   // park
+            "Q174782",  // square
+            "Q11032",   // zoo
+            "Q811979"   // historical landmark
+    );
+
+    private static final Set<String> DISALLOWED_INSTANCE_OF = Set.of(
+            "Q5" // human
+    );
+
+    private static final char[] HOTEL = "hotel".toCharArray();
+    private static final char[] RESORT = "resort".toCharArray();
+
+    private final char[] name;
+    private final char[] destination;
+    // name tokens of 3+ chars, in order and with repeats: each occurrence scores
+    private final char[][] tokens;
+    private final boolean isHotel;
+
+    private char[] buffer = new char[64];
+
+    public ImageCandidateScorer(String placeName, String destination, boolean isHotel) {
+        this.name = TextNormalizer.normalize(placeName).toCharArray();
+        this.destination = TextNormalizer.normalize(destination).toCharArray();
+        this.tokens = tokenize(name);
+        this.isHotel = isHotel;
+    }
+
+    /** Wikipedia pageimages candidate, by page title. */
+    public int scoreTitle(String title) {
+        int length = normalizeIntoBuffer(title);
+        int score = 0;
+
+        if (name.length > 0 && contains(buffer, length, name)) score += 20;
+        if (destination.length > 0 && contains(buffer, length, destination)) score += 6;
+
+        if (isHotel && contains(buffer, length, HOTEL)) score += 6;
+
+        return score + tokenScore(length);
+    }
+
+    /** Wikidata entity, by label, description (hotels only) and instance-of classes. */
+    public int scoreEntity(WikidataEntity entity) {
+        int length = normalizeIntoBuffer(entity.label());
+        int score = 0;
+
+        if (name.length > 0 && contains(buffer, length, name)) score += 25;
+        if (destination.length > 0 && contains(buffer, length, destination)) score += 6;
+
+        score += tokenScore(length);
+
+        if (isHotel) {
+            if (containsAny(entity.instanceOf(), HOTEL_INSTANCE_OF)) score += 18;
+            int descriptionLength = normalizeIntoBuffer(entity.description());
+            if (contains(buffer, descriptionLength, HOTEL) || contains(buffer, descriptionLength, RESORT)) score += 10;
+        } else {
+            if (containsAny(entity.instanceOf(), ATTRACTION_INSTANCE_OF)) score += 10;
+        }
+
+        if (containsAny(entity.instanceOf(), DISALLOWED_INSTANCE_OF)) score -= 50;
+
+        return score;
+    }
+
+    private int tokenScore(int length) {
+        int score = 0;
+        for (char[] token : tokens) {
+            if (contains(buffer, length, token)) score += 2;
+        }
+        return score;
+    }
+
+    private int normalizeIntoBuffer(String value) {
+        if (value == null) return 0;
+        if (buffer.length <= value.length()) buffer = new char[value.length() + 1];
+        return TextNormalizer.normalize(value, buffer);
+    }
+
+    private static char[][] tokenize(char[] normalized) {
+        List<char[]> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= normalized.length; i++) {
+            if (i == normalized.length || normalized[i] == ' ') {
+                if (i - start >= 3) tokens.add(Arrays.copyOfRange(normalized, start, i));
+                start = i + 1;
+            }
+        }
+        return tokens.toArray(new char[0][]);
+    }
+
+    private static boolean contains(char[] text, int length, char[] pattern) {
+        int last = length - pattern.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (text[i + j] != pattern[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean containsAny(List<String> values, Set<String> allowed) {
+        if (values == null || values.isEmpty()) return false;
+        for (String value : values) {
+            if (allowed.contains(value)) return true;
+        }
+        return false;
+    }
+}
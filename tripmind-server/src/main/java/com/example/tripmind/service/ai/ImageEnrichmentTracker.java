@@ -0,0 +1,265 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Image enrichment that runs after the plan was returned ("deferred images").
+ * <p>
+ * The plan carries {@link #ID_FIELD} inside {@code trip_plan}; the resolved URLs are kept here as a
+ * patch addressed by hotel index and by (day, activity) index:
+ * <pre>
+ * { "id": "...", "status": "pending|done|failed",
+ *   "hotels":     [ { "index": 0, "hotel_image_url": "..." } ],
+ *   "activities": [ { "day": 0, "index": 2, "place_image_url": "..." } ] }
+ * </pre>
+ * In memory and per node, bounded by count (LRU) and TTL, like the chat sessions.
+ */
+@Component
+public class ImageEnrichmentTracker {
+
+    public static final String ID_FIELD = "image_enrichment_id";
+
+    private static final Logger log = LoggerFactory.getLogger(ImageEnrichmentTracker.class);
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final TtlLruCache<String, CompletableFuture<ObjectNode>> enrichments;
+    private final Duration ttl;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong pendingOnSave = new AtomicLong();
+    private final AtomicLong mergedLater = new AtomicLong();
+    private final AtomicLong lateMergeFailed = new AtomicLong();
+
+    public ImageEnrichmentTracker(
+            @Value("${app.ai.enrichment.deferred.max-entries:2000}") int maxEntries,
+            @Value("${app.ai.enrichment.deferred.ttl:PT10M}") Duration ttl
+    ) {
+        this.enrichments = new TtlLruCache<>(maxEntries);
+        this.ttl = ttl;
+    }
+
+    /** Registers a new pending enrichment and returns its id. */
+    public String start() {
+        String id = UUID.randomUUID().toString();
+        enrichments.put(id, new CompletableFuture<>(), ttl);
+        started.incrementAndGet();
+        return id;
+    }
+
+    /** Records the image URLs of the enriched plan. */
+    public void complete(String id, JsonNode enrichedPlan) {
+        CompletableFuture<ObjectNode> enrichment = enrichments.get(id);
+        if (enrichment == null) return;
+        enrichment.complete(patchOf(id, enrichedPlan));
+        completed.incrementAndGet();
+    }
+
+    public void fail(String id) {
+        CompletableFuture<ObjectNode> enrichment = enrichments.get(id);
+        if (enrichment == null) return;
+        enrichment.complete(emptyPatch(id, "failed"));
+        failed.incrementAndGet();
+    }
+
+    /** Completes with the final patch; null when the id is unknown or expired. */
+    public CompletableFuture<ObjectNode> whenDone(String id) {
+        return id == null ? null : enrichments.get(id);
+    }
+
+    /** Final patch, or a "pending" one when not done within {@code wait}; null when unknown. */
+    public ObjectNode patch(String id, Duration wait) {
+        CompletableFuture<ObjectNode> enrichment = whenDone(id);
+        if (enrichment == null) return null;
+        try {
+            return wait.isZero() || wait.isNegative()
+                    ? enrichment.getNow(emptyPatch(id, "pending"))
+                    : enrichment.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return emptyPatch(id, "pending");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return emptyPatch(id, "pending");
+        } catch (ExecutionException e) {
+            return emptyPatch(id, "failed");
+        }
+    }
+
+    /**
+     * For saves: when the plan (or its {@code trip_plan}) carries an enrichment id whose images are
+     * already resolved, fills every image field that is still empty and removes the id. Never waits:
+     * saves run in a transaction on the CRUD lane. When the pass is still running the id stays in the
+     * plan and is returned, so the caller can {@link #mergeLater} into the row it stores.
+     */
+    public String mergeInto(Map<String, Object> plan) {
+        Map<String, Object> tripPlan = tripPlan(plan);
+        if (tripPlan == null || !(tripPlan.get(ID_FIELD) instanceof String enrichmentId)) return null;
+
+        ObjectNode patch = patch(enrichmentId, Duration.ZERO);
+        if (patch != null && "pending".equals(patch.path("status").asText())) {
+            pendingOnSave.incrementAndGet();
+            return enrichmentId;
+        }
+        if (apply(tripPlan, patch)) merged.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Once the current transaction commits and the pass {@code id} finishes, calls {@code update} with a
+     * function that merges the patch into a stored plan JSON. The update runs on the thread that finished
+     * the pass (or right after the commit when it already has) and must bring its own transaction.
+     * Like the patches themselves this only works on the node that runs the pass.
+     */
+    public void mergeLater(String id, Consumer<UnaryOperator<String>> update) {
+        CompletableFuture<ObjectNode> enrichment = whenDone(id);
+        if (enrichment == null) return;
+        Runnable register = () -> enrichment.thenAccept(patch -> {
+            try {
+                update.accept(planJson -> mergeInto(planJson, patch));
+            } catch (RuntimeException e) {
+                lateMergeFailed.incrementAndGet();
+                log.warn("Could not merge deferred images {} into the saved plan: {}", id, e.toString());
+            }
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            register.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                register.run();
+            }
+        });
+    }
+
+    private String mergeInto(String planJson, ObjectNode patch) {
+        try {
+            Map<String, Object> plan = JSON.readValue(planJson, new TypeReference<>() {});
+            Map<String, Object> tripPlan = tripPlan(plan);
+            if (tripPlan == null || !patch.path("id").asText().equals(tripPlan.get(ID_FIELD))) return planJson;
+            if (apply(tripPlan, patch)) mergedLater.incrementAndGet();
+            return JSON.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable saved plan", e);
+        }
+    }
+
+    /** Fills the empty image fields of a done patch and drops the id; other patches only drop the id. */
+    private static boolean apply(Map<String, Object> tripPlan, ObjectNode patch) {
+        tripPlan.remove(ID_FIELD);
+        if (patch == null || !"done".equals(patch.path("status").asText())) return false;
+
+        for (JsonNode hotel : patch.path("hotels")) {
+            Map<String, Object> target = element(tripPlan.get("hotels"), hotel.path("index").asInt(-1));
+            fillIfEmpty(target, "hotel_image_url", hotel.path("hotel_image_url").asText());
+        }
+        for (JsonNode activity : patch.path("activities")) {
+            Map<String, Object> day = element(tripPlan.get("itinerary"), activity.path("day").asInt(-1));
+            Map<String, Object> target = day != null
+                    ? element(day.get("activities"), activity.path("index").asInt(-1))
+                    : null;
+            fillIfEmpty(target, "place_image_url", activity.path("place_image_url").asText());
+        }
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(enrichments.stats());
+        stats.put("started", started.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("mergedOnSave", merged.get());
+        stats.put("pendingOnSave", pendingOnSave.get());
+        stats.put("mergedAfterSave", mergedLater.get());
+        stats.put("mergeAfterSaveFailed", lateMergeFailed.get());
+        stats.put("ttl", ttl.toString());
+        return stats;
+    }
+
+    private static Map<String, Object> tripPlan(Map<String, Object> plan) {
+        if (plan == null) return null;
+        return plan.get("trip_plan") instanceof Map<?, ?> nested ? cast(nested) : plan;
+    }
+
+    private static ObjectNode patchOf(String id, JsonNode plan) {
+        ObjectNode patch = emptyPatch(id, "done");
+        JsonNode tripPlan = plan.path("trip_plan");
+
+        ArrayNode hotels = patch.withArray("hotels");
+        int index = 0;
+        for (JsonNode hotel : tripPlan.path("hotels")) {
+            String url = hotel.path("hotel_image_url").asText("");
+            if (!url.isBlank()) hotels.addObject().put("index", index).put("hotel_image_url", url);
+            index++;
+        }
+
+        ArrayNode activities = patch.withArray("activities");
+        int day = 0;
+        for (JsonNode dayPlan : tripPlan.path("itinerary")) {
+            index = 0;
+            for (JsonNode activity : dayPlan.path("activities")) {
+                String url = activity.path("place_image_url").asText("");
+                if (!url.isBlank()) {
+                    activities.addObject().put("day", day).put("index", index).put("place_image_url", url);
+                }
+                index++;
+            }
+            day++;
+        }
+        return patch;
+    }
+
+    private static ObjectNode emptyPatch(String id, String status) {
+        ObjectNode patch = NODES.objectNode();
+        patch.put("id", id);
+        patch.put("status", status);
+        patch.putArray("hotels");
+        patch.putArray("activities");
+        return patch;
+    }
+
+    private static Map<String, Object> element(Object list, int index) {
+        if (!(list instanceof List<?> items) || index < 0 || index >= items.size()) return null;
+        return items.get(index) instanceof Map<?, ?> item ? cast(item) : null;
+    }
+
+    private static void fillIfEmpty(Map<String, Object> target, String field, String url) {
+        if (target == null || url.isBlank()) return;
+        Object current = target.get(field);
+        if (current == null || current.toString().isBlank()) target.put(field, url);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cast(Map<?, ?> map) {
+        return (Map<String, Object>) map;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.model.ImageCacheEntry;
+import com.example.tripmind.repository.ImageCacheEntryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cross-request cache for image enrichment.
+ * Two layers: a bounded in-memory TTL/LRU map in front of the image_cache_entries table,
+ * so resolved (and unresolvable) places survive restarts.
+ * Holds both final place -> image URL resolutions and raw Wikidata entity details.
+ */
+@Component
+public class ImageResolutionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageResolutionCache.class);
+
+    private static final String IMAGE_PREFIX = "img:";
+    private static final String ENTITY_PREFIX = "wd:";
+    private static final int MAX_KEY_LENGTH = 512;
+
+    /** Cached resolution; {@code url == null} is a remembered miss. */
+    public record CachedImage(String url) {}
+
+    private final ImageCacheEntryRepository repository;
+    private final ObjectMapper objectMapper;
+
+    private final TtlLruCache<String, CachedImage> images;
+    private final TtlLruCache<String, WikidataEntity> entities;
+
+    private final Duration hitTtl;
+    private final Duration missTtl;
+    private final Duration entityTtl;
+    private final boolean persistent;
+
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong storeMisses = new AtomicLong();
+    private final AtomicLong storeErrors = new AtomicLong();
+
+    public ImageResolutionCache(
+            ImageCacheEntryRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${app.ai.image-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.ai.image-cache.hit-ttl:P30D}") Duration hitTtl,
+            @Value("${app.ai.image-cache.miss-ttl:P1D}") Duration missTtl,
+            @Value("${app.ai.image-cache.entity-ttl:P30D}") Duration entityTtl,
+            @Value("${app.ai.image-cache.persistent:true}") boolean persistent
+    ) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.images = new TtlLruCache<>(maxEntries);
+        this.entities = new TtlLruCache<>(maxEntries * 2);
+        this.hitTtl = hitTtl;
+        this.missTtl = missTtl;
+        this.entityTtl = entityTtl;
+        this.persistent = persistent;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeExpired() {
+        if (!persistent) return;
+        try {
+            int removed = repository.deleteExpired(OffsetDateTime.now());
+            if (removed > 0) log.info("Image cache: purged {} expired entries", removed);
+        } catch (Exception e) {
+            log.warn("Image cache: purge failed: {}", e.toString());
+        }
+    }
+
+    /** ---------- place -> image ---------- */
+
+    /** Returns null when nothing is cached for the place. */
+    public CachedImage getImage(String placeName, String destination, boolean isHotel) {
+        String key = imageKey(placeName, destination, isHotel);
+
+        CachedImage cached = images.get(key);
+        if (cached != null) return cached;
+
+        ImageCacheEntry stored = load(key);
+        if (stored == null) return null;
+
+        cached = new CachedImage(stored.getPayload());
+        images.put(key, cached, remaining(stored));
+        return cached;
+    }
+
+    public void putImage(String placeName, String destination, boolean isHotel, String url) {
+        String key = imageKey(placeName, destination, isHotel);
+        String value = url != null && !url.isBlank() ? url : null;
+        Duration ttl = value != null ? hitTtl : missTtl;
+
+        images.put(key, new CachedImage(value), ttl);
+        store(key, value, ttl);
+    }
+
+    /** ---------- Wikidata entity details ---------- */
+
+    public WikidataEntity getEntity(String id) {
+        if (id == null || id.isBlank()) return null;
+        String key = ENTITY_PREFIX + id;
+
+        WikidataEntity cached = entities.get(key);
+        if (cached != null) return cached;
+
+        ImageCacheEntry stored = load(key);
+        if (stored == null || stored.getPayload() == null) return null;
+
+        try {
+            cached = objectMapper.readValue(stored.getPayload(), WikidataEntity.class);
+            entities.put(key, cached, remaining(stored));
+            return cached;
+        } catch (Exception e) {
+            log.debug("Image cache: unreadable entity '{}': {}", id, e.toString());
+            return null;
+        }
+    }
+
+    public void putEntity(WikidataEntity entity) {
+        if (entity == null || entity.id() == null || entity.id().isBlank()) return;
+        String key = ENTITY_PREFIX + entity.id();
+
+        entities.put(key, entity, entityTtl);
+        try {
+            store(key, objectMapper.writeValueAsString(entity), entityTtl);
+        } catch (Exception e) {
+            log.debug("Image cache: entity not stored '{}': {}", entity.id(), e.toString());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("images", images.stats());
+        stats.put("entities", entities.stats());
+        stats.put("persistent", persistent);
+        stats.put("storeHits", storeHits.get());
+        stats.put("storeMisses", storeMisses.get());
+        stats.put("storeErrors", storeErrors.get());
+        return stats;
+    }
+
+    /** ---------- persistence ---------- */
+
+    private ImageCacheEntry load(String key) {
+        if (!persistent || key.length() > MAX_KEY_LENGTH) return null;
+        try {
+            ImageCacheEntry stored = repository.findById(key).orElse(null);
+            if (stored == null || stored.getExpiresAt().isBefore(OffsetDateTime.now())) {
+                storeMisses.incrementAndGet();
+                return null;
+            }
+            storeHits.incrementAndGet();
+            return stored;
+        } catch (Exception e) {
+            storeErrors.incrementAndGet();
+            log.debug("Image cache: load failed for '{}': {}", key, e.toString());
+            return null;
+        }
+    }
+
+    private void store(String key, String payload, Duration ttl) {
+        if (!persistent || key.length() > MAX_KEY_LENGTH) return;
+        try {
+            repository.save(ImageCacheEntry.builder()
+                    .cacheKey(key)
+                    .payload(payload)
+                    .expiresAt(OffsetDateTime.now().plus(ttl))
+                    .build());
+        } catch (Exception e) {
+            storeErrors.incrementAndGet();
+            log.debug("Image cache: store failed for '{}': {}", key, e.toString());
+        }
+    }
+
+    private Duration remaining(ImageCacheEntry stored) {
+        Duration left = Duration.between(OffsetDateTime.now(), stored.getExpiresAt());
+        return left.isNegative() ? Duration.ZERO : left;
+    }
+
+    private static String imageKey(String placeName, String destination, boolean isHotel) {
+        return IMAGE_PREFIX
+                + TextNormalizer.normalize(placeName) + "|"
+                + TextNormalizer.normalize(destination) + "|"
+                + (isHotel ? "hotel" : "place");
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.service.ai.ModelProvider.Completion;
+import com.example.tripmind.service.ai.ModelRouter.UseCase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Recovers itinerary completions that were cut off at {@code max_tokens}. Instead of closing the
+ * brackets of a half-written day (what {@link JsonExtractor} does) or regenerating everything, the
+ * complete hotels and days are kept and the model is asked for the remaining days only, up to
+ * {@code app.ai.continuation.max-attempts} times; the parts are spliced into one compact plan
+ * ({@code {"hotels": [...], "days": [...]}}, see {@link CompactPlanSchema}).
+ * <p>
+ * Output counts as cut off when the finish reason is {@code length}, or when none was reported and
+ * the root object never closed.
+ */
+@Component
+public class ItineraryContinuation {
+
+    private static final Logger log = LoggerFactory.getLogger(ItineraryContinuation.class);
+
+    private static final String CONTINUE_PROMPT = """
+      Your previous answer was cut off. Continue the same plan with the same compact schema.
+      Days already written: %d. Places already used (do not repeat): %s.
+      Output ONLY JSON: {%s"days": [DAY]} with days %d to %d.
+    """;
+
+    private final ModelRouter modelRouter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int maxAttempts;
+
+    private final AtomicLong truncated = new AtomicLong();
+    private final AtomicLong continuations = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong incomplete = new AtomicLong();
+
+    public ItineraryContinuation(ModelRouter modelRouter,
+                                 @Value("${app.ai.continuation.max-attempts:2}") int maxAttempts) {
+        this.modelRouter = modelRouter;
+        this.maxAttempts = Math.max(0, maxAttempts);
+    }
+
+    /** Plan JSON for {@code request}; continued when the first answer was cut off. */
+    public JsonNode complete(UseCase useCase, Map<String, Object> request, int expectedDays, boolean needsHotels) {
+        Completion completion = modelRouter.completeText(useCase, request);
+        return resume(useCase, request, completion.content(), completion.finishReason(), expectedDays, needsHotels, null);
+    }
+
+    /**
+     * Same as {@link #complete} for output that already arrived (a stream). {@code onDay} gets each
+     * day added by a continuation with its index in the plan; may be null.
+     */
+    public JsonNode resume(UseCase useCase, Map<String, Object> request, CharSequence text, String finishReason,
+                           int expectedDays, boolean needsHotels, BiConsumer<Integer, JsonNode> onDay) {
+        Parts parts = Parts.of(text, objectMapper);
+        if (!cutOff(finishReason, parts)) return read(text);
+
+        truncated.incrementAndGet();
+        List<JsonNode> hotels = parts.hotels;
+        List<JsonNode> days = parts.days;
+
+        for (int attempt = 0; attempt < maxAttempts && missing(days, hotels, expectedDays, needsHotels); attempt++) {
+            continuations.incrementAndGet();
+            boolean askHotels = needsHotels && hotels.isEmpty();
+            Completion next = modelRouter.completeText(useCase,
+                    continuationRequest(request, days, expectedDays, askHotels));
+            Parts more = Parts.of(next.content(), objectMapper);
+            if (askHotels) hotels = more.hotels;
+            for (JsonNode day : more.days) {
+                if (days.size() == expectedDays) break;
+                days.add(day);
+                if (onDay != null) onDay.accept(days.size() - 1, day);
+            }
+            log.debug("Continuation {}: {} of {} days, {} hotels", attempt + 1, days.size(), expectedDays, hotels.size());
+        }
+
+        if (missing(days, hotels, expectedDays, needsHotels)) {
+            incomplete.incrementAndGet();
+            log.warn("Itinerary still incomplete after {} continuations: {} of {} days", maxAttempts, days.size(), expectedDays);
+        } else {
+            recovered.incrementAndGet();
+        }
+
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.putArray(CompactPlanSchema.HOTELS).addAll(hotels);
+        ArrayNode spliced = plan.putArray(CompactPlanSchema.DAYS);
+        for (int i = 0; i < days.size(); i++) spliced.add(numbered(days.get(i), i + 1));
+        return plan;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("truncated", truncated.get());
+        stats.put("continuations", continuations.get());
+        stats.put("recovered", recovered.get());
+        stats.put("incomplete", incomplete.get());
+        return stats;
+    }
+
+    /** ================= HELPERS ================= **/
+
+    private static boolean cutOff(String finishReason, Parts parts) {
+        if (finishReason != null) return "length".equals(finishReason);
+        return !parts.closed;
+    }
+
+    private static boolean missing(List<JsonNode> days, List<JsonNode> hotels, int expectedDays, boolean needsHotels) {
+        return days.size() < expectedDays || (needsHotels && hotels.isEmpty());
+    }
+
+    private Map<String, Object> continuationRequest(Map<String, Object> request, List<JsonNode> days,
+                                                    int expectedDays, boolean askHotels) {
+        Set<String> places = new LinkedHashSet<>();
+        for (JsonNode day : days) {
+            for (JsonNode activity : CompactPlanSchema.expandDay(day).path("activities")) {
+                String name = activity.path("place_name").asText("");
+                if (!name.isBlank()) places.add(name);
+            }
+        }
+        String prompt;
+        try {
+            prompt = CONTINUE_PROMPT.formatted(days.size(), objectMapper.writeValueAsString(places),
+                    askHotels ? "\"hotels\": [HOTEL], " : "", days.size() + 1, expectedDays);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> messages = new ArrayList<>((List<Map<String, Object>>) request.get("messages"));
+        messages.add(Map.of("role", "user", "content", prompt));
+
+        Map<String, Object> next = new LinkedHashMap<>(request);
+        next.put("messages", messages);
+        next.put("max_tokens", CompactPlanSchema.maxTokens(expectedDays - days.size(),
+                askHotels ? CompactPlanSchema.MAX_HOTELS : 0));
+        return next;
+    }
+
+    private static JsonNode numbered(JsonNode day, int number) {
+        if (!(day instanceof ObjectNode entry)) return day;
+        entry.put(entry.has("day") ? "day" : "d", number);
+        return entry;
+    }
+
+    private JsonNode read(CharSequence text) {
+        try {
+            return JsonExtractor.readTree(objectMapper, text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Complete hotel and day objects of the output, and whether its root object was closed. */
+    private record Parts(List<JsonNode> hotels, List<JsonNode> days, boolean closed) {
+
+        static Parts of(CharSequence text, ObjectMapper objectMapper) {
+            List<JsonNode> hotels = new ArrayList<>();
+            List<JsonNode> days = new ArrayList<>();
+            ItineraryStreamParser parser = new ItineraryStreamParser(new ItineraryStreamParser.Listener() {
+                @Override
+                public void onHotel(int index, String json) {
+                    hotels.add(parse(json));
+                }
+
+                @Override
+                public void onDay(int index, String json) {
+                    days.add(parse(json));
+                }
+
+                private JsonNode parse(String json) {
+                    try {
+                        return objectMapper.readTree(json);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            parser.feed(text);
+            return new Parts(hotels, days, parser.isComplete());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finished (image-enriched) itineraries keyed by the canonical plan input,
+ * so repeated requests for the same trip skip both the model call and enrichment.
+ * Values are copied on the way in and out; callers may mutate what they get.
+ */
+@Component
+public class ItineraryResultCache {
+
+    private final TtlLruCache<PlanInputKey, JsonNode> plans;
+    private final Duration ttl;
+    private final boolean enabled;
+    private final boolean bypassSpecialReq;
+
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    public ItineraryResultCache(
+            @Value("${app.ai.itinerary-cache.enabled:true}") boolean enabled,
+            @Value("${app.ai.itinerary-cache.max-entries:500}") int maxEntries,
+            @Value("${app.ai.itinerary-cache.ttl:PT12H}") Duration ttl,
+            @Value("${app.ai.itinerary-cache.bypass-special-req:false}") boolean bypassSpecialReq
+    ) {
+        this.enabled = enabled;
+        this.plans = new TtlLruCache<>(maxEntries);
+        this.ttl = ttl;
+        this.bypassSpecialReq = bypassSpecialReq;
+    }
+
+    /** Returns a copy of the cached plan, or null. */
+    public JsonNode get(FinalPlanInput input) {
+        PlanInputKey key = keyOf(input, true);
+        if (key == null) return null;
+
+        JsonNode cached = plans.get(key);
+        return cached != null ? cached.deepCopy() : null;
+    }
+
+    public void put(FinalPlanInput input, JsonNode plan) {
+        if (plan == null || !plan.path("trip_plan").isObject()) return;
+        PlanInputKey key = keyOf(input, false);
+        if (key == null) return;
+
+        plans.put(key, plan.deepCopy(), ttl);
+    }
+
+    /** Drops every plan for the destination (any spelling), or everything when destination is blank. */
+    public int invalidate(String destination) {
+        int removed;
+        if (destination == null || destination.isBlank()) {
+            removed = plans.size();
+            plans.clear();
+        } else {
+            String canonical = PlanInputKey.canonical(destination);
+            removed = plans.removeIf(key -> key.destination().equals(canonical));
+        }
+        invalidated.addAndGet(removed);
+        return removed;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(plans.stats());
+        stats.put("enabled", enabled);
+        stats.put("ttl", ttl.toString());
+        stats.put("bypassed", bypassed.get());
+        stats.put("invalidated", invalidated.get());
+        return stats;
+    }
+
+    private PlanInputKey keyOf(FinalPlanInput input, boolean countBypass) {
+        if (!enabled || input == null) return null;
+
+        PlanInputKey key = PlanInputKey.of(input);
+        if (bypassSpecialReq && key.hasSpecialReq()) {
+            if (countBypass) bypassed.incrementAndGet();
+            return null;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.tripmind.service.ai;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental scanner for the itinerary JSON the model streams back.
+ * Chunks are fed as they arrive; every completed object inside
+ * {@code trip_plan.hotels[]} or {@code trip_plan.itinerary[]} (compact form:
+ * {@code hotels[]} / {@code days[]} at the root, see {@link CompactPlanSchema}) is
+ * handed to the listener as soon as its closing brace is seen.
+ *
+ * Not thread-safe: one parser per stream.
+ */
+public class ItineraryStreamParser {
+
+    public interface Listener {
+        void onHotel(int index, String json);
+
+        void onDay(int index, String json);
+    }
+
+    private static final String TRIP_PLAN_KEY = "trip_plan";
+    private static final String HOTELS_KEY = "hotels";
+    private static final String ITINERARY_KEY = "itinerary";
+    private static final String DAYS_KEY = CompactPlanSchema.DAYS;
+
+    private final Listener listener;
+
+    // Everything from the root '{' onwards (prose and markdown fences before it are dropped)
+    private final StringBuilder buffer = new StringBuilder();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    private boolean started;
+    private boolean finished;
+    private boolean inString;
+    private boolean escaped;
+    private boolean stringIsKey;
+    private int stringStart;
+    private String pendingKey;
+
+    public ItineraryStreamParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void feed(CharSequence chunk) {
+        if (chunk == null || finished) return;
+
+        for (int i = 0; i < chunk.length() && !finished; i++) {
+            char c = chunk.charAt(i);
+
+            if (!started) {
+                if (c != '{') continue;
+                started = true;
+            }
+
+            buffer.append(c);
+            accept(c, buffer.length() - 1);
+        }
+    }
+
+    /** True once the root object has been closed. */
+    public boolean isComplete() {
+        return finished;
+    }
+
+    /** Raw JSON text seen so far, starting at the root object. */
+    public String text() {
+        return buffer.toString();
+    }
+
+    /** Live view of the same text, for parsing without a copy. */
+    public CharSequence buffer() {
+        return buffer;
+    }
+
+    private void accept(char c, int pos) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (stringIsKey) {
+                    pendingKey = buffer.substring(stringStart + 1, pos);
+                }
+            }
+            return;
+        }
+
+        Frame top = stack.peek();
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                stringStart = pos;
+                stringIsKey = top != null && top.object && top.expectingKey;
+            }
+            case ':' -> {
+                if (top != null && top.object) top.expectingKey = false;
+            }
+            case ',' -> {
+                if (top != null && top.object) {
+                    top.expectingKey = true;
+                    pendingKey = null;
+                }
+            }
+            case '{', '[' -> {
+                String key = top != null && top.object ? pendingKey : null;
+                stack.push(new Frame(c == '{', key, pos));
+                pendingKey = null;
+            }
+            case '}', ']' -> close(pos);
+            default -> {
+            }
+        }
+    }
+
+    private void close(int pos) {
+        Frame closed = stack.poll();
+        if (closed == null) return;
+
+        Frame parent = stack.peek();
+        if (parent == null) {
+            finished = true;
+            return;
+        }
+
+        if (!parent.object) {
+            int index = parent.children++;
+            if (closed.object && isPlanSection(parent)) {
+                String json = buffer.substring(closed.start, pos + 1);
+                if (HOTELS_KEY.equals(parent.key)) {
+                    listener.onHotel(index, json);
+                } else {
+                    listener.onDay(index, json);
+                }
+            }
+        }
+    }
+
+    /** hotels/itinerary/days arrays directly under trip_plan (or under the root when the wrapper is missing) */
+    private boolean isPlanSection(Frame array) {
+        if (!HOTELS_KEY.equals(array.key) && !ITINERARY_KEY.equals(array.key) && !DAYS_KEY.equals(array.key)) {
+            return false;
+        }
+
+        int depth = stack.size();
+        if (depth == 2) return true; // root -> array
+        if (depth != 3) return false;
+
+        // root -> trip_plan -> array
+        var it = stack.iterator();
+        it.next();
+        return TRIP_PLAN_KEY.equals(it.next().key);
+    }
+
+    private static final class Frame {
+        final boolean object;
+        final String key;
+        final int start;
+        boolean expectingKey;
+        int children;
+
+        Frame(boolean object, String key, int start) {
+            this.object = object;
+            this.key = key;
+            this.start = start;
+            this.expectingKey = object;
+        }
+    }
+}
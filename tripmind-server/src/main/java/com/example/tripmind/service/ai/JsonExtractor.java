@@ -0,0 +1,206 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Pulls the JSON document out of model output in one pass, without intermediate String copies.
+ * <p>
+ * The scan skips anything before the first '{' or '[' (markdown fences, prose), tracks strings,
+ * escapes and nesting, and stops at the bracket that closes the root. If the output was cut off,
+ * it backs up to the last complete value and appends the missing closers. Jackson then reads the
+ * located span through a {@link Reader} view over the original characters.
+ */
+public final class JsonExtractor {
+
+    /** Location of the document inside the text; {@code suffix} holds closers added by the repair. */
+    public record Span(int start, int end, String suffix) {
+        public boolean repaired() {
+            return !suffix.isEmpty();
+        }
+    }
+
+    private JsonExtractor() {
+    }
+
+    /** Parses the document found in {@code text}; blank text yields an empty object, text without JSON fails. */
+    public static JsonNode readTree(ObjectMapper mapper, CharSequence text) throws IOException {
+        if (isBlank(text)) return JsonNodeFactory.instance.objectNode();
+
+        Span span = locate(text);
+        if (span == null) throw new IOException("No JSON found in model output");
+
+        try (JsonParser parser = mapper.getFactory().createParser(new SpanReader(text, span))) {
+            JsonNode node = mapper.readTree(parser);
+            return node != null ? node : JsonNodeFactory.instance.objectNode();
+        }
+    }
+
+    /**
+     * Streams an OpenAI-compatible chat completion body and parses the JSON inside
+     * {@code choices[0].message.content} straight from Jackson's token buffer.
+     * Returns null when the body has no message content.
+     */
+    public static JsonNode readCompletionContent(ObjectMapper mapper, InputStream body) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING && isMessageContent(parser)) {
+                    CharBuffer content = CharBuffer.wrap(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    return readTree(mapper, content);
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Finds the first balanced object or array; null when the text contains neither. */
+    public static Span locate(CharSequence text) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '{' || c == '[') {
+                start = i;
+                break;
+            }
+        }
+        if (start < 0) return null;
+
+        char[] stack = new char[16];
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean stringIsKey = false;
+        boolean expectKey = false;
+
+        // last point where everything before it forms complete values, and the nesting depth there
+        int safeEnd = -1;
+        int safeDepth = 0;
+
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (!stringIsKey) {
+                        safeEnd = i + 1;
+                        safeDepth = depth;
+                    }
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    stringIsKey = depth > 0 && stack[depth - 1] == '{' && expectKey;
+                }
+                case '{', '[' -> {
+                    if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                    stack[depth++] = c;
+                    expectKey = c == '{';
+                }
+                case '}', ']' -> {
+                    if (depth > 0) depth--;
+                    if (depth == 0) return new Span(start, i + 1, "");
+                    expectKey = false;
+                    safeEnd = i + 1;
+                    safeDepth = depth;
+                }
+                case ':' -> expectKey = false;
+                case ',' -> {
+                    // whatever preceded the comma (including bare numbers/literals) is complete
+                    safeEnd = i;
+                    safeDepth = depth;
+                    expectKey = stack[depth - 1] == '{';
+                }
+                default -> {
+                    // whitespace, numbers, true/false/null
+                }
+            }
+        }
+
+        // Truncated output: cut back to the last complete value, then close what is still open
+        if (safeEnd < 0) {
+            StringBuilder closers = new StringBuilder(depth + 1);
+            if (inString) closers.append('"');
+            appendClosers(closers, stack, depth);
+            return new Span(start, length, closers.toString());
+        }
+
+        StringBuilder closers = new StringBuilder(safeDepth);
+        appendClosers(closers, stack, safeDepth);
+        return new Span(start, safeEnd, closers.toString());
+    }
+
+    private static void appendClosers(StringBuilder closers, char[] stack, int depth) {
+        for (int d = depth - 1; d >= 0; d--) {
+            closers.append(stack[d] == '{' ? '}' : ']');
+        }
+    }
+
+    private static boolean isMessageContent(JsonParser parser) throws IOException {
+        if (!"content".equals(parser.currentName())) return false;
+        JsonStreamContext message = parser.getParsingContext().getParent();
+        return message != null && "message".equals(message.getCurrentName());
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        if (text == null) return true;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /** Reader over text[start, end) followed by the repair suffix; no copy of the text is made. */
+    private static final class SpanReader extends Reader {
+
+        private final CharSequence text;
+        private final int end;
+        private final String suffix;
+        private int pos;
+        private int suffixPos;
+
+        SpanReader(CharSequence text, Span span) {
+            this.text = text;
+            this.pos = span.start();
+            this.end = span.end();
+            this.suffix = span.suffix();
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            int count = 0;
+            while (count < length && pos < end) {
+                buffer[offset + count++] = text.charAt(pos++);
+            }
+            while (count < length && suffixPos < suffix.length()) {
+                buffer[offset + count++] = suffix.charAt(suffixPos++);
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A chat-completions backend that can run several models. Request bodies are OpenAI-style
+ * ({@code messages}, {@code temperature}, {@code max_tokens}, ...) without {@code model}: the
+ * provider sets it. See {@link ModelRouter} for how calls are routed across providers and models.
+ */
+public interface ModelProvider {
+
+    /** Prefix in model routes ({@code <name>:<model>}). */
+    String name();
+
+    /** False when not configured; its routes are skipped. */
+    boolean enabled();
+
+    /** The JSON object the model produced (code fences and surrounding prose stripped). */
+    JsonNode complete(String model, Map<String, Object> request, Priority priority);
+
+    /** Raw completion text and finish reason, for callers that deal with cut-off output themselves. */
+    Completion completeText(String model, Map<String, Object> request, Priority priority);
+
+    /**
+     * Streams completion content deltas to {@code onDelta} as they arrive.
+     *
+     * @return the finish reason of the stream, null when the server sent none
+     */
+    String stream(String model, Map<String, Object> request, Priority priority, Consumer<String> onDelta);
+
+    /** @param finishReason {@code stop}, {@code length} (hit max_tokens), ...; null when unknown */
+    record Completion(String content, String finishReason) {
+        public boolean truncated() {
+            return "length".equals(finishReason);
+        }
+    }
+}
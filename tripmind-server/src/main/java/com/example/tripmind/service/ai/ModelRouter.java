@@ -0,0 +1,301 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.example.tripmind.service.ai.ModelProvider.Completion;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Routes model calls per use case over an ordered list of {@code provider:model} candidates
+ * ({@code app.ai.models.chat}, {@code app.ai.models.build}), e.g. a small fast model for chat turns
+ * and a large one for final plans.
+ * <p>
+ * Latency (EWMA) and errors are tracked per use case and candidate. A candidate is skipped while it is
+ * slow (latency above the use case's threshold) or cooling down after consecutive failures; once per
+ * cooldown one call is let through as a probe. A failed call moves on to the next candidate, skipped
+ * ones last; a stream only fails over before its first delta. {@code app.ai.local.model} adds the
+ * local provider as the last resort of every route.
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    private static final double LATENCY_ALPHA = 0.3;
+    private static final double ERROR_ALPHA = 0.1;
+    private static final int MIN_SAMPLES = 3;
+
+    public enum UseCase {
+        CHAT(Priority.CHAT), BUILD(Priority.BUILD);
+
+        final Priority priority;
+
+        UseCase(Priority priority) {
+            this.priority = priority;
+        }
+    }
+
+    private record Candidate(ModelProvider provider, String model, ModelStats stats) {
+        String id() {
+            return provider.name() + ":" + model;
+        }
+    }
+
+    private final Map<UseCase, List<Candidate>> routes = new EnumMap<>(UseCase.class);
+    private final Map<UseCase, Long> slowMs = new EnumMap<>(UseCase.class);
+    private final int failureThreshold;
+    private final long cooldownNanos;
+
+    // calls aborted because the caller was cancelled (client gone, losing hedge)
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public ModelRouter(List<ModelProvider> providers,
+                       @Value("${app.ai.models.chat:groq:llama-3.1-8b-instant,groq:llama-3.3-70b-versatile}") List<String> chatRoute,
+                       @Value("${app.ai.models.build:groq:llama-3.3-70b-versatile,groq:llama-3.1-8b-instant}") List<String> buildRoute,
+                       @Value("${app.ai.local.model:}") String localModel,
+                       @Value("${app.ai.models.chat-slow-ms:4000}") long chatSlowMs,
+                       @Value("${app.ai.models.build-slow-ms:60000}") long buildSlowMs,
+                       @Value("${app.ai.models.failure-threshold:3}") int failureThreshold,
+                       @Value("${app.ai.models.cooldown:30s}") Duration cooldown) {
+        Map<String, ModelProvider> byName = new HashMap<>();
+        for (ModelProvider provider : providers) byName.put(provider.name(), provider);
+
+        routes.put(UseCase.CHAT, route(byName, chatRoute, localModel));
+        routes.put(UseCase.BUILD, route(byName, buildRoute, localModel));
+        slowMs.put(UseCase.CHAT, chatSlowMs);
+        slowMs.put(UseCase.BUILD, buildSlowMs);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = cooldown.toNanos();
+
+        routes.forEach((useCase, candidates) -> {
+            if (candidates.isEmpty()) throw new IllegalStateException("No enabled model for " + useCase);
+            log.info("Model route {}: {}", useCase, candidates.stream().map(Candidate::id).toList());
+        });
+    }
+
+    /**
+     * @param preferredModel model asked for by the client ({@code model} or {@code provider:model});
+     *                       honoured only when it is on this use case's route and healthy
+     */
+    public JsonNode complete(UseCase useCase, Map<String, Object> request, String preferredModel) {
+        return call(useCase, preferredModel,
+                candidate -> candidate.provider().complete(candidate.model(), request, useCase.priority));
+    }
+
+    /** Raw text and finish reason, see {@link ModelProvider#completeText}. */
+    public Completion completeText(UseCase useCase, Map<String, Object> request) {
+        return call(useCase, null,
+                candidate -> candidate.provider().completeText(candidate.model(), request, useCase.priority));
+    }
+
+    /** @return the finish reason of the stream that completed, null when unknown */
+    public String stream(UseCase useCase, Map<String, Object> request, Consumer<String> onDelta) {
+        RuntimeException last = null;
+        for (Attempt attempt : plan(useCase, null)) {
+            Candidate candidate = attempt.candidate();
+            boolean[] started = {false};
+            long start = System.nanoTime();
+            try {
+                String finishReason = candidate.provider().stream(candidate.model(), request, useCase.priority, delta -> {
+                    started[0] = true;
+                    onDelta.accept(delta);
+                });
+                candidate.stats().success(System.nanoTime() - start, attempt.probe());
+                return finishReason;
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) throw cancelled(e); // not the model's fault
+                failed(useCase, candidate, e);
+                if (started[0]) throw e; // part of the output is already with the client
+                last = e;
+            }
+        }
+        throw last != null ? last : new ServiceUnavailableException("No model available");
+    }
+
+    private <T> T call(UseCase useCase, String preferredModel, Function<Candidate, T> call) {
+        RuntimeException last = null;
+        for (Attempt attempt : plan(useCase, preferredModel)) {
+            Candidate candidate = attempt.candidate();
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(candidate);
+                candidate.stats().success(System.nanoTime() - start, attempt.probe());
+                return result;
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) throw cancelled(e); // not the model's fault
+                failed(useCase, candidate, e);
+                last = e;
+            }
+        }
+        throw last != null ? last : new ServiceUnavailableException("No model available");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        routes.forEach((useCase, candidates) -> {
+            List<Map<String, Object>> models = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                Map<String, Object> model = new LinkedHashMap<>();
+                model.put("model", candidate.id());
+                model.put("state", state(useCase, candidate, now));
+                model.putAll(candidate.stats().snapshot());
+                models.add(model);
+            }
+            stats.put(useCase.name().toLowerCase(Locale.ROOT), models);
+        });
+        stats.put("cancelledCalls", cancelled.get());
+        return stats;
+    }
+
+    public long cancelledCalls() {
+        return cancelled.get();
+    }
+
+    /** ================= ROUTING ================= **/
+
+    record Attempt(Candidate candidate, boolean probe) {}
+
+    /** Candidates in the order they will be tried. */
+    List<Attempt> plan(UseCase useCase, String preferredModel) {
+        long now = System.nanoTime();
+        List<Attempt> healthy = new ArrayList<>();
+        List<Attempt> skipped = new ArrayList<>();
+
+        for (Candidate candidate : routes.get(useCase)) {
+            String state = state(useCase, candidate, now);
+            if (state.equals("ok")) {
+                if (matches(candidate, preferredModel)) healthy.add(0, new Attempt(candidate, false));
+                else healthy.add(new Attempt(candidate, false));
+            } else if (candidate.stats().claimProbe(now, cooldownNanos)) {
+                healthy.add(new Attempt(candidate, true));
+            } else {
+                skipped.add(new Attempt(candidate, false));
+            }
+        }
+        healthy.addAll(skipped);
+        return healthy;
+    }
+
+    /** Ids of {@link #plan} (claims probes like a real call). */
+    List<String> planIds(UseCase useCase, String preferredModel) {
+        return plan(useCase, preferredModel).stream().map(attempt -> attempt.candidate().id()).toList();
+    }
+
+    private RuntimeException cancelled(RuntimeException e) {
+        cancelled.incrementAndGet();
+        return e;
+    }
+
+    private String state(UseCase useCase, Candidate candidate, long now) {
+        ModelStats stats = candidate.stats();
+        if (stats.coolingDown(now, failureThreshold)) return "cooling-down";
+        if (stats.slowerThan(slowMs.get(useCase))) return "slow";
+        return "ok";
+    }
+
+    private void failed(UseCase useCase, Candidate candidate, RuntimeException e) {
+        candidate.stats().failure(System.nanoTime() + cooldownNanos);
+        log.warn("Model {} failed for {}: {}", candidate.id(), useCase, e.getMessage());
+    }
+
+    private static boolean matches(Candidate candidate, String preferredModel) {
+        if (preferredModel == null || preferredModel.isBlank()) return false;
+        String preferred = preferredModel.trim();
+        return preferred.equals(candidate.model()) || preferred.equals(candidate.id());
+    }
+
+    private static List<Candidate> route(Map<String, ModelProvider> providers, List<String> ids, String localModel) {
+        List<String> all = new ArrayList<>(ids);
+        if (localModel != null && !localModel.isBlank()) all.add("local:" + localModel.trim());
+
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String id : all) {
+            String trimmed = id.trim();
+            int colon = trimmed.indexOf(':'); // model ids may contain ':' themselves (llama3.1:8b)
+            if (colon <= 0 || colon == trimmed.length() - 1) {
+                throw new IllegalArgumentException("Model route entries are provider:model, got '" + id + "'");
+            }
+            ModelProvider provider = providers.get(trimmed.substring(0, colon));
+            if (provider == null) throw new IllegalArgumentException("Unknown model provider in '" + id + "'");
+            if (!provider.enabled() || !seen.add(trimmed)) continue;
+            candidates.add(new Candidate(provider, trimmed.substring(colon + 1), new ModelStats()));
+        }
+        return List.copyOf(candidates);
+    }
+
+    /** ================= STATS ================= **/
+
+    private static final class ModelStats {
+
+        private long calls;
+        private long failures;
+        private long samples;
+        private double latencyMs;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long cooldownUntil;
+        private boolean probeArmed;
+        private long nextProbeAt;
+
+        synchronized void success(long nanos, boolean probe) {
+            double ms = nanos / 1e6;
+            calls++;
+            // a probe replaces the stale estimate instead of nudging it
+            latencyMs = samples == 0 || probe ? ms : latencyMs + LATENCY_ALPHA * (ms - latencyMs);
+            samples = probe ? MIN_SAMPLES : samples + 1;
+            errorRate += ERROR_ALPHA * (0 - errorRate);
+            consecutiveFailures = 0;
+            probeArmed = false;
+        }
+
+        synchronized void failure(long cooldownUntil) {
+            calls++;
+            failures++;
+            errorRate += ERROR_ALPHA * (1 - errorRate);
+            consecutiveFailures++;
+            this.cooldownUntil = cooldownUntil;
+        }
+
+        synchronized boolean coolingDown(long now, int threshold) {
+            return consecutiveFailures >= threshold && cooldownUntil - now > 0;
+        }
+
+        synchronized boolean slowerThan(long thresholdMs) {
+            return samples >= MIN_SAMPLES && latencyMs > thresholdMs;
+        }
+
+        /** One caller per cooldown period, starting one period after the candidate was first skipped. */
+        synchronized boolean claimProbe(long now, long cooldownNanos) {
+            if (!probeArmed) {
+                probeArmed = true;
+                nextProbeAt = now + cooldownNanos;
+                return false;
+            }
+            if (nextProbeAt - now > 0) return false;
+            nextProbeAt = now + cooldownNanos;
+            return true;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("calls", calls);
+            stats.put("failures", failures);
+            stats.put("latencyMs", Math.round(latencyMs));
+            stats.put("errorRate", Math.round(errorRate * 1000) / 1000.0);
+            stats.put("consecutiveFailures", consecutiveFailures);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.exception.BadRequestException;
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * {@link ModelProvider} over an OpenAI-compatible {@code /chat/completions} endpoint: Groq, or a local
+ * server (Ollama, llama.cpp, vLLM). Calls go through the provider's {@link Upstream} (pool, timeouts,
+ * retries, circuit breaker).
+ */
+public class OpenAiCompatibleProvider implements ModelProvider {
+
+    private final String name;
+    private final RestClient restClient;
+    private final String url;
+    private final String apiKey;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OpenAiCompatibleProvider(String name, Upstream upstream, String url, String apiKey) {
+        this.name = name;
+        this.restClient = upstream.restClient();
+        this.url = url == null ? "" : url.trim();
+        this.apiKey = apiKey == null ? "" : apiKey.trim();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean enabled() {
+        return !url.isEmpty();
+    }
+
+    // the completion body is streamed into JsonExtractor without String copies
+    @Override
+    public JsonNode complete(String model, Map<String, Object> request, Priority priority) {
+        return post(model, request, false, priority)
+                .exchange((req, response) -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new BadRequestException(name + " API error: " + response.getStatusCode());
+                    }
+                    JsonNode content;
+                    try {
+                        content = JsonExtractor.readCompletionContent(objectMapper, response.getBody());
+                    } catch (IOException e) {
+                        throw new BadRequestException("Failed to parse " + name + " response: " + e.getMessage());
+                    }
+                    if (content == null) {
+                        throw new BadRequestException("Failed to parse " + name + " response: no message content");
+                    }
+                    return content;
+                });
+    }
+
+    @Override
+    public Completion completeText(String model, Map<String, Object> request, Priority priority) {
+        return post(model, request, false, priority)
+                .exchange((req, response) -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new BadRequestException(name + " API error: " + response.getStatusCode());
+                    }
+                    JsonNode choice;
+                    try {
+                        choice = objectMapper.readTree(response.getBody()).path("choices").path(0);
+                    } catch (IOException e) {
+                        throw new BadRequestException("Failed to parse " + name + " response: " + e.getMessage());
+                    }
+                    JsonNode content = choice.path("message").path("content");
+                    if (!content.isTextual()) {
+                        throw new BadRequestException("Failed to parse " + name + " response: no message content");
+                    }
+                    return new Completion(content.asText(), choice.path("finish_reason").textValue());
+                });
+    }
+
+    /** OpenAI-compatible SSE: {@code data: {chunk}} lines, then {@code data: [DONE]} **/
+    @Override
+    public String stream(String model, Map<String, Object> request, Priority priority, Consumer<String> onDelta) {
+        return post(model, request, true, priority)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange((req, response) -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new BadRequestException(name + " API error: " + response.getStatusCode());
+                    }
+
+                    String finishReason = null;
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.startsWith("data:")) continue;
+
+                            String data = line.substring(5).trim();
+                            if (data.isEmpty()) continue;
+                            if ("[DONE]".equals(data)) break;
+
+                            JsonNode choice = objectMapper.readTree(data).path("choices").path(0);
+                            String delta = choice.path("delta").path("content").asText("");
+                            if (!delta.isEmpty()) onDelta.accept(delta);
+                            if (choice.path("finish_reason").isTextual()) finishReason = choice.path("finish_reason").asText();
+                        }
+                    }
+                    return finishReason;
+                });
+    }
+
+    private RestClient.RequestBodySpec post(String model, Map<String, Object> request, boolean stream, Priority priority) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.putAll(request);
+        if (stream) body.put("stream", true);
+
+        RestClient.RequestBodySpec spec = restClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .attribute(GroqRequestScheduler.PRIORITY, priority);
+        if (!apiKey.isEmpty()) spec.header("Authorization", "Bearer " + apiKey);
+        return spec.body(body);
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.example.tripmind.service.ai.ModelRouter.UseCase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds long itineraries as concurrent sub-requests instead of one 8000-token completion:
+ * <ol>
+ *   <li>an outline (fast chat route): per day a focus and the places it owns, each place used once,
+ *       and the hotels, both at the same time;</li>
+ *   <li>one request per chunk of {@code days-per-chunk} days, all at once, each given its days' outline
+ *       and the places other days own, so chunks don't repeat each other;</li>
+ *   <li>a merge into the usual {@code trip_plan} (header fields from the input, days renumbered,
+ *       places repeated across days dropped).</li>
+ * </ol>
+ * Wall-clock time is the outline plus the slowest chunk. Hotels are cached per destination, budget and
+ * special requirements. Any failure is thrown; the caller falls back to the single request.
+ */
+@Component
+public class ParallelItineraryGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelItineraryGenerator.class);
+
+    private static final int CHUNK_ATTEMPTS = 2;
+
+    private static final String OUTLINE_PROMPT = """
+      You are TripMind's trip outliner. Split a trip into days so that no place is visited twice.
+
+      You will receive the user's selections as JSON (source, destination, groupSize, budget,
+      tripDurationDays, interests, specialReq).
+
+      Requirements:
+      - Output ONLY JSON (no markdown fences, no prose): {"days": [{"day": number, "focus": "string", "places": ["string"]}]}
+      - Exactly one entry per day, day 1 to tripDurationDays.
+      - "focus": the area or theme of the day; "places": 2–4 real, well-known places for it.
+      - Every place appears in at most one day. Places of a day are close to each other.
+      - Match the interests, group and budget.
+    """;
+
+    private static final String HOTELS_PROMPT = """
+      You are TripMind's hotel finder. Suggest hotels for a trip strictly as valid JSON.
+
+      You will receive the user's selections as JSON (destination, groupSize, budget, specialReq).
+
+      Requirements:
+      - Output ONLY JSON (no markdown fences, no prose).
+      - Include 4–8 real hotel options fitting the destination and budget if possible.
+    """ + CompactPlanSchema.RULES + """
+
+      Output schema:
+      { "hotels": [HOTEL] }
+    """ + CompactPlanSchema.HOTEL_SCHEMA;
+
+    private static final String DAYS_PROMPT = """
+      You are TripMind's itinerary builder. Write some days of a longer trip strictly as valid JSON.
+
+      You will receive JSON with:
+      - "trip": the user's selections (source, destination, groupSize, budget, tripDurationDays, interests, specialReq)
+      - "days": the outline of the days to write: day number, focus, places
+      - "other_days_places": places other days already cover
+
+      Requirements:
+      - Output ONLY JSON (no markdown fences, no prose).
+      - Exactly one DAY per outlined day, with the same day numbers.
+      - Build each day around its focus and places; you may add nearby places, but NEVER any from other_days_places.
+      - For each activity, include succinct practical details (address/coords; pricing if relevant; typical visit time).
+      - Keep times/durations realistic.
+      - If you are unsure about pricing, use a short human-readable estimate (e.g., "$10–15") rather than "unknown".
+    """ + CompactPlanSchema.RULES + """
+
+      Output schema:
+      { "days": [DAY] }
+    """ + CompactPlanSchema.DAY_SCHEMA;
+
+    private record HotelKey(String destination, String budget, String specialReqHash) {}
+
+    private final ModelRouter modelRouter;
+    private final ItineraryContinuation itineraryContinuation;
+    private final ExecutorService aiTaskExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final int minDays;
+    private final int daysPerChunk;
+    private final TtlLruCache<HotelKey, ArrayNode> hotelCache;
+    private final Duration hotelTtl;
+
+    private final AtomicLong plans = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong chunkRetries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong repeatsDropped = new AtomicLong();
+
+    public ParallelItineraryGenerator(ModelRouter modelRouter,
+                                      ItineraryContinuation itineraryContinuation,
+                                      @Qualifier("aiTaskExecutor") ExecutorService aiTaskExecutor,
+                                      @Value("${app.ai.fanout.enabled:true}") boolean enabled,
+                                      @Value("${app.ai.fanout.min-days:7}") int minDays,
+                                      @Value("${app.ai.fanout.days-per-chunk:3}") int daysPerChunk,
+                                      @Value("${app.ai.fanout.hotel-cache.max-entries:500}") int hotelCacheEntries,
+                                      @Value("${app.ai.fanout.hotel-cache.ttl:7d}") Duration hotelTtl) {
+        this.modelRouter = modelRouter;
+        this.itineraryContinuation = itineraryContinuation;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.enabled = enabled;
+        this.minDays = Math.max(2, minDays);
+        this.daysPerChunk = Math.max(1, daysPerChunk);
+        this.hotelCache = new TtlLruCache<>(hotelCacheEntries);
+        this.hotelTtl = hotelTtl;
+    }
+
+    /** Whether {@link #generate} is used for this trip (long enough for more than one chunk). */
+    public boolean applies(FinalPlanInput input) {
+        Integer days = input.tripDurationDays;
+        return enabled && days != null && days >= minDays && days > daysPerChunk;
+    }
+
+    /**
+     * The plan as {@code {"trip_plan": {...}}}, same schema as the single-request build.
+     * Interrupting the calling thread cancels every sub-request still running.
+     */
+    public JsonNode generate(FinalPlanInput input) {
+        plans.incrementAndGet();
+        int days = input.tripDurationDays;
+        List<Future<?>> started = new ArrayList<>();
+        try {
+            Future<ArrayNode> hotels = async(started, () -> hotels(input));
+            Future<List<ObjectNode>> outline = async(started, () -> outline(input, days));
+
+            List<ObjectNode> dayOutline = outline.get();
+            List<Future<List<ObjectNode>>> parts = new ArrayList<>();
+            for (int from = 1; from <= days; from += daysPerChunk) {
+                int to = Math.min(days, from + daysPerChunk - 1);
+                int first = from;
+                parts.add(async(started, () -> chunk(input, dayOutline, first, to)));
+            }
+
+            List<ObjectNode> itinerary = new ArrayList<>(days);
+            for (Future<List<ObjectNode>> part : parts) itinerary.addAll(part.get());
+            return merge(input, hotels.get(), itinerary);
+
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Itinerary generation cancelled");
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            for (Future<?> future : started) future.cancel(true); // no-op for the finished ones
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("minDays", minDays);
+        stats.put("daysPerChunk", daysPerChunk);
+        stats.put("plans", plans.get());
+        stats.put("chunks", chunks.get());
+        stats.put("chunkRetries", chunkRetries.get());
+        stats.put("failures", failures.get());
+        stats.put("repeatsDropped", repeatsDropped.get());
+        stats.put("hotelCache", hotelCache.stats());
+        return stats;
+    }
+
+    /** ================= SUB-REQUESTS ================= **/
+
+    private ArrayNode hotels(FinalPlanInput input) {
+        PlanInputKey plan = PlanInputKey.of(input);
+        HotelKey key = new HotelKey(plan.destination(), plan.budget(), plan.specialReqHash());
+        ArrayNode cached = hotelCache.get(key);
+        if (cached != null) return cached.deepCopy();
+
+        ObjectNode selections = objectMapper.createObjectNode()
+                .put("destination", input.destination)
+                .put("groupSize", input.groupSize)
+                .put("budget", input.budget)
+                .put("specialReq", input.specialReq);
+        Map<String, Object> request = request(HOTELS_PROMPT, selections,
+                CompactPlanSchema.maxTokens(0, CompactPlanSchema.MAX_HOTELS), 0.25);
+        ArrayNode hotels = objectMapper.createArrayNode();
+        for (JsonNode hotel : modelRouter.complete(UseCase.BUILD, request, null).path(CompactPlanSchema.HOTELS)) {
+            hotels.add(CompactPlanSchema.expandHotel(hotel));
+        }
+        if (hotels.isEmpty()) throw new IllegalStateException("Hotel request returned no hotels");
+        hotelCache.put(key, hotels.deepCopy(), hotelTtl);
+        return hotels;
+    }
+
+    private List<ObjectNode> outline(FinalPlanInput input, int days) {
+        JsonNode outline = modelRouter.complete(UseCase.CHAT,
+                request(OUTLINE_PROMPT, objectMapper.valueToTree(input), 120 + days * 60, 0.3), null);
+
+        Map<Integer, ObjectNode> byDay = new TreeMap<>();
+        for (JsonNode day : outline.path("days")) {
+            int number = day.path("day").asInt(0);
+            if (number >= 1 && number <= days && day instanceof ObjectNode entry) byDay.putIfAbsent(number, entry);
+        }
+        // gaps get an empty outline: that chunk then picks its own places
+        List<ObjectNode> result = new ArrayList<>(days);
+        for (int day = 1; day <= days; day++) {
+            ObjectNode entry = byDay.get(day);
+            result.add(entry != null ? entry : objectMapper.createObjectNode().put("day", day));
+        }
+        return result;
+    }
+
+    private List<ObjectNode> chunk(FinalPlanInput input, List<ObjectNode> outline, int from, int to) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.set("trip", objectMapper.valueToTree(input));
+        ArrayNode own = payload.putArray("days");
+        ArrayNode taken = payload.putArray("other_days_places");
+        for (ObjectNode day : outline) {
+            int number = day.path("day").asInt();
+            if (number >= from && number <= to) own.add(day);
+            else day.path("places").forEach(taken::add);
+        }
+        int expected = to - from + 1;
+        Map<String, Object> request = request(DAYS_PROMPT, payload, CompactPlanSchema.maxTokens(expected, 0), 0.25);
+
+        for (int attempt = 1; ; attempt++) {
+            chunks.incrementAndGet();
+            List<ObjectNode> days = new ArrayList<>();
+            JsonNode result = itineraryContinuation.complete(UseCase.BUILD, request, expected, false);
+            JsonNode written = result.has(CompactPlanSchema.DAYS) ? result.path(CompactPlanSchema.DAYS) : result.path("itinerary");
+            for (JsonNode day : written) {
+                if (CompactPlanSchema.expandDay(day) instanceof ObjectNode entry && entry.path("activities").isArray()) {
+                    days.add(entry);
+                }
+            }
+            if (days.size() >= expected) return days.subList(0, expected);
+            if (attempt == CHUNK_ATTEMPTS) {
+                throw new IllegalStateException("Days " + from + "-" + to + ": got " + days.size() + " of " + expected);
+            }
+            chunkRetries.incrementAndGet();
+            log.debug("Days {}-{} came back with {} of {} days, asking again", from, to, days.size(), expected);
+        }
+    }
+
+    /** ================= MERGE ================= **/
+
+    ObjectNode merge(FinalPlanInput input, ArrayNode hotels, List<ObjectNode> days) {
+        ArrayNode itinerary = objectMapper.createArrayNode();
+        Set<String> seen = new HashSet<>();
+        int number = 1;
+        for (ObjectNode day : days) {
+            day.put("day", number++);
+            dropRepeats(day, seen);
+            itinerary.add(day);
+        }
+        ObjectNode root = objectMapper.createObjectNode();
+        root.set("trip_plan", CompactPlanSchema.tripPlan(input, hotels, itinerary));
+        return root;
+    }
+
+    // chunks are written apart: a place a previous day already has goes, unless it is all the day has
+    private void dropRepeats(ObjectNode day, Set<String> seen) {
+        if (!(day.path("activities") instanceof ArrayNode activities)) return;
+        List<String> names = new ArrayList<>(activities.size());
+        int fresh = 0;
+        for (JsonNode activity : activities) {
+            String name = PlanInputKey.canonical(activity.path("place_name").asText(""));
+            names.add(name);
+            if (name.isEmpty() || !seen.contains(name)) fresh++;
+        }
+        if (fresh > 0) {
+            for (int i = activities.size() - 1; i >= 0; i--) {
+                if (!names.get(i).isEmpty() && seen.contains(names.get(i))) {
+                    activities.remove(i);
+                    repeatsDropped.incrementAndGet();
+                }
+            }
+        }
+        seen.addAll(names);
+    }
+
+    /** ================= HELPERS ================= **/
+
+    private Map<String, Object> request(String prompt, JsonNode payload, int maxTokens, double temperature) {
+        String user;
+        try {
+            user = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("messages", List.of(
+                Map.of("role", "system", "content", prompt),
+                Map.of("role", "user", "content", user)
+        ));
+        request.put("temperature", temperature);
+        request.put("max_tokens", maxTokens);
+        return request;
+    }
+
+    private <T> Future<T> async(List<Future<?>> started, Callable<T> task) {
+        Future<T> future = aiTaskExecutor.submit(task);
+        started.add(future);
+        return future;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Canonical form of a {@link FinalPlanInput}: trimmed, case-folded, whitespace-collapsed text,
+ * interests de-duplicated and sorted, special requirements reduced to a SHA-256 digest.
+ * Two inputs that only differ in spelling noise map to the same key.
+ */
+public record PlanInputKey(String source,
+                           String destination,
+                           String groupSize,
+                           String budget,
+                           int tripDurationDays,
+                           List<String> interests,
+                           String specialReqHash) {
+
+    public static PlanInputKey of(FinalPlanInput input) {
+        TreeSet<String> interests = new TreeSet<>();
+        if (input.interests != null) {
+            for (String interest : input.interests) {
+                String value = canonical(interest);
+                if (!value.isEmpty()) interests.add(value);
+            }
+        }
+
+        String specialReq = canonical(input.specialReq);
+
+        return new PlanInputKey(
+                canonical(input.source),
+                canonical(input.destination),
+                canonical(input.groupSize),
+                canonical(input.budget),
+                input.tripDurationDays != null ? input.tripDurationDays : 0,
+                List.copyOf(interests),
+                specialReq.isEmpty() ? "" : sha256(specialReq)
+        );
+    }
+
+    public boolean hasSpecialReq() {
+        return !specialReqHash.isEmpty();
+    }
+
+    /** NFKC, lower case, single spaces, no surrounding punctuation ("  Istanbul,  " -> "istanbul"). */
+    public static String canonical(String value) {
+        if (value == null) return "";
+        String text = Normalizer.normalize(value, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .trim();
+        return text.replaceAll("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$", "");
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.tripmind.service.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local version of the planner's question sequence (same field order as the chat PROMPT).
+ * Answers that are unambiguous - an enumerated option, a day count, "none" - are handled here
+ * with a templated next question; anything else (places, free text, unclear replies) returns
+ * empty and goes to the model.
+ */
+public final class PlannerFastPath {
+
+    /** Planner fields in asking order; {@code key} is the FinalPlanInput name, {@code ui} the widget hint. */
+    public enum Slot {
+        SOURCE("source", "source", "Where will you be starting your trip from?"),
+        DESTINATION("destination", "destination", "Great! Where would you like to go?"),
+        GROUP_SIZE("groupSize", "groupSize", "Who are you traveling with? (Solo, Couple, Family, or Friends)"),
+        BUDGET("budget", "budget", "What's your budget for this trip? (Low, Medium, or High)"),
+        TRIP_DURATION("tripDurationDays", "tripDuration", "How many days will your trip be?"),
+        INTERESTS("interests", "interests",
+                "What are you interested in? Pick any of: Adventure, Sightseeing, Cultural, Food, Nightlife, Relaxation."),
+        SPECIAL_REQ("specialReq", "specialReq",
+                "Any special requirements (accessibility, diet, traveling with kids...)? Say \"none\" if not.");
+
+        public final String key;
+        public final String ui;
+        public final String question;
+
+        Slot(String key, String ui, String question) {
+            this.key = key;
+            this.ui = ui;
+            this.question = question;
+        }
+
+        public Slot next() {
+            Slot[] slots = values();
+            return ordinal() + 1 < slots.length ? slots[ordinal() + 1] : null;
+        }
+
+        public static Slot fromUi(String ui) {
+            if (ui == null) return null;
+            for (Slot slot : values()) {
+                if (slot.ui.equalsIgnoreCase(ui.trim()) || slot.key.equalsIgnoreCase(ui.trim())) return slot;
+            }
+            return null;
+        }
+    }
+
+    /** An answer the fast path understood. {@code value} is ready for FinalPlanInput ("" = no special requirements). */
+    public record Answer(Slot slot, Object value) {}
+
+    public static final String OPENING = "Hi! I'm TripMind, your trip planner. " + Slot.SOURCE.question;
+
+    private static final List<String> GROUP_SIZES = List.of("Solo", "Couple", "Family", "Friends");
+    private static final List<String> BUDGETS = List.of("Low", "Medium", "High");
+    private static final List<String> INTERESTS =
+            List.of("Adventure", "Sightseeing", "Cultural", "Food", "Nightlife", "Relaxation");
+
+    private static final int MAX_DAYS = 60;
+
+    private static final Pattern GREETING = Pattern.compile(
+            "^(hi|hello|hey|hiya|howdy|yo|greetings|good (morning|afternoon|evening)|start|let'?s (start|go|plan)"
+                    + "|(hi|hello|hey) there)[\\s!.,:)]*$");
+    // "groupSize: Couple" - the web client prefixes option picks with the field name
+    private static final Pattern FIELD_PREFIX = Pattern.compile("^\\s*([A-Za-z]+)\\s*:\\s*(.*)$", Pattern.DOTALL);
+    private static final Pattern DAYS = Pattern.compile("^(\\d{1,3})\\s*(d|day|days)?$");
+    private static final Pattern NONE = Pattern.compile("^(no|none|nothing|nope|n/?a|skip|no thanks|nothing special)[\\s!.]*$");
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*(?:,|/|&|\\band\\b)\\s*");
+
+    private PlannerFastPath() {
+    }
+
+    public static boolean isGreeting(String message) {
+        return message == null || message.isBlank()
+                || GREETING.matcher(message.trim().toLowerCase(Locale.ROOT)).matches();
+    }
+
+    /**
+     * Understands {@code message} as the answer to {@code asked}, or to the field it names
+     * ("budget: Low"). Empty when the model has to interpret it.
+     */
+    public static Optional<Answer> parse(Slot asked, String message) {
+        if (message == null) return Optional.empty();
+        String text = message.trim();
+
+        Slot slot = asked;
+        Matcher prefixed = FIELD_PREFIX.matcher(text);
+        if (prefixed.matches()) {
+            Slot named = Slot.fromUi(prefixed.group(1));
+            if (named != null) {
+                slot = named;
+                text = prefixed.group(2).trim();
+            }
+        }
+        if (slot == null || text.isEmpty()) return Optional.empty();
+
+        Object value = switch (slot) {
+            case GROUP_SIZE -> option(GROUP_SIZES, text);
+            case BUDGET -> option(BUDGETS, text);
+            case TRIP_DURATION -> days(text);
+            case INTERESTS -> interests(text);
+            case SPECIAL_REQ -> NONE.matcher(text.toLowerCase(Locale.ROOT)).matches() ? "" : null;
+            // places need the model to validate and normalize
+            case SOURCE, DESTINATION -> null;
+        };
+        return value != null ? Optional.of(new Answer(slot, value)) : Optional.empty();
+    }
+
+    /**
+     * Best guess of which field an assistant message asks about. Later fields are checked first,
+     * because questions often acknowledge earlier answers ("Medium budget, got it. How many days...").
+     */
+    public static Slot askedIn(String assistantMessage) {
+        if (assistantMessage == null || assistantMessage.isBlank()) return null;
+        for (Slot slot : Slot.values()) {
+            if (assistantMessage.contains(slot.question)) return slot;
+        }
+
+        String text = assistantMessage.toLowerCase(Locale.ROOT);
+        if (text.contains("special") || text.contains("requirement")) return Slot.SPECIAL_REQ;
+        if (text.contains("interest")) return Slot.INTERESTS;
+        if (text.contains("how many days") || text.contains("how long")) return Slot.TRIP_DURATION;
+        if (text.contains("budget")) return Slot.BUDGET;
+        if (text.contains("who") && (text.contains("travel") || text.contains("going"))) return Slot.GROUP_SIZE;
+        if (text.contains("where") && (text.contains(" go") || text.contains("visit") || text.contains("destination")))
+            return Slot.DESTINATION;
+        if (text.contains("start") || text.contains("from") || text.contains("depart")) return Slot.SOURCE;
+        return null;
+    }
+
+    /** First slot with no value yet, or null when everything is collected. */
+    public static Slot nextMissing(Map<String, Object> state) {
+        for (Slot slot : Slot.values()) {
+            if (!state.containsKey(slot.key)) return slot;
+        }
+        return null;
+    }
+
+    /** One-sentence confirmation for ui "final", built from collected state. */
+    public static String summary(Map<String, Object> state) {
+        StringBuilder text = new StringBuilder("All set! ")
+                .append(state.get(Slot.TRIP_DURATION.key)).append("-day trip from ")
+                .append(state.get(Slot.SOURCE.key)).append(" to ").append(state.get(Slot.DESTINATION.key))
+                .append(" (").append(state.get(Slot.GROUP_SIZE.key)).append(", ")
+                .append(state.get(Slot.BUDGET.key)).append(" budget");
+
+        if (state.get(Slot.INTERESTS.key) instanceof List<?> interests && !interests.isEmpty()) {
+            text.append(", interests: ");
+            for (int i = 0; i < interests.size(); i++) {
+                if (i > 0) text.append(", ");
+                text.append(interests.get(i));
+            }
+        }
+        return text.append(").").toString();
+    }
+
+    private static String option(List<String> options, String text) {
+        String answer = text.replaceAll("[\\s!.]+$", "");
+        for (String option : options) {
+            if (option.equalsIgnoreCase(answer)) return option;
+        }
+        return null;
+    }
+
+    private static Integer days(String text) {
+        Matcher matcher = DAYS.matcher(text.toLowerCase(Locale.ROOT).replaceAll("[\\s!.]+$", ""));
+        if (!matcher.matches()) return null;
+        int days = Integer.parseInt(matcher.group(1));
+        return days >= 1 && days <= MAX_DAYS ? days : null;
+    }
+
+    private static List<String> interests(String text) {
+        if (NONE.matcher(text.toLowerCase(Locale.ROOT)).matches()) return List.of();
+
+        List<String> picked = new ArrayList<>();
+        for (String part : LIST_SEPARATOR.split(text.replaceAll("[\\s!.]+$", ""))) {
+            if (part.isBlank()) continue;
+            String option = option(INTERESTS, part);
+            // any unknown item ("museums") means free text: let the model map it
+            if (option == null) return null;
+            if (!picked.contains(option)) picked.add(option);
+        }
+        return picked.isEmpty() ? null : picked;
+    }
+}
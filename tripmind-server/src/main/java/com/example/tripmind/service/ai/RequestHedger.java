@@ -0,0 +1,189 @@
+package com.example.tripmind.service.ai;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for short, idempotent model calls (chat turns). The call runs on
+ * {@code aiTaskExecutor}; if it has not answered after the {@code percentile} latency of recent calls,
+ * an identical second call is started and whichever succeeds first wins. The other one is cancelled:
+ * its thread is interrupted, which aborts the JDK HttpClient exchange.
+ * <p>
+ * Hedges are limited per minute to {@code max-ratio} of the calls (and at most
+ * {@code max-per-minute}), so they add at most a few percent to the request and token spend.
+ * Until {@code MIN_SAMPLES} latencies are known the delay is {@code initial-delay}.
+ */
+@Component
+public class RequestHedger {
+
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ExecutorService aiTaskExecutor;
+    private final boolean enabled;
+    private final double percentile;
+    private final long initialDelayMs;
+    private final long minDelayMs;
+    private final double maxRatio;
+    private final int maxPerMinute;
+
+    // recent latencies, ring buffer (guarded by this)
+    private final long[] latenciesMs = new long[SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+
+    // budget window (guarded by this)
+    private long windowStart = System.nanoTime();
+    private int windowCalls;
+    private int windowHedges;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetDenied = new AtomicLong();
+
+    public RequestHedger(@Qualifier("aiTaskExecutor") ExecutorService aiTaskExecutor,
+                         @Value("${app.ai.hedging.enabled:true}") boolean enabled,
+                         @Value("${app.ai.hedging.percentile:95}") double percentile,
+                         @Value("${app.ai.hedging.initial-delay:1500ms}") Duration initialDelay,
+                         @Value("${app.ai.hedging.min-delay:250ms}") Duration minDelay,
+                         @Value("${app.ai.hedging.max-ratio:0.05}") double maxRatio,
+                         @Value("${app.ai.hedging.max-per-minute:10}") int maxPerMinute) {
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.enabled = enabled;
+        this.percentile = Math.min(99.9, Math.max(50, percentile));
+        this.initialDelayMs = initialDelay.toMillis();
+        this.minDelayMs = minDelay.toMillis();
+        this.maxRatio = maxRatio;
+        this.maxPerMinute = maxPerMinute;
+    }
+
+    /** Result of {@code request}, hedged when it is slow; its exception when both attempts fail. */
+    public <T> T call(Supplier<T> request) {
+        if (!enabled) return request.get();
+        calls.incrementAndGet();
+        countCall();
+
+        long start = System.nanoTime();
+        CompletionService<T> attempts = new ExecutorCompletionService<>(aiTaskExecutor);
+        List<Future<T>> running = new ArrayList<>(2);
+        running.add(attempts.submit(request::get));
+        Future<T> hedge = null;
+        try {
+            Future<T> done = attempts.poll(delayMs(), TimeUnit.MILLISECONDS);
+            if (done == null && tryHedge()) {
+                hedged.incrementAndGet();
+                hedge = attempts.submit(request::get);
+                running.add(hedge);
+            }
+
+            int pending = running.size();
+            RuntimeException failure = null;
+            while (pending > 0) {
+                if (done == null) done = attempts.take();
+                pending--;
+                try {
+                    T result = done.get();
+                    if (done == hedge) hedgeWins.incrementAndGet();
+                    record(System.nanoTime() - start);
+                    return result;
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = unwrap(e);
+                }
+                done = null;
+            }
+            throw failure;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model", e);
+        } finally {
+            for (Future<T> attempt : running) attempt.cancel(true);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("percentile", percentile);
+        stats.put("delayMs", delayMs());
+        stats.put("calls", calls.get());
+        stats.put("hedged", hedged.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("budgetDenied", budgetDenied.get());
+        long hedges = hedged.get();
+        stats.put("hedgeRate", calls.get() == 0 ? 0.0 : Math.round(hedges * 1000.0 / calls.get()) / 1000.0);
+        stats.put("hedgeWinRate", hedges == 0 ? 0.0 : Math.round(hedgeWins.get() * 1000.0 / hedges) / 1000.0);
+        synchronized (this) {
+            long[] sorted = sortedSamples();
+            stats.put("samples", sorted.length);
+            stats.put("p50Ms", at(sorted, 50));
+            stats.put("p95Ms", at(sorted, 95));
+            stats.put("p99Ms", at(sorted, 99));
+            stats.put("hedgesThisMinute", windowHedges);
+        }
+        return stats;
+    }
+
+    /** ================= DELAY & BUDGET ================= **/
+
+    synchronized long delayMs() {
+        if (sampleCount < MIN_SAMPLES) return initialDelayMs;
+        return Math.max(minDelayMs, at(sortedSamples(), percentile));
+    }
+
+    private synchronized void countCall() {
+        rollWindow();
+        windowCalls++;
+    }
+
+    private synchronized boolean tryHedge() {
+        rollWindow();
+        if (windowHedges >= maxPerMinute || windowHedges >= Math.max(1, windowCalls * maxRatio)) {
+            budgetDenied.incrementAndGet();
+            return false;
+        }
+        windowHedges++;
+        return true;
+    }
+
+    private void rollWindow() {
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            windowStart = now;
+            windowCalls = 0;
+            windowHedges = 0;
+        }
+    }
+
+    // observed latency of the call (the winner's), hedged or not
+    private synchronized void record(long nanos) {
+        latenciesMs[nextSample] = TimeUnit.NANOSECONDS.toMillis(nanos);
+        nextSample = (nextSample + 1) % SAMPLES;
+        sampleCount = Math.min(SAMPLES, sampleCount + 1);
+    }
+
+    private long[] sortedSamples() {
+        long[] sorted = Arrays.copyOf(latenciesMs, sampleCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long at(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+    }
+}
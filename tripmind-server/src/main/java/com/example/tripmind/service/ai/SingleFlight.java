@@ -0,0 +1,144 @@
+package com.example.tripmind.service.ai;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the loader,
+ * callers arriving while it is in flight wait for that result instead of starting their own.
+ * Every caller (the leader included) receives its own copy; failures are shared too.
+ * <p>
+ * With {@link #submit} the loader runs on an executor and callers may leave by cancelling their
+ * future (client disconnected); once every caller has left, the loader's thread is interrupted.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    public V execute(K key, Supplier<V> loader, UnaryOperator<V> copy) {
+        Flight<V> created = new Flight<>();
+        Flight<V> existing = joinOrRegister(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return copy.apply(await(existing.result));
+        }
+
+        executed.incrementAndGet();
+        try {
+            V value = loader.get();
+            created.result.complete(value);
+            return copy.apply(value);
+        } catch (RuntimeException | Error e) {
+            created.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /** Like {@link #execute}, with the loader on {@code executor}; cancel the returned future to leave. */
+    public CompletableFuture<V> submit(K key, Supplier<V> loader, UnaryOperator<V> copy, ExecutorService executor) {
+        Flight<V> created = new Flight<>();
+        Flight<V> existing = joinOrRegister(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return attach(key, existing, copy);
+        }
+
+        executed.incrementAndGet();
+        created.task = executor.submit(() -> {
+            try {
+                created.result.complete(loader.get());
+            } catch (Throwable e) {
+                created.result.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        });
+        return attach(key, created, copy);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("upstreamCalls", executed.get());
+        stats.put("savedCalls", coalesced.get());
+        stats.put("abandoned", abandoned.get());
+        return stats;
+    }
+
+    /** Calls stopped because every caller had left. */
+    public long abandoned() {
+        return abandoned.get();
+    }
+
+    /** The flight joined, or null when {@code created} was registered and the caller leads. */
+    private Flight<V> joinOrRegister(K key, Flight<V> created) {
+        while (true) {
+            Flight<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) return null;
+            if (existing.join()) return existing;
+            inFlight.remove(key, existing); // being abandoned: start over
+        }
+    }
+
+    private CompletableFuture<V> attach(K key, Flight<V> flight, UnaryOperator<V> copy) {
+        CompletableFuture<V> mine = flight.result.thenApply(copy);
+        mine.whenComplete((value, error) -> {
+            if (mine.isCancelled() && flight.leave()) {
+                abandoned.incrementAndGet();
+                inFlight.remove(key, flight);
+                Future<?> task = flight.task;
+                if (task != null) task.cancel(true);
+                flight.result.cancel(false);
+            }
+        });
+        return mine;
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a coalesced call");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class Flight<V> {
+
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        volatile Future<?> task;
+
+        // callers still waiting (guarded by this); 0 = abandoned, nobody may join any more
+        private int waiters = 1;
+
+        synchronized boolean join() {
+            if (waiters == 0) return false;
+            waiters++;
+            return true;
+        }
+
+        synchronized boolean leave() {
+            return waiters > 0 && --waiters == 0;
+        }
+    }
+}
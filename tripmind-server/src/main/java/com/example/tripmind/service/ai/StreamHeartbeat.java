@@ -0,0 +1,67 @@
+package com.example.tripmind.service.ai;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps open SSE streams probed while the server has nothing to send (model thinking, image enrichment).
+ * Tomcat does not watch the socket of an async request, so a client that went away is only noticed when
+ * a write fails; a comment line every {@code interval-ms} makes that happen within a couple of intervals
+ * instead of at the end of the build. EventSource clients ignore comments.
+ */
+@Component
+public class StreamHeartbeat {
+
+    private final boolean enabled;
+
+    // open streams -> what to do once the client is gone
+    private final Map<SseEmitter, Runnable> streams = new ConcurrentHashMap<>();
+
+    private final AtomicLong beats = new AtomicLong();
+    private final AtomicLong clientsGone = new AtomicLong();
+
+    public StreamHeartbeat(@Value("${app.ai.stream-heartbeat.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Probes {@code emitter} until it completes; runs {@code onClientGone} if a probe cannot be written. */
+    public void watch(SseEmitter emitter, Runnable onClientGone) {
+        if (!enabled) return;
+        streams.put(emitter, onClientGone);
+        emitter.onCompletion(() -> streams.remove(emitter));
+    }
+
+    @Scheduled(fixedDelayString = "${app.ai.stream-heartbeat.interval-ms:2000}")
+    void beat() {
+        streams.forEach((emitter, onClientGone) -> {
+            try {
+                emitter.send(SseEmitter.event().comment("keepalive"));
+                beats.incrementAndGet();
+            } catch (IOException e) {
+                if (streams.remove(emitter) != null) {
+                    clientsGone.incrementAndGet();
+                    onClientGone.run();
+                }
+            } catch (IllegalStateException e) {
+                streams.remove(emitter); // completed meanwhile
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("streams", streams.size());
+        stats.put("beats", beats.get());
+        stats.put("clientsGone", clientsGone.get());
+        return stats;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.tripmind.service.ai;
+
+/**
+ * Lower-case ASCII alphanumerics separated by single spaces; used for matching and cache keys.
+ * <p>
+ * One pass over the chars, same output as {@code toLowerCase(Locale.ROOT)} followed by
+ * {@code replaceAll("[^a-z0-9\\s]", " ").replaceAll("\\s+", " ").trim()}.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) return "";
+        char[] out = new char[value.length() + 1];
+        int length = normalize(value, out);
+        return new String(out, 0, length);
+    }
+
+    /**
+     * Writes the normalized form of {@code value} into {@code out} and returns its length.
+     * {@code out} needs room for {@code value.length() + 1} chars.
+     */
+    public static int normalize(CharSequence value, char[] out) {
+        int length = 0;
+        boolean pendingSpace = false;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = lowerAlnum(value.charAt(i));
+            if (c != 0) {
+                if (pendingSpace && length > 0) out[length++] = ' ';
+                pendingSpace = false;
+                out[length++] = c;
+            } else {
+                pendingSpace = true;
+            }
+            // 'İ' lower-cases to "i" plus a combining dot, and the dot becomes a separator
+            if (value.charAt(i) == 'İ') pendingSpace = true;
+        }
+        return length;
+    }
+
+    /** Lower-case form of c when it is an ASCII letter or digit after lower-casing, else 0. */
+    private static char lowerAlnum(char c) {
+        if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') return c;
+        if (c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+        if (c < 0x80) return 0;
+        // e.g. the Kelvin sign lower-cases to 'k'
+        char lower = Character.toLowerCase(c);
+        return lower >= 'a' && lower <= 'z' ? lower : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.tripmind.service.ai;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Small in-memory cache: LRU-bounded by entry count, with a TTL per entry.
+ * Expired entries are dropped lazily on access.
+ */
+public class TtlLruCache<K, V> {
+
+    private final int maxEntries;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public TtlLruCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlLruCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the cached value, or null when absent or expired. */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value, Duration ttl) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /** Removes every entry whose key matches; returns how many were removed. */
+    public synchronized int removeIf(Predicate<K> keyFilter) {
+        int before = entries.size();
+        entries.keySet().removeIf(keyFilter);
+        return before - entries.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+}
@@ -0,0 +1,115 @@
+package com.example.tripmind.service.ai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One outbound dependency (Groq, Wikidata, Wikipedia) with its own JDK {@link HttpClient}
+ * - and therefore its own keep-alive connection pool, negotiating HTTP/2 when the server offers it -
+ * its own timeouts and its own {@link UpstreamGuard}. Interceptors already on the builder run once per
+ * call, outside the guard; {@code perAttempt} interceptors run inside it, once for every (re)try.
+ */
+public class Upstream {
+
+    private static final Logger log = LoggerFactory.getLogger(Upstream.class);
+
+    public record Settings(Duration connectTimeout,
+                           Duration readTimeout,
+                           String warmupUrl,
+                           UpstreamGuard.Settings guard) {}
+
+    private final String name;
+    private final Settings settings;
+    private final HttpClient httpClient;
+    private final UpstreamGuard guard;
+    private final RestClient restClient;
+
+    private volatile String warmup = "pending";
+
+    public Upstream(String name, Settings settings, RestClient.Builder builder) {
+        this(name, settings, builder, List.of());
+    }
+
+    public Upstream(String name, Settings settings, RestClient.Builder builder,
+                    List<ClientHttpRequestInterceptor> perAttempt) {
+        this.name = name;
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(settings.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.guard = new UpstreamGuard(name, settings.guard(), perAttempt);
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        // time until response headers; streamed bodies are bounded by the caller
+        requestFactory.setReadTimeout(settings.readTimeout());
+
+        this.restClient = builder
+                .requestFactory(requestFactory)
+                .defaultHeader(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .requestInterceptor(guard)
+                .build();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public RestClient restClient() {
+        return restClient;
+    }
+
+    /**
+     * Opens a pooled connection (DNS, TCP, TLS, ALPN) with a HEAD request so the first real call reuses it.
+     * Goes straight to the HttpClient: a failed warm-up must not count against the circuit breaker.
+     */
+    public CompletableFuture<Void> warmUp() {
+        if (settings.warmupUrl() == null || settings.warmupUrl().isBlank()) {
+            warmup = "skipped";
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(settings.warmupUrl()))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(settings.connectTimeout().plus(settings.connectTimeout()))
+                .build();
+
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    if (error != null) {
+                        warmup = "failed";
+                        log.debug("Upstream {}: warm-up failed after {} ms: {}", name, ms, error.toString());
+                    } else {
+                        warmup = response.version() == HttpClient.Version.HTTP_2 ? "h2" : "http/1.1";
+                        log.info("Upstream {}: connection warmed in {} ms ({})", name, ms, warmup);
+                    }
+                    return null;
+                });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connectTimeout", settings.connectTimeout().toString());
+        stats.put("readTimeout", settings.readTimeout().toString());
+        stats.put("warmup", warmup);
+        stats.putAll(guard.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Per-upstream resilience, installed as the last interceptor of that upstream's RestClient:
+ * <ul>
+ *   <li>a cap on in-flight calls (held until the response is closed, so streams count too),</li>
+ *   <li>a circuit breaker over connection errors and 5xx responses,</li>
+ *   <li>retries with full-jitter exponential backoff for I/O errors, 429 and 502/503/504,
+ *       limited by a retry budget (each call earns {@code retryBudgetRatio} of a retry); a POST
+ *       (not idempotent) is only re-sent when the upstream cannot have started on it: a failure to
+ *       connect, 429 or 503 - never after a read timeout, 502 or 504,</li>
+ *   <li>transparent gzip decoding.</li>
+ * </ul>
+ * Spring runs an interceptor chain once per call, so interceptors that must see every attempt (quota
+ * pacing) are passed in as {@code perAttempt} and run by the guard in front of each (re)try.
+ */
+public class UpstreamGuard implements ClientHttpRequestInterceptor {
+
+    public record Settings(int maxConcurrent,
+                           Duration acquireTimeout,
+                           int maxAttempts,
+                           Duration baseBackoff,
+                           Duration maxBackoff,
+                           double retryBudgetRatio,
+                           int failureThreshold,
+                           Duration openDuration) {}
+
+    private enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Admission { ALLOWED, PROBE, REJECTED }
+
+    private static final double MAX_RETRY_TOKENS = 10.0;
+
+    private static final Set<HttpMethod> IDEMPOTENT = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+
+    private final String name;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final List<ClientHttpRequestInterceptor> perAttempt;
+
+    // circuit breaker (guarded by this)
+    private BreakerState state = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean probeInFlight;
+
+    // retry budget (guarded by this)
+    private double retryTokens = MAX_RETRY_TOKENS;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong notResent = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejectedOpen = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    private final AtomicLong breakerTrips = new AtomicLong();
+
+    public UpstreamGuard(String name, Settings settings) {
+        this(name, settings, List.of());
+    }
+
+    public UpstreamGuard(String name, Settings settings, List<ClientHttpRequestInterceptor> perAttempt) {
+        this.name = name;
+        this.settings = settings;
+        this.permits = new Semaphore(Math.max(1, settings.maxConcurrent()));
+        this.perAttempt = List.copyOf(perAttempt);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Admission admission = admit();
+        if (admission == Admission.REJECTED) {
+            rejectedOpen.incrementAndGet();
+            throw new ServiceUnavailableException(name + " is temporarily unavailable");
+        }
+        boolean probe = admission == Admission.PROBE;
+        if (!acquirePermit()) {
+            if (probe) releaseProbe();
+            rejectedBusy.incrementAndGet();
+            throw new ServiceUnavailableException(name + " is busy, try again shortly");
+        }
+
+        calls.incrementAndGet();
+        depositRetryToken();
+
+        boolean handedOff = false;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                ClientHttpResponse response;
+                try {
+                    response = new AttemptExecution(execution).execute(request, body);
+                } catch (IOException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // caller cancelled (e.g. a hedge loser): says nothing about the upstream
+                        if (probe) releaseProbe();
+                        probe = false;
+                        throw e;
+                    }
+                    onFailure();
+                    probe = false;
+                    if (!resendable(request, e) || !shouldRetry(attempt)) throw e;
+                    pause(backoff(attempt, null));
+                    continue;
+                }
+
+                int status = response.getStatusCode().value();
+                if (status >= 500) onFailure();
+                else onSuccess();
+                probe = false; // outcome recorded
+
+                if (isRetryable(request, status) && shouldRetry(attempt)) {
+                    Duration wait = backoff(attempt, response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+                    response.close();
+                    pause(wait);
+                    continue;
+                }
+
+                handedOff = true;
+                return new GuardedResponse(response, permits::release);
+            }
+        } finally {
+            if (!handedOff) permits.release();
+            // any exit without an outcome (cancellation, a per-attempt interceptor throwing) frees the
+            // half-open slot, or the breaker would reject every later call
+            if (probe) releaseProbe();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("breaker", currentState().name());
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("retryTokens", Math.round(retryTokens * 10) / 10.0);
+        }
+        stats.put("inFlight", settings.maxConcurrent() - permits.availablePermits());
+        stats.put("maxConcurrent", settings.maxConcurrent());
+        stats.put("calls", calls.get());
+        stats.put("retries", retries.get());
+        stats.put("retryBudgetExhausted", budgetExhausted.get());
+        stats.put("notResent", notResent.get());
+        stats.put("failures", failures.get());
+        stats.put("breakerTrips", breakerTrips.get());
+        stats.put("rejectedOpen", rejectedOpen.get());
+        stats.put("rejectedBusy", rejectedBusy.get());
+        return stats;
+    }
+
+    /** ---------- Circuit breaker ---------- */
+
+    private synchronized Admission admit() {
+        BreakerState current = currentState();
+        if (current == BreakerState.CLOSED) return Admission.ALLOWED;
+        if (current == BreakerState.OPEN || probeInFlight) return Admission.REJECTED;
+        // half-open: let exactly one probe through
+        probeInFlight = true;
+        return Admission.PROBE;
+    }
+
+    private synchronized BreakerState currentState() {
+        if (state == BreakerState.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+            state = BreakerState.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return state;
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = BreakerState.CLOSED;
+    }
+
+    private synchronized void onFailure() {
+        failures.incrementAndGet();
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == BreakerState.HALF_OPEN
+                || (state == BreakerState.CLOSED && consecutiveFailures >= settings.failureThreshold())) {
+            state = BreakerState.OPEN;
+            openUntilNanos = System.nanoTime() + settings.openDuration().toNanos();
+            breakerTrips.incrementAndGet();
+        }
+    }
+
+    private synchronized void releaseProbe() {
+        probeInFlight = false;
+    }
+
+    /** ---------- Retries ---------- */
+
+    private static boolean isRetryable(HttpRequest request, int status) {
+        if (status == 429 || status == 503) return true;
+        // a gateway error may come after the upstream already ran the request
+        return (status == 502 || status == 504) && IDEMPOTENT.contains(request.getMethod());
+    }
+
+    /**
+     * Idempotent calls are re-sent after any I/O error. Others only when the connection was never
+     * established, so nothing was written: any failure after that (a read timeout, a reset) may come
+     * after the upstream started generating (and billing). Decided by exception type only.
+     */
+    private boolean resendable(HttpRequest request, IOException error) {
+        if (IDEMPOTENT.contains(request.getMethod())) return true;
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof HttpConnectTimeoutException || t instanceof ConnectException
+                    || t instanceof UnknownHostException || t instanceof NoRouteToHostException) {
+                return true;
+            }
+            if (t instanceof HttpTimeoutException) break;
+        }
+        notResent.incrementAndGet();
+        return false;
+    }
+
+    private boolean shouldRetry(int attempt) {
+        if (attempt >= settings.maxAttempts() || currentState() == BreakerState.OPEN) return false;
+        synchronized (this) {
+            if (retryTokens < 1.0) {
+                budgetExhausted.incrementAndGet();
+                return false;
+            }
+            retryTokens -= 1.0;
+        }
+        retries.incrementAndGet();
+        return true;
+    }
+
+    private synchronized void depositRetryToken() {
+        retryTokens = Math.min(MAX_RETRY_TOKENS, retryTokens + settings.retryBudgetRatio());
+    }
+
+    /** Full jitter: uniform in [0, min(max, base * 2^(attempt-1))], but never shorter than Retry-After. */
+    private Duration backoff(int attempt, String retryAfter) {
+        long cap = Math.min(settings.maxBackoff().toMillis(),
+                settings.baseBackoff().toMillis() << Math.min(attempt - 1, 20));
+        long wait = ThreadLocalRandom.current().nextLong(Math.max(1, cap) + 1);
+
+        if (retryAfter != null) {
+            try {
+                long serverWait = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+                wait = Math.max(wait, Math.min(serverWait, settings.maxBackoff().toMillis()));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form: fall back to our own backoff
+            }
+        }
+        return Duration.ofMillis(wait);
+    }
+
+    private static void pause(Duration wait) throws IOException {
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return permits.tryAcquire(settings.acquireTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** One attempt: the per-attempt interceptors, then the rest of the RestClient chain (the HTTP call). */
+    private final class AttemptExecution implements ClientHttpRequestExecution {
+
+        private final Iterator<ClientHttpRequestInterceptor> next = perAttempt.iterator();
+        private final ClientHttpRequestExecution delegate;
+
+        AttemptExecution(ClientHttpRequestExecution delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+            return next.hasNext() ? next.next().intercept(request, body, this) : delegate.execute(request, body);
+        }
+    }
+
+    /** Releases the in-flight permit when the caller closes the response; decodes gzip bodies. */
+    private static final class GuardedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final boolean gzip;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        GuardedResponse(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+            this.gzip = "gzip".equalsIgnoreCase(delegate.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                if (gzip) {
+                    HttpHeaders copy = new HttpHeaders();
+                    copy.putAll(delegate.getHeaders());
+                    copy.remove(HttpHeaders.CONTENT_ENCODING);
+                    copy.remove(HttpHeaders.CONTENT_LENGTH);
+                    headers = HttpHeaders.readOnlyHttpHeaders(copy);
+                } else {
+                    headers = delegate.getHeaders();
+                }
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = gzip ? new GZIPInputStream(delegate.getBody()) : delegate.getBody();
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            try {
+                delegate.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.tripmind.service.ai;
+
+import java.util.List;
+
+/** Wikidata item as used for image picking: label/description plus P18 (image) and P31 (instance of). */
+public record WikidataEntity(String id,
+                             String label,
+                             String description,
+                             String imageFile,
+                             List<String> instanceOf) {}
@@ -0,0 +1,414 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Optional offline Wikidata subset for image enrichment: entities with an image (P18) whose
+ * instance-of (P31) is a hotel or attraction class, searchable by label and alias tokens.
+ * <p>
+ * Source ({@code app.ai.wikidata-index.path}): JSON lines, either entities as in the Wikidata JSON dump
+ * (one per line, the dump's "[", "]" and trailing commas are accepted) or compact records
+ * {@code {"id","label","aliases":[],"description","image","instanceOf":[]}}; anything outside the
+ * subset is skipped. On first start the subset is written to a binary index next to the source
+ * ({@code <path>.idx}), later starts just map that file. Lookups read the mapped file directly,
+ * so the index costs almost no heap.
+ */
+@Component
+public class WikidataLocalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(WikidataLocalIndex.class);
+
+    private static final int MAGIC = 0x544D5749; // "TMWI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;   // long token hash, int postings start, int postings count
+
+    // too common to tell places apart; ignored in names and queries
+    private static final Set<String> STOP_TOKENS = Set.of(
+            "the", "of", "and", "de", "la", "le", "les", "di", "del", "da", "du", "in", "at", "on", "st");
+
+    private final Path source;
+    private final Path indexFile;
+
+    private volatile Mapped mapped;
+    private volatile String state = "disabled";
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public WikidataLocalIndex(@Value("${app.ai.wikidata-index.path:}") String path) {
+        this.source = path == null || path.isBlank() ? null : Path.of(path.trim());
+        this.indexFile = source == null ? null : source.resolveSibling(source.getFileName() + ".idx");
+        if (source == null) return;
+
+        // lookups fall through to the network until the index is mapped
+        state = "loading";
+        Thread loader = new Thread(this::load, "wikidata-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean ready() {
+        return mapped != null;
+    }
+
+    /**
+     * Entities (with image and instance-of) whose label or an alias contains every token of the query,
+     * exact names first, then shorter names. Empty when the index is off, loading, or has no such name:
+     * the caller then asks Wikidata.
+     */
+    public List<WikidataEntity> search(String query, int limit) {
+        Mapped index = mapped;
+        if (index == null) return List.of();
+
+        List<String> tokens = tokens(TextNormalizer.normalize(query));
+        if (tokens.isEmpty() || limit <= 0) {
+            misses.incrementAndGet();
+            return List.of();
+        }
+
+        // name ordinal -> number of query tokens it contains
+        Map<Integer, Integer> matched = new HashMap<>();
+        for (String token : tokens) {
+            int slot = index.findSlot(hash(token));
+            if (slot < 0) {
+                misses.incrementAndGet();
+                return List.of(); // a token no indexed name has
+            }
+            index.forEachPosting(slot, name -> matched.merge(name, 1, Integer::sum));
+        }
+
+        // entity ordinal -> best rank (lower is better): exact name = token count, else 100 + name length
+        Map<Integer, Integer> ranks = new HashMap<>();
+        for (Map.Entry<Integer, Integer> match : matched.entrySet()) {
+            if (match.getValue() < tokens.size()) continue;
+            int name = match.getKey();
+            int nameTokens = index.nameTokens(name);
+            int rank = nameTokens == tokens.size() ? nameTokens : 100 + nameTokens;
+            ranks.merge(index.nameEntity(name), rank, Math::min);
+        }
+        if (ranks.isEmpty()) {
+            misses.incrementAndGet();
+            return List.of();
+        }
+
+        List<Map.Entry<Integer, Integer>> ordered = new ArrayList<>(ranks.entrySet());
+        ordered.sort(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+
+        List<WikidataEntity> result = new ArrayList<>(Math.min(limit, ordered.size()));
+        for (int i = 0; i < ordered.size() && result.size() < limit; i++) {
+            result.add(index.entity(ordered.get(i).getKey()));
+        }
+        hits.incrementAndGet();
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        Mapped index = mapped;
+        if (index != null) {
+            stats.put("entities", index.entityCount);
+            stats.put("names", index.nameCount);
+            stats.put("fileBytes", index.buffer.capacity());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        if (source != null) stats.put("source", source.toString());
+        return stats;
+    }
+
+    /** ================= LOADING ================= **/
+
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            if (!Files.exists(indexFile)
+                    || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(source)) < 0) {
+                build(source, indexFile);
+            }
+            mapped = Mapped.open(indexFile);
+            state = "ready";
+            log.info("Wikidata index: {} entities, {} names mapped from {} in {} ms",
+                    mapped.entityCount, mapped.nameCount, indexFile, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            state = "failed";
+            log.warn("Wikidata index not available ({}): {}", source, e.toString());
+        }
+    }
+
+    /** Filters the JSON lines to the subset and writes the binary index (temp file + atomic move). */
+    static void build(Path source, Path target) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Indexed> entities = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.endsWith(",")) line = line.substring(0, line.length() - 1);
+                if (line.length() < 2 || line.charAt(0) != '{') continue;
+                Indexed entity = Indexed.parse(mapper.readTree(line));
+                if (entity != null) entities.add(entity);
+            }
+        }
+
+        // names (label + aliases) and the token -> names postings
+        List<int[]> names = new ArrayList<>();                 // {entity, token count}
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        for (int e = 0; e < entities.size(); e++) {
+            Set<String> seen = new HashSet<>();
+            for (String name : entities.get(e).names()) {
+                List<String> tokens = tokens(TextNormalizer.normalize(name));
+                if (tokens.isEmpty() || !seen.add(String.join(" ", tokens))) continue;
+                int ordinal = names.size();
+                names.add(new int[]{e, tokens.size()});
+                for (String token : tokens) postings.computeIfAbsent(hash(token), h -> new ArrayList<>()).add(ordinal);
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(2, postings.size() * 2 - 1)) << 1;
+        long[] slotHash = new long[capacity];
+        int[] slotStart = new int[capacity];
+        int[] slotCount = new int[capacity];
+        int postingCount = 0;
+        for (Map.Entry<Long, List<Integer>> token : postings.entrySet()) {
+            int slot = (int) (token.getKey() & (capacity - 1));
+            while (slotHash[slot] != 0) slot = (slot + 1) & (capacity - 1);
+            slotHash[slot] = token.getKey();
+            slotStart[slot] = postingCount;
+            slotCount[slot] = token.getValue().size();
+            postingCount += token.getValue().size();
+        }
+
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            byte[][] records = new byte[entities.size()][];
+            for (int e = 0; e < entities.size(); e++) records[e] = entities.get(e).encode();
+
+            long entityOffsetsPos = HEADER_BYTES;
+            long namesPos = entityOffsetsPos + 4L * entities.size();
+            long tablePos = namesPos + 8L * names.size();
+            long postingsPos = tablePos + (long) SLOT_BYTES * capacity;
+            long recordsPos = postingsPos + 4L * postingCount;
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entities.size());
+            out.writeInt(names.size());
+            out.writeInt(capacity);
+            out.writeInt(0);
+            out.writeLong(entityOffsetsPos);
+            out.writeLong(namesPos);
+            out.writeLong(tablePos);
+            out.writeLong(postingsPos);
+            out.writeLong(recordsPos);
+
+            int offset = 0;
+            for (byte[] record : records) {
+                out.writeInt(offset);
+                offset += record.length;
+            }
+            for (int[] name : names) {
+                out.writeInt(name[0]);
+                out.writeInt(name[1]);
+            }
+            for (int slot = 0; slot < capacity; slot++) {
+                out.writeLong(slotHash[slot]);
+                out.writeInt(slotStart[slot]);
+                out.writeInt(slotCount[slot]);
+            }
+            // same map iteration order as the slot starts assigned above
+            for (Map.Entry<Long, List<Integer>> token : postings.entrySet()) {
+                for (int name : token.getValue()) out.writeInt(name);
+            }
+            for (byte[] record : records) out.write(record);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<String> tokens(String normalized) {
+        if (normalized.isEmpty()) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split(" ")) {
+            if (token.length() >= 2 && !STOP_TOKENS.contains(token) && !tokens.contains(token)) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // 64-bit FNV-1a; 0 marks an empty slot
+    private static long hash(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** An entity of the subset while building: names to index and the record to store. */
+    private record Indexed(String id, String label, List<String> aliases, String description,
+                           String image, List<String> instanceOf) {
+
+        static Indexed parse(JsonNode node) {
+            boolean dump = node.has("claims");
+            String image = dump
+                    ? node.path("claims").path("P18").path(0).path("mainsnak").path("datavalue").path("value").asText("")
+                    : node.path("image").asText("");
+
+            List<String> instanceOf = new ArrayList<>();
+            if (dump) {
+                for (JsonNode claim : node.path("claims").path("P31")) {
+                    String id = claim.path("mainsnak").path("datavalue").path("value").path("id").asText("");
+                    if (!id.isEmpty()) instanceOf.add(id);
+                }
+            } else {
+                node.path("instanceOf").forEach(id -> instanceOf.add(id.asText()));
+            }
+
+            boolean relevant = instanceOf.stream().anyMatch(id ->
+                    ImageCandidateScorer.HOTEL_INSTANCE_OF.contains(id) || ImageCandidateScorer.ATTRACTION_INSTANCE_OF.contains(id));
+            String id = node.path("id").asText("");
+            if (image.isBlank() || !relevant || id.isEmpty()) return null;
+
+            String label = dump ? node.path("labels").path("en").path("value").asText("") : node.path("label").asText("");
+            String description = dump
+                    ? node.path("descriptions").path("en").path("value").asText("")
+                    : node.path("description").asText("");
+            List<String> aliases = new ArrayList<>();
+            JsonNode aliasNodes = dump ? node.path("aliases").path("en") : node.path("aliases");
+            for (JsonNode alias : aliasNodes) {
+                aliases.add(alias.isObject() ? alias.path("value").asText("") : alias.asText(""));
+            }
+            if (label.isBlank() && aliases.isEmpty()) return null;
+            return new Indexed(id, label, aliases, description, image, instanceOf);
+        }
+
+        List<String> names() {
+            List<String> names = new ArrayList<>(aliases.size() + 1);
+            if (!label.isBlank()) names.add(label);
+            names.addAll(aliases);
+            return names;
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeString(out, id);
+                writeString(out, label);
+                writeString(out, description);
+                writeString(out, image);
+                out.writeByte(Math.min(instanceOf.size(), 255));
+                for (int i = 0; i < Math.min(instanceOf.size(), 255); i++) writeString(out, instanceOf.get(i));
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void writeString(OutputStream out, String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(utf8.length, 0xFFFF);
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(utf8, 0, length);
+        }
+    }
+
+    /** The mapped index file; only absolute reads, so it is safe to share between threads. */
+    private static final class Mapped {
+
+        final MappedByteBuffer buffer;
+        final int entityCount;
+        final int nameCount;
+        final int capacity;
+        final int entityOffsetsPos;
+        final int namesPos;
+        final int tablePos;
+        final int postingsPos;
+        final int recordsPos;
+
+        private Mapped(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) throw new IOException("Not a TripMind Wikidata index");
+            this.entityCount = buffer.getInt(8);
+            this.nameCount = buffer.getInt(12);
+            this.capacity = buffer.getInt(16);
+            this.entityOffsetsPos = (int) buffer.getLong(24);
+            this.namesPos = (int) buffer.getLong(32);
+            this.tablePos = (int) buffer.getLong(40);
+            this.postingsPos = (int) buffer.getLong(48);
+            this.recordsPos = (int) buffer.getLong(56);
+        }
+
+        static Mapped open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) throw new IOException("Index larger than 2 GB: " + file);
+                return new Mapped(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        int findSlot(long hash) {
+            int slot = (int) (hash & (capacity - 1));
+            while (true) {
+                long stored = buffer.getLong(tablePos + slot * SLOT_BYTES);
+                if (stored == hash) return slot;
+                if (stored == 0) return -1;
+                slot = (slot + 1) & (capacity - 1);
+            }
+        }
+
+        void forEachPosting(int slot, IntConsumer consumer) {
+            int start = buffer.getInt(tablePos + slot * SLOT_BYTES + 8);
+            int count = buffer.getInt(tablePos + slot * SLOT_BYTES + 12);
+            for (int i = 0; i < count; i++) consumer.accept(buffer.getInt(postingsPos + (start + i) * 4));
+        }
+
+        int nameEntity(int name) {
+            return buffer.getInt(namesPos + name * 8);
+        }
+
+        int nameTokens(int name) {
+            return buffer.getInt(namesPos + name * 8 + 4);
+        }
+
+        WikidataEntity entity(int ordinal) {
+            int[] pos = {recordsPos + buffer.getInt(entityOffsetsPos + ordinal * 4)};
+            String id = readString(pos);
+            String label = readString(pos);
+            String description = readString(pos);
+            String image = readString(pos);
+            int types = buffer.get(pos[0]++) & 0xFF;
+            List<String> instanceOf = new ArrayList<>(types);
+            for (int i = 0; i < types; i++) instanceOf.add(readString(pos));
+            return new WikidataEntity(id, label, description, image, List.copyOf(instanceOf));
+        }
+
+        private String readString(int[] pos) {
+            int length = (buffer.get(pos[0]) & 0xFF) << 8 | (buffer.get(pos[0] + 1) & 0xFF);
+            byte[] utf8 = new byte[length];
+            buffer.get(pos[0] + 2, utf8);
+            pos[0] += 2 + length;
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
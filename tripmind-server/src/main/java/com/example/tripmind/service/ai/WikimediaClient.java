@@ -0,0 +1,273 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.*;
+
+/**
+ * Thin HTTP layer over the Wikidata and Wikipedia api.php endpoints used for image enrichment.
+ * Batch-capable calls accept up to {@link #MAX_BATCH} ids/titles (the MediaWiki limit for anonymous clients).
+ * Failures (transport errors, non-2xx, an open circuit breaker, MediaWiki error payloads) are thrown as
+ * {@link WikimediaException}, so an empty result always means the API answered with nothing.
+ */
+@Component
+public class WikimediaClient {
+
+    public static final int MAX_BATCH = 50;
+
+    private static final String USER_AGENT = "TripMind/1.0 (image-enrichment)";
+
+    /** Wikipedia page with a lead image. */
+    public record PageImage(String title, String url) {}
+
+    /** The lookup did not get an answer; unlike an empty result it says nothing about the place. */
+    public static class WikimediaException extends RuntimeException {
+        public WikimediaException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final RestClient wikidata;
+    private final RestClient wikipedia;
+    private final String wikidataApi;
+    private final String wikipediaApi;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public WikimediaClient(@Qualifier("wikidataUpstream") Upstream wikidataUpstream,
+                           @Qualifier("wikipediaUpstream") Upstream wikipediaUpstream,
+                           @Value("${app.ai.wikimedia.wikidata-api:https://www.wikidata.org/w/api.php}") String wikidataApi,
+                           @Value("${app.ai.wikimedia.wikipedia-api:https://en.wikipedia.org/w/api.php}") String wikipediaApi) {
+        this.wikidata = wikidataUpstream.restClient();
+        this.wikipedia = wikipediaUpstream.restClient();
+        this.wikidataApi = wikidataApi;
+        this.wikipediaApi = wikipediaApi;
+    }
+
+    /** ---------- Wikidata ---------- */
+
+    /** wbsearchentities: ids/labels/descriptions only (no claims). */
+    public List<WikidataEntity> searchEntities(String query, int limit) {
+        if (query == null || query.isBlank()) return Collections.emptyList();
+        String uri = UriComponentsBuilder.fromHttpUrl(wikidataApi)
+                .queryParam("action", "wbsearchentities")
+                .queryParam("format", "json")
+                .queryParam("language", "en")
+                .queryParam("limit", limit)
+                .queryParam("search", query)
+                .build()
+                .toUriString();
+
+        JsonNode search = get(wikidata, uri).path("search");
+        if (!search.isArray()) return Collections.emptyList();
+
+        List<WikidataEntity> results = new ArrayList<>();
+        for (JsonNode item : search) {
+            String id = item.path("id").asText("");
+            String label = item.path("label").asText("");
+            String description = item.path("description").asText("");
+            if (!id.isBlank()) {
+                results.add(new WikidataEntity(id, label, description, null, List.of()));
+            }
+        }
+        return results;
+    }
+
+    /** wbgetentities for at most {@link #MAX_BATCH} ids, with P18 (image) and P31 (instance of). */
+    public Map<String, WikidataEntity> getEntities(List<String> ids) {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        if (ids.size() > MAX_BATCH) throw new IllegalArgumentException("Too many ids: " + ids.size());
+        // reduce payload, but keep claims for P18 and P31
+        String uri = UriComponentsBuilder.fromHttpUrl(wikidataApi)
+                .queryParam("action", "wbgetentities")
+                .queryParam("format", "json")
+                .queryParam("ids", String.join("|", ids))
+                .queryParam("props", "labels|descriptions|claims")
+                .build()
+                .toUriString();
+
+        JsonNode entities = get(wikidata, uri).path("entities");
+        if (!entities.isObject()) return Collections.emptyMap();
+
+        Map<String, WikidataEntity> result = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = entities.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            String id = entry.getKey();
+            JsonNode entity = entry.getValue();
+            if (entity.has("missing")) continue;
+
+            String label = entity.path("labels").path("en").path("value").asText("");
+            String description = entity.path("descriptions").path("en").path("value").asText("");
+
+            String imageFile = extractFirstStringClaim(entity.path("claims").path("P18"));
+            List<String> instanceOf = extractInstanceOf(entity.path("claims").path("P31"));
+
+            result.put(id, new WikidataEntity(id, label, description, imageFile, instanceOf));
+        }
+        return result;
+    }
+
+    /** ---------- Wikipedia ---------- */
+
+    /**
+     * pageimages for at most {@link #MAX_BATCH} exact titles (redirects followed).
+     * Result is keyed by the title as requested.
+     */
+    public Map<String, List<PageImage>> pageImagesByTitles(List<String> titles) {
+        if (titles == null || titles.isEmpty()) return Collections.emptyMap();
+        if (titles.size() > MAX_BATCH) throw new IllegalArgumentException("Too many titles: " + titles.size());
+        String uri = UriComponentsBuilder.fromHttpUrl(wikipediaApi)
+                .queryParam("action", "query")
+                .queryParam("format", "json")
+                .queryParam("redirects", 1)
+                .queryParam("titles", String.join("|", titles))
+                .queryParam("prop", "pageimages")
+                .queryParam("piprop", "original|thumbnail")
+                .queryParam("pithumbsize", 1200)
+                .queryParam("pilimit", MAX_BATCH)
+                .build()
+                .toUriString();
+
+        JsonNode query = get(wikipedia, uri).path("query");
+        JsonNode pages = query.path("pages");
+        if (!pages.isObject()) return Collections.emptyMap();
+
+        // requested title -> normalized -> redirect target -> page
+        Map<String, String> renames = new HashMap<>();
+        collectRenames(query.path("normalized"), renames);
+        collectRenames(query.path("redirects"), renames);
+
+        Map<String, PageImage> byPageTitle = new HashMap<>();
+        Iterator<JsonNode> values = pages.elements();
+        while (values.hasNext()) {
+            JsonNode page = values.next();
+            String pageTitle = page.path("title").asText("");
+            String source = extractImageSource(page);
+            if (source != null && !source.isBlank()) {
+                byPageTitle.put(pageTitle, new PageImage(pageTitle, source));
+            }
+        }
+
+        Map<String, List<PageImage>> result = new HashMap<>();
+        for (String title : titles) {
+            String resolved = title;
+            for (int hops = 0; hops < 3 && renames.containsKey(resolved); hops++) {
+                resolved = renames.get(resolved);
+            }
+            PageImage image = byPageTitle.get(resolved);
+            result.put(title, image != null ? List.of(image) : List.of());
+        }
+        return result;
+    }
+
+    /** search generator + pageimages (not batchable: one query per call). */
+    public List<PageImage> searchPageImages(String query, int limit) {
+        if (query == null || query.isBlank()) return Collections.emptyList();
+        String uri = UriComponentsBuilder.fromHttpUrl(wikipediaApi)
+                .queryParam("action", "query")
+                .queryParam("format", "json")
+                .queryParam("generator", "search")
+                .queryParam("gsrsearch", query)
+                .queryParam("gsrlimit", limit)
+                .queryParam("prop", "pageimages")
+                .queryParam("piprop", "original|thumbnail")
+                .queryParam("pithumbsize", 1200)
+                .queryParam("pilimit", limit)
+                .build()
+                .toUriString();
+
+        JsonNode pages = get(wikipedia, uri).path("query").path("pages");
+        if (!pages.isObject()) return Collections.emptyList();
+
+        List<PageImage> candidates = new ArrayList<>();
+        Iterator<JsonNode> values = pages.elements();
+        while (values.hasNext()) {
+            JsonNode page = values.next();
+            String title = page.path("title").asText("");
+            String source = extractImageSource(page);
+            if (source != null && !source.isBlank()) {
+                candidates.add(new PageImage(title, source));
+            }
+        }
+        return candidates;
+    }
+
+    /** ---------- helpers ---------- */
+
+    private JsonNode get(RestClient client, String uri) {
+        ResponseEntity<String> response;
+        try {
+            response = client.get()
+                    .uri(uri)
+                    .header("User-Agent", USER_AGENT)
+                    .retrieve()
+                    .toEntity(String.class);
+        } catch (RuntimeException e) {
+            // transport errors, 4xx/5xx, ServiceUnavailableException from an open breaker
+            throw new WikimediaException("Wikimedia request failed: " + uri, e);
+        }
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new WikimediaException("Wikimedia returned " + response.getStatusCode() + ": " + uri, null);
+        }
+
+        JsonNode body;
+        try {
+            body = objectMapper.readTree(response.getBody());
+        } catch (JsonProcessingException e) {
+            throw new WikimediaException("Unreadable Wikimedia response: " + uri, e);
+        }
+        // api.php reports errors (maxlag, rate limits, bad parameters) with a 200
+        if (body.has("error")) {
+            throw new WikimediaException("Wikimedia error " + body.path("error").path("code").asText("") + ": " + uri, null);
+        }
+        return body;
+    }
+
+    private void collectRenames(JsonNode mappings, Map<String, String> renames) {
+        if (!mappings.isArray()) return;
+        for (JsonNode mapping : mappings) {
+            String from = mapping.path("from").asText("");
+            String to = mapping.path("to").asText("");
+            if (!from.isBlank() && !to.isBlank()) renames.put(from, to);
+        }
+    }
+
+    private String extractImageSource(JsonNode page) {
+        JsonNode original = page.path("original");
+        if (original.isObject()) {
+            String source = original.path("source").asText("");
+            if (!source.isBlank()) return source;
+        }
+        JsonNode thumbnail = page.path("thumbnail");
+        if (thumbnail.isObject()) {
+            String source = thumbnail.path("source").asText("");
+            if (!source.isBlank()) return source;
+        }
+        return null;
+    }
+
+    private String extractFirstStringClaim(JsonNode claims) {
+        if (!claims.isArray() || claims.isEmpty()) return null;
+        JsonNode value = claims.get(0).path("mainsnak").path("datavalue").path("value");
+        return value.isTextual() ? value.asText() : null;
+    }
+
+    private List<String> extractInstanceOf(JsonNode claims) {
+        if (!claims.isArray()) return List.of();
+        List<String> ids = new ArrayList<>();
+        for (JsonNode claim : claims) {
+            JsonNode value = claim.path("mainsnak").path("datavalue").path("value");
+            String id = value.path("id").asText("");
+            if (!id.isBlank()) ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.service.ai.WikimediaClient.PageImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Per-plan lookup planner. Callers request every query/id/title a plan needs up front;
+ * {@link #execute()} de-duplicates them, packs ids and titles into {@link WikimediaClient#MAX_BATCH}-sized
+ * calls, runs the round in parallel (bounded) and memoizes the results for local scoring.
+ *
+ * A round blocks until its calls finish or the plan deadline passes; anything still missing afterwards
+ * reads as empty, and the {@code *Answered} checks tell such gaps (failed or cut-off calls) apart from
+ * real misses. Used from one thread.
+ */
+public class WikimediaLookupPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(WikimediaLookupPlanner.class);
+
+    /** Runs one upstream call under the caller's concurrency limits. */
+    public interface CallRunner {
+        <T> T run(Callable<T> call) throws Exception;
+    }
+
+    private final WikimediaClient client;
+    private final WikidataLocalIndex localIndex;
+    private final ImageResolutionCache cache;
+    private final ExecutorService executor;
+    private final CallRunner runner;
+    private final long deadline;
+
+    private final Map<String, List<WikidataEntity>> entitySearches = new ConcurrentHashMap<>();
+    private final Set<String> localSearches = new HashSet<>();
+    private final Map<String, WikidataEntity> entities = new ConcurrentHashMap<>();
+    private final Set<String> requestedIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<PageImage>> titleImages = new ConcurrentHashMap<>();
+    private final Map<String, List<PageImage>> pageSearches = new ConcurrentHashMap<>();
+
+    // lookups sent upstream that have no answer (yet): failed, timed out or cancelled
+    private final Set<String> unanswered = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Callable<Void>> pending = new LinkedHashMap<>();
+    private final List<String> pendingIds = new ArrayList<>();
+    private final Set<String> pendingTitles = new LinkedHashSet<>();
+
+    private int calls;
+
+    public WikimediaLookupPlanner(WikimediaClient client,
+                                  WikidataLocalIndex localIndex,
+                                  ImageResolutionCache cache,
+                                  ExecutorService executor,
+                                  CallRunner runner,
+                                  long deadline) {
+        this.client = client;
+        this.localIndex = localIndex;
+        this.cache = cache;
+        this.executor = executor;
+        this.runner = runner;
+        this.deadline = deadline;
+    }
+
+    /** ---------- planning ---------- */
+
+    /**
+     * Entity search. Answered right away, details included, when the local Wikidata index knows the name
+     * (returns true); otherwise queued for the next round.
+     */
+    public boolean requestEntitySearch(String query, int limit) {
+        if (query == null || query.isBlank()) return false;
+        if (entitySearches.containsKey(query)) return localSearches.contains(query);
+
+        List<WikidataEntity> local = localIndex.search(query, limit);
+        if (!local.isEmpty()) {
+            entitySearches.put(query, local);
+            localSearches.add(query);
+            for (WikidataEntity entity : local) {
+                entities.put(entity.id(), entity);
+                requestedIds.add(entity.id());
+            }
+            return true;
+        }
+
+        String key = "search:" + query;
+        if (pending.containsKey(key)) return false;
+        unanswered.add(key);
+        pending.put(key, () -> {
+            entitySearches.put(query, client.searchEntities(query, limit));
+            unanswered.remove(key);
+            return null;
+        });
+        return false;
+    }
+
+    /** Entity details (P18/P31): served from the shared cache when possible, the rest fetched in batches. */
+    public void requestEntities(Collection<String> ids) {
+        for (String id : distinct(ids)) {
+            if (!requestedIds.add(id)) continue;
+            WikidataEntity cached = cache.getEntity(id);
+            if (cached != null) {
+                entities.put(id, cached);
+            } else {
+                pendingIds.add(id);
+                unanswered.add("entity:" + id);
+            }
+        }
+    }
+
+    public void requestTitle(String title) {
+        if (title == null || title.isBlank()) return;
+        if (titleImages.containsKey(title)) return;
+        // '|' is the MediaWiki separator and never part of a valid title: a miss without asking
+        if (title.indexOf('|') >= 0) {
+            titleImages.put(title, List.of());
+            return;
+        }
+        if (pendingTitles.add(title)) unanswered.add("title:" + title);
+    }
+
+    public void requestPageSearch(String query, int limit) {
+        if (query == null || query.isBlank()) return;
+        String key = query + "#" + limit;
+        if (pageSearches.containsKey(key) || pending.containsKey("pages:" + key)) return;
+        unanswered.add("pages:" + key);
+        pending.put("pages:" + key, () -> {
+            pageSearches.put(key, client.searchPageImages(query, limit));
+            unanswered.remove("pages:" + key);
+            return null;
+        });
+    }
+
+    /** Runs everything requested so far as one parallel round of (batched) calls. */
+    public void execute() {
+        List<Callable<Void>> tasks = new ArrayList<>(pending.values());
+        pending.clear();
+
+        for (List<String> batch : batches(pendingIds)) {
+            tasks.add(() -> {
+                Map<String, WikidataEntity> loaded = client.getEntities(batch);
+                for (WikidataEntity entity : loaded.values()) {
+                    entities.put(entity.id(), entity);
+                    cache.putEntity(entity);
+                }
+                batch.forEach(id -> unanswered.remove("entity:" + id)); // absent ids are missing entities
+                return null;
+            });
+        }
+        pendingIds.clear();
+
+        for (List<String> batch : batches(pendingTitles)) {
+            tasks.add(() -> {
+                Map<String, List<PageImage>> loaded = client.pageImagesByTitles(batch);
+                for (String title : batch) {
+                    titleImages.put(title, loaded.getOrDefault(title, List.of()));
+                    unanswered.remove("title:" + title);
+                }
+                return null;
+            });
+        }
+        pendingTitles.clear();
+
+        runAll(tasks);
+    }
+
+    /** ---------- reading (local) ---------- */
+
+    public List<WikidataEntity> entitySearch(String query) {
+        return entitySearches.getOrDefault(query, List.of());
+    }
+
+    public WikidataEntity entity(String id) {
+        return entities.get(id);
+    }
+
+    public List<PageImage> titleImages(String title) {
+        return titleImages.getOrDefault(title, List.of());
+    }
+
+    public List<PageImage> pageSearch(String query, int limit) {
+        return pageSearches.getOrDefault(query + "#" + limit, List.of());
+    }
+
+    /** False when the search was sent but got no answer; an empty {@link #entitySearch} is then not a miss. */
+    public boolean entitySearchAnswered(String query) {
+        return !unanswered.contains("search:" + query);
+    }
+
+    public boolean entityAnswered(String id) {
+        return !unanswered.contains("entity:" + id);
+    }
+
+    public boolean titleAnswered(String title) {
+        return !unanswered.contains("title:" + title);
+    }
+
+    public boolean pageSearchAnswered(String query, int limit) {
+        return !unanswered.contains("pages:" + query + "#" + limit);
+    }
+
+    public boolean expired() {
+        // an interrupted enrichment (client gone) stops like one past its deadline
+        return System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted();
+    }
+
+    public synchronized int calls() {
+        return calls;
+    }
+
+    /** ---------- helpers ---------- */
+
+    private void runAll(List<Callable<Void>> tasks) {
+        if (tasks.isEmpty() || expired()) return;
+        synchronized (this) {
+            calls += tasks.size();
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(() -> runner.run(task)));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                try {
+                    future.get(remaining, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    log.debug("Wikimedia lookup failed: {}", e.getCause().toString());
+                } catch (TimeoutException e) {
+                    log.debug("Wikimedia lookups hit the enrichment deadline");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static Set<String> distinct(Collection<String> values) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value != null && !value.isBlank()) result.add(value);
+        }
+        return result;
+    }
+
+    private static List<List<String>> batches(Collection<String> pendingValues) {
+        List<String> values = new ArrayList<>(pendingValues);
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += WikimediaClient.MAX_BATCH) {
+            batches.add(List.copyOf(values.subList(i, Math.min(values.size(), i + WikimediaClient.MAX_BATCH))));
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.tripmind.service.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Image files on local disk, bounded by total size with LRU eviction.
+ * <p>
+ * One file per entry, named {@code <key>.<ext>}; the index lives in memory and is rebuilt from the
+ * directory on startup (oldest modification time first, and reads touch the file), so the LRU order
+ * survives restarts. Content never changes for a key, so the ETag is derived from key and size.
+ * <p>
+ * Hits are handed out as open streams, opened under the same lock as eviction, so an entry deleted
+ * right after the lookup is still served in full. Eviction takes entries read at most once before
+ * the ones read again, so a run of requests for new images cannot flush the images in use.
+ */
+public class ImageDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDiskCache.class);
+
+    public record Entry(Path path, String contentType, String etag, long size) {}
+
+    /** A hit: the entry and its content, open. Closing it closes the stream. */
+    public record Image(Entry entry, InputStream body) implements AutoCloseable {
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // read-only file stream: nothing to flush
+            }
+        }
+    }
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "image/svg+xml", "svg",
+            "image/tiff", "tif"
+    );
+
+    private final Path dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(64, 0.75f, true);
+    // reads per key since it was written, capped at 2 (guarded by this)
+    private final Map<String, Integer> reads = new HashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageDiskCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = Math.max(1, maxBytes);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create image cache directory " + dir, e);
+        }
+        load();
+    }
+
+    /** Cached entry with its content open, or null on a miss (including a file removed behind our back). */
+    public Image open(String key) {
+        Image image;
+        synchronized (this) {
+            Entry entry = index.get(key);
+            image = entry != null ? openFile(key, entry) : null;
+        }
+        if (image == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        try {
+            Files.setLastModifiedTime(image.entry().path(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("Cannot touch cached image {}: {}", image.entry().path(), e.toString());
+        }
+        return image;
+    }
+
+    /** Writes the bytes (temp file + atomic move) and evicts least recently used entries over the limit. */
+    public Entry put(String key, byte[] bytes, String contentType) {
+        Path target = dir.resolve(key + "." + EXTENSIONS.getOrDefault(contentType, "img"));
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cached image " + target, e);
+        }
+
+        Entry entry = new Entry(target, contentType, etag(key, bytes.length), bytes.length);
+        synchronized (this) {
+            remove(key);
+            index.put(key, entry);
+            totalBytes += entry.size();
+            evict(key);
+        }
+        return entry;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", index.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("dir", dir.toString());
+        return stats;
+    }
+
+    // called with the lock held: eviction cannot delete the file between lookup and open
+    private Image openFile(String key, Entry entry) {
+        try {
+            Image image = new Image(entry, Files.newInputStream(entry.path()));
+            reads.merge(key, 1, (count, one) -> Math.min(2, count + one));
+            return image;
+        } catch (NoSuchFileException e) {
+            remove(key); // deleted outside the cache: load it again
+            return null;
+        } catch (IOException e) {
+            log.debug("Cannot open cached image {}: {}", entry.path(), e.toString());
+            remove(key);
+            return null;
+        }
+    }
+
+    /** Least recently used first among entries read at most once, then among all; never {@code keep}. */
+    private void evict(String keep) {
+        evictWhere(keep, key -> reads.getOrDefault(key, 0) < 2);
+        evictWhere(keep, key -> true);
+    }
+
+    private void evictWhere(String keep, Predicate<String> candidate) {
+        Iterator<Map.Entry<String, Entry>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> next = eldest.next();
+            if (next.getKey().equals(keep) || !candidate.test(next.getKey())) continue;
+            eldest.remove();
+            reads.remove(next.getKey());
+            totalBytes -= next.getValue().size();
+            delete(next.getValue().path());
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry previous = index.remove(key);
+        reads.remove(key);
+        if (previous != null) totalBytes -= previous.size();
+    }
+
+    private void load() {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(Files::isRegularFile).forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read image cache directory " + dir, e);
+        }
+        files.sort(Comparator.comparing(ImageDiskCache::lastModified));
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String contentType = dot > 0 ? contentType(name.substring(dot + 1)) : null;
+            if (contentType == null) {
+                delete(file); // temp files of interrupted writes
+                continue;
+            }
+            try {
+                String key = name.substring(0, dot);
+                long size = Files.size(file);
+                index.put(key, new Entry(file, contentType, etag(key, size), size));
+                totalBytes += size;
+            } catch (IOException e) {
+                log.debug("Skipping cached image {}: {}", file, e.toString());
+            }
+        }
+        evict(null);
+        log.info("Image cache: {} files, {} bytes in {}", index.size(), totalBytes, dir);
+    }
+
+    private static String contentType(String extension) {
+        for (Map.Entry<String, String> type : EXTENSIONS.entrySet()) {
+            if (type.getValue().equals(extension)) return type.getKey();
+        }
+        return "img".equals(extension) ? "application/octet-stream" : null;
+    }
+
+    private static String etag(String key, long size) {
+        return "\"" + key + "-" + Long.toHexString(size) + "\"";
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Cannot delete cached image {}: {}", file, e.toString());
+        }
+    }
+}
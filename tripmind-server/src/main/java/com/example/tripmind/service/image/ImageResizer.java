@@ -0,0 +1,85 @@
+package com.example.tripmind.service.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Downscales images with the JDK's ImageIO (JPEG, PNG, GIF, BMP). Images with transparency are
+ * written as PNG, everything else as JPEG. Formats ImageIO cannot decode (WebP, SVG) return null.
+ */
+public final class ImageResizer {
+
+    public record Resized(byte[] bytes, String contentType) {}
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private ImageResizer() {
+    }
+
+    /** Scaled to {@code width} (aspect ratio kept); images already that narrow come back unchanged. */
+    public static Resized resize(byte[] source, String contentType, int width) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+        if (image == null) return null;
+        if (image.getWidth() <= width) return new Resized(source, contentType);
+
+        boolean alpha = image.getColorModel().hasAlpha();
+        int height = Math.max(1, Math.round(image.getHeight() * (float) width / image.getWidth()));
+        BufferedImage scaled = scale(image, width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        return alpha
+                ? new Resized(png(scaled), "image/png")
+                : new Resized(jpeg(scaled), "image/jpeg");
+    }
+
+    // halve step by step, then the last bilinear step: keeps detail without the cost of area averaging
+    private static BufferedImage scale(BufferedImage image, int width, int height, int type) {
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
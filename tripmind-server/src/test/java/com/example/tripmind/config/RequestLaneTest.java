@@ -0,0 +1,34 @@
+package com.example.tripmind.config;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLaneTest {
+
+    @Test
+    void shedsRequestsBeyondTheLaneWithRetryAfter() {
+        RequestLane lane = new RequestLane("ai", new RequestLane.Settings(1, 0, Duration.ofMillis(10), Duration.ofSeconds(5)));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(lane.preHandle(first, response, null));
+        ServiceUnavailableException shed = assertThrows(ServiceUnavailableException.class,
+                () -> lane.preHandle(new MockHttpServletRequest(), response, null));
+        assertEquals("5", shed.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1L, lane.stats().get("rejectedFull"));
+
+        // the slot is freed once, however many completion callbacks arrive
+        lane.afterCompletion(first, response, null, null);
+        lane.afterCompletion(first, response, null, null);
+        assertEquals(0, lane.stats().get("active"));
+        assertTrue(lane.preHandle(new MockHttpServletRequest(), response, null));
+        assertEquals(1, lane.stats().get("active"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.exception.BadRequestException;
+import com.example.tripmind.exception.ResourceNotFoundException;
+import com.example.tripmind.service.ai.Upstream;
+import com.example.tripmind.service.ai.UpstreamGuard;
+import com.example.tripmind.service.image.ImageDiskCache;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.RestClient;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Against a local stand-in for Commons: Special:FilePath redirects to /upload/, which serves a 1200x800 JPEG. */
+class ImageProxyServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private final AtomicInteger filePathCalls = new AtomicInteger();
+    private byte[] jpeg;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        jpeg = jpeg(1200, 800);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/wiki/Special:FilePath/", exchange -> {
+            filePathCalls.incrementAndGet();
+            String file = exchange.getRequestURI().getPath().substring("/wiki/Special:FilePath/".length());
+            if (file.startsWith("Missing")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.getResponseHeaders().add("Location", "/upload/" + file);
+                exchange.sendResponseHeaders(302, -1);
+            }
+            exchange.close();
+        });
+        server.createContext("/upload/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, jpeg.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(jpeg);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchesOnceAndServesScaledVariantsFromDisk() throws IOException {
+        ImageProxyService proxy = proxy(Long.MAX_VALUE);
+
+        try (ImageDiskCache.Image image = proxy.variant("File:Hagia Sophia.jpg", 320)) {
+            assertEquals("image/jpeg", image.entry().contentType());
+            BufferedImage small = ImageIO.read(image.body());
+            assertEquals(320, small.getWidth());
+            assertEquals(213, small.getHeight());
+        }
+        try (ImageDiskCache.Image image = proxy.variant("Hagia_Sophia.jpg", 640)) {
+            assertEquals(640, ImageIO.read(image.body()).getWidth());
+        }
+        assertEquals(jpeg.length, entry(proxy, "Hagia_Sophia.jpg", 0).size());
+        ImageDiskCache.Entry small = entry(proxy, "Hagia_Sophia.jpg", 320);
+        assertEquals(small, entry(proxy, "Hagia_Sophia.jpg", 320));
+        assertEquals(1, filePathCalls.get());
+
+        // a restart keeps the files and the ETags
+        ImageProxyService restarted = proxy(Long.MAX_VALUE);
+        assertEquals(small.etag(), entry(restarted, "Hagia_Sophia.jpg", 320).etag());
+        assertEquals(1, filePathCalls.get());
+
+        // only the configured widths are served
+        assertThrows(BadRequestException.class, () -> proxy.variant("Hagia_Sophia.jpg", 300));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFilesOverTheLimit() {
+        ImageProxyService proxy = proxy(jpeg.length * 2L + 100);
+
+        ImageDiskCache.Entry first = entry(proxy, "First.jpg", 1200);
+        ImageDiskCache.Entry second = entry(proxy, "Second.jpg", 1200);
+        entry(proxy, "First.jpg", 1200); // touch: Second is now the eldest
+        entry(proxy, "Third.jpg", 1200);
+
+        assertTrue(Files.exists(first.path()));
+        assertFalse(Files.exists(second.path()));
+        assertEquals(3, filePathCalls.get());
+    }
+
+    @Test
+    void imagesInUseSurviveARunOfNewOnes() {
+        ImageProxyService proxy = proxy(jpeg.length * 3L + 100);
+
+        ImageDiskCache.Entry hot = entry(proxy, "Hot.jpg", 1200);
+        entry(proxy, "Hot.jpg", 1200);
+        for (int i = 0; i < 5; i++) entry(proxy, "New" + i + ".jpg", 1200);
+
+        // the eldest entry, but read again: one-time reads go first
+        assertTrue(Files.exists(hot.path()));
+        assertEquals(6, filePathCalls.get());
+    }
+
+    @Test
+    void openHitSurvivesEvictionAndDeletedFilesAreFetchedAgain() throws IOException {
+        ImageProxyService proxy = proxy(jpeg.length + 100);
+
+        try (ImageDiskCache.Image image = proxy.variant("First.jpg", 1200)) {
+            entry(proxy, "Second.jpg", 1200); // evicts First while it is being served
+            assertFalse(Files.exists(image.entry().path()));
+            assertEquals(jpeg.length, image.body().readAllBytes().length);
+        }
+
+        ImageDiskCache.Entry second = entry(proxy, "Second.jpg", 1200);
+        Files.delete(second.path());
+        assertEquals(jpeg.length, entry(proxy, "Second.jpg", 1200).size());
+        assertEquals(3, filePathCalls.get());
+    }
+
+    @Test
+    void rewritesCommonsUrlsToTheProxy() {
+        ImageProxyService proxy = proxy(Long.MAX_VALUE);
+
+        assertEquals("http://app.test/api/public/images/commons/Hagia_Sophia_Mars_2013.jpg?w=1200",
+                proxy.publicUrl("https://commons.wikimedia.org/wiki/Special:FilePath/Hagia_Sophia_Mars_2013.jpg?width=1200"));
+        assertEquals("http://app.test/api/public/images/commons/Caf%C3%A9_de_Flore.jpg?w=1200",
+                proxy.publicUrl("https://upload.wikimedia.org/wikipedia/commons/thumb/a/ab/Caf%C3%A9_de_Flore.jpg/1200px-Caf%C3%A9_de_Flore.jpg"));
+        assertEquals("https://upload.wikimedia.org/wikipedia/en/a/ab/Poster.jpg",
+                proxy.publicUrl("https://upload.wikimedia.org/wikipedia/en/a/ab/Poster.jpg"));
+
+        assertThrows(ResourceNotFoundException.class, () -> proxy.variant("Missing.jpg", 320));
+    }
+
+    private static ImageDiskCache.Entry entry(ImageProxyService proxy, String file, int width) {
+        try (ImageDiskCache.Image image = proxy.variant(file, width)) {
+            return image.entry();
+        }
+    }
+
+    private ImageProxyService proxy(long maxBytes) {
+        UpstreamGuard.Settings guard = new UpstreamGuard.Settings(4, Duration.ofSeconds(1), 1,
+                Duration.ofMillis(10), Duration.ofMillis(10), 0.1, 5, Duration.ofSeconds(5));
+        Upstream commons = new Upstream("commons",
+                new Upstream.Settings(Duration.ofSeconds(2), Duration.ofSeconds(5), "", guard), RestClient.builder());
+        String sourceUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/wiki/Special:FilePath/";
+        return new ImageProxyService(commons, cacheDir, maxBytes, List.of(320, 640, 1200), 10_000_000,
+                sourceUrl, true, "http://app.test/");
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLUE);
+        g.fillOval(width / 4, height / 4, width / 2, height / 2);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.tripmind.service;
+
+import com.example.tripmind.dto.trip.TripDtos.SaveTripRequest;
+import com.example.tripmind.model.Trip;
+import com.example.tripmind.repository.TripRepository;
+import com.example.tripmind.service.ai.ImageEnrichmentTracker;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TripServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ImageEnrichmentTracker tracker = new ImageEnrichmentTracker(100, Duration.ofMinutes(1));
+
+    @Test
+    void planSavedBeforeThePassFinishesGetsTheImagesLater() throws Exception {
+        // a single-row table
+        AtomicReference<Trip> row = new AtomicReference<>();
+        TripRepository trips = mock(TripRepository.class);
+        when(trips.save(any(Trip.class))).thenAnswer(call -> {
+            Trip trip = call.getArgument(0);
+            trip.setId(UUID.randomUUID());
+            row.set(trip);
+            return trip;
+        });
+        when(trips.findById(any())).thenAnswer(call -> Optional.ofNullable(row.get()));
+        TripService service = new TripService(trips, mapper, tracker, mock(PlatformTransactionManager.class));
+
+        String id = tracker.start();
+        Map<String, Object> plan = mapper.readValue("""
+                {"trip_plan": {"image_enrichment_id": "%s",
+                               "hotels": [{"name": "Pera Palace", "hotel_image_url": null}]}}
+                """.formatted(id), new TypeReference<>() {});
+        service.save(new SaveTripRequest(null, "Almaty", "Istanbul", 3, "medium", "2", List.of(), null, plan),
+                new TestingAuthenticationToken("traveller@test", null));
+
+        // saved as sent, still tagged with the pass
+        assertEquals(id, storedPlan(row).path(ImageEnrichmentTracker.ID_FIELD).asText());
+        assertTrue(storedPlan(row).path("hotels").path(0).path("hotel_image_url").isNull());
+
+        tracker.complete(id, mapper.readTree("""
+                {"trip_plan": {"hotels": [{"hotel_image_url": "https://img/pera.jpg"}]}}
+                """));
+
+        JsonNode stored = storedPlan(row);
+        assertFalse(stored.has(ImageEnrichmentTracker.ID_FIELD));
+        assertEquals("https://img/pera.jpg", stored.path("hotels").path(0).path("hotel_image_url").asText());
+        assertEquals("Pera Palace", stored.path("hotels").path(0).path("name").asText());
+        assertEquals(1L, tracker.stats().get("mergedAfterSave"));
+    }
+
+    private JsonNode storedPlan(AtomicReference<Trip> row) throws Exception {
+        return mapper.readTree(row.get().getPlanJson()).path("trip_plan");
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactPlanSchemaTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void expandsShortKeysToTheTripPlanShape() throws Exception {
+        JsonNode compact = objectMapper.readTree("""
+                {"hotels": [{"n": "Pera Palace", "addr": "Mesrutiyet Cd. 52", "price": "$180", "c": [41.03, 28.97], "r": 4.6, "desc": "Historic"}],
+                 "days": [{"d": 1, "plan": "Old city", "best": "Morning",
+                           "acts": [{"n": "Hagia Sophia", "desc": "Mosque", "c": [41.008, 28.98], "addr": "Sultanahmet",
+                                     "price": "Free", "time": "15 min", "best": "Early"}]},
+                          {"day": 2, "day_plan": "Already long", "activities": []}]}
+                """);
+        FinalPlanInput input = new FinalPlanInput();
+        input.source = "Almaty";
+        input.destination = "Istanbul";
+        input.budget = "Medium";
+        input.groupSize = "Couple";
+        input.interests = List.of("Cultural");
+
+        JsonNode plan = CompactPlanSchema.expandPlan(compact, input).path("trip_plan");
+
+        assertEquals("Istanbul", plan.path("destination").asText());
+        assertEquals(2, plan.path("duration_days").asInt());
+        assertEquals("Cultural", plan.path("interests").path(0).asText());
+
+        JsonNode hotel = plan.path("hotels").path(0);
+        assertEquals("Pera Palace", hotel.path("hotel_name").asText());
+        assertTrue(hotel.has("hotel_image_url") && hotel.path("hotel_image_url").isNull());
+        assertEquals(28.97, hotel.path("geo_coordinates").path("longitude").asDouble());
+        assertEquals(4.6, hotel.path("rating").asDouble());
+
+        JsonNode activity = plan.path("itinerary").path(0).path("activities").path(0);
+        assertEquals("Hagia Sophia", activity.path("place_name").asText());
+        assertEquals("15 min", activity.path("time_travel_each_location").asText());
+        assertEquals(41.008, activity.path("geo_coordinates").path("latitude").asDouble());
+        assertEquals("Morning", plan.path("itinerary").path(0).path("best_time_to_visit_day").asText());
+        assertEquals("Already long", plan.path("itinerary").path(1).path("day_plan").asText());
+
+        // long-form output is kept as it is
+        JsonNode legacy = objectMapper.readTree("{\"trip_plan\": {\"destination\": \"Paris\"}}");
+        assertSame(legacy, CompactPlanSchema.expandPlan(legacy, input));
+    }
+
+    @Test
+    void sizesTheTokenBudgetToDaysAndHotels() {
+        assertEquals(1024, CompactPlanSchema.maxTokens(1, 0));
+        assertTrue(CompactPlanSchema.maxTokens(3, 8) < CompactPlanSchema.maxTokens(7, 8));
+        assertEquals(8000, CompactPlanSchema.maxTokens(30, 8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.tripmind.service.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Scheduler wired around the guard as in UpstreamHttpConfig, against a local stand-in for Groq. */
+class GroqRequestSchedulerTest {
+
+    private HttpServer server;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // first call is rate limited for a moment, the retry succeeds
+        server.createContext("/chat", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            boolean limited = calls.incrementAndGet() == 1;
+            byte[] body = (limited ? "{\"error\":\"rate limited\"}" : "{\"ok\":true}").getBytes(StandardCharsets.UTF_8);
+            if (limited) exchange.getResponseHeaders().add("Retry-After", "0.2");
+            exchange.getResponseHeaders().add("x-ratelimit-remaining-tokens", "5000");
+            exchange.sendResponseHeaders(limited ? 429 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void guardRetriesQueueForQuotaAgain() {
+        GroqRequestScheduler scheduler = new GroqRequestScheduler(30, 12000,
+                Duration.ofSeconds(5), Duration.ofSeconds(5), 4);
+        UpstreamGuard.Settings guard = new UpstreamGuard.Settings(4, Duration.ofSeconds(1), 2,
+                Duration.ofMillis(10), Duration.ofMillis(10), 1.0, 5, Duration.ofSeconds(5));
+        Upstream groq = new Upstream("groq",
+                new Upstream.Settings(Duration.ofSeconds(2), Duration.ofSeconds(5), "", guard),
+                RestClient.builder().requestInterceptor(scheduler), List.of(scheduler.attempts()));
+
+        long start = System.nanoTime();
+        String body = groq.restClient().post()
+                .uri("http://127.0.0.1:" + server.getAddress().getPort() + "/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"max_tokens\":100}")
+                .retrieve()
+                .body(String.class);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("{\"ok\":true}", body);
+        assertEquals(2, calls.get());
+
+        Map<String, Object> stats = scheduler.stats();
+        assertEquals(2L, stats.get("granted"));
+        assertEquals(1L, stats.get("retries"));
+        assertEquals(1L, stats.get("rateLimited"));
+        assertEquals(0L, stats.get("inFlightTokens"));
+        // the retry waited for the Retry-After the scheduler read, not just the guard's 10 ms backoff
+        assertTrue(elapsedMs >= 200, "retry went out after " + elapsedMs + " ms");
+    }
+}
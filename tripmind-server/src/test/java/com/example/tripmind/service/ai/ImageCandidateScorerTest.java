@@ -0,0 +1,151 @@
+package com.example.tripmind.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The char-loop normalizer and precomputed scorer must match the regex/split implementation they replaced. */
+class ImageCandidateScorerTest {
+
+    private static final String ALPHABET = "aAzZ09 -,.'()&/\t\nİıIiKéÉßçÇşŞğĞüÜöÖσΣKхостел🌉";
+
+    private static final List<String> NAMES = List.of(
+            "Hagia Sophia", "Pera Palace Hotel", "İstiklal Avenue", "Grand Bazaar", "Hotel Hotel de Paris",
+            "Çırağan Palace Kempinski", "St. Mark's Basilica", "B&B Rome", "", "Ko");
+    private static final List<String> DESTINATIONS = List.of("Istanbul, Turkey", "İstanbul", "Paris", "Venice", "");
+    private static final List<String> INSTANCE_OF = List.of("Q27686", "Q875157", "Q16560", "Q33506", "Q5", "Q4167410");
+
+    @Test
+    void normalizesLikeTheRegexVersion() {
+        Random random = new Random(42);
+        for (int n = 0; n < 20_000; n++) {
+            String text = randomText(random);
+            assertEquals(legacyNormalize(text), TextNormalizer.normalize(text), () -> "input: " + text);
+        }
+        assertEquals("i stanbul ra an", TextNormalizer.normalize("  İstanbul — Çırağan!!"));
+        assertEquals("", TextNormalizer.normalize(null));
+    }
+
+    @Test
+    void scoresAndRanksLikeTheLegacyScorer() {
+        Random random = new Random(7);
+        List<WikidataEntity> entities = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            String label = random.nextInt(3) == 0 ? randomText(random) : mix(random);
+            String description = random.nextBoolean() ? "hotel in " + pick(random, DESTINATIONS) : randomText(random);
+            List<String> instanceOf = List.of(pick(random, INSTANCE_OF), pick(random, INSTANCE_OF));
+            entities.add(new WikidataEntity("Q" + n, label, description, "File " + n + ".jpg", instanceOf));
+            titles.add(random.nextBoolean() ? mix(random) : randomText(random));
+        }
+        entities.add(new WikidataEntity("Qnull", null, null, "x.jpg", null));
+
+        for (String name : NAMES) {
+            for (String destination : DESTINATIONS) {
+                for (boolean isHotel : new boolean[]{false, true}) {
+                    ImageCandidateScorer scorer = new ImageCandidateScorer(name, destination, isHotel);
+                    String normalizedName = legacyNormalize(name);
+                    String normalizedDestination = legacyNormalize(destination);
+
+                    for (WikidataEntity entity : entities) {
+                        assertEquals(legacyScoreEntity(entity, normalizedName, normalizedDestination, isHotel),
+                                scorer.scoreEntity(entity), () -> name + " / " + entity);
+                    }
+                    for (String title : titles) {
+                        assertEquals(legacyScoreTitle(title, normalizedName, normalizedDestination, isHotel),
+                                scorer.scoreTitle(title), () -> name + " / " + title);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String mix(Random random) {
+        String name = pick(random, NAMES);
+        String destination = pick(random, DESTINATIONS);
+        return switch (random.nextInt(4)) {
+            case 0 -> name;
+            case 1 -> name + " (" + destination + ")";
+            case 2 -> name.toUpperCase(Locale.ROOT) + " hotel";
+            default -> destination + " " + name.split(" ")[0] + " resort";
+        };
+    }
+
+    private static <T> T pick(Random random, List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(30);
+        for (int i = 0; i < length; i++) text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return text.toString();
+    }
+
+    /** ---------- Previous implementation (ImageEnrichmentService / TextNormalizer) ---------- */
+
+    private static final Set<String> HOTEL = Set.of("Q27686", "Q675196", "Q875157", "Q217175", "Q24127145");
+    private static final Set<String> ATTRACTION = Set.of("Q41176", "Q23413", "Q16560", "Q33506", "Q16970", "Q2977",
+            "Q163577", "Q12280", "Q4989906", "Q22698", "Q174782", "Q11032", "Q811979");
+    private static final Set<String> DISALLOWED = Set.of("Q5");
+
+    private static String legacyNormalize(String value) {
+        if (value == null) return "";
+        return value.toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9\\s]", " ")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private static int legacyScoreTitle(String title, String normalizedName, String normalizedDestination, boolean isHotel) {
+        String normalizedTitle = legacyNormalize(title);
+        int score = 0;
+        if (!normalizedName.isBlank() && normalizedTitle.contains(normalizedName)) score += 20;
+        if (!normalizedDestination.isBlank() && normalizedTitle.contains(normalizedDestination)) score += 6;
+        if (isHotel && normalizedTitle.contains("hotel")) score += 6;
+        if (!normalizedName.isBlank()) {
+            for (String token : normalizedName.split(" ")) {
+                if (token.length() < 3) continue;
+                if (normalizedTitle.contains(token)) score += 2;
+            }
+        }
+        return score;
+    }
+
+    private static int legacyScoreEntity(WikidataEntity entity, String normalizedName, String normalizedDestination,
+                                         boolean isHotel) {
+        String title = legacyNormalize(entity.label());
+        String description = legacyNormalize(entity.description());
+        int score = 0;
+        if (!normalizedName.isBlank() && title.contains(normalizedName)) score += 25;
+        if (!normalizedDestination.isBlank() && title.contains(normalizedDestination)) score += 6;
+        if (!normalizedName.isBlank()) {
+            for (String token : normalizedName.split(" ")) {
+                if (token.length() < 3) continue;
+                if (title.contains(token)) score += 2;
+            }
+        }
+        if (isHotel) {
+            if (containsAny(entity.instanceOf(), HOTEL)) score += 18;
+            if (description.contains("hotel") || description.contains("resort")) score += 10;
+        } else {
+            if (containsAny(entity.instanceOf(), ATTRACTION)) score += 10;
+        }
+        if (containsAny(entity.instanceOf(), DISALLOWED)) score -= 50;
+        return score;
+    }
+
+    private static boolean containsAny(List<String> values, Set<String> allowed) {
+        if (values == null) return false;
+        for (String value : values) {
+            if (allowed.contains(value)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageEnrichmentTrackerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ImageEnrichmentTracker tracker = new ImageEnrichmentTracker(100, Duration.ofMinutes(1));
+
+    @Test
+    void savedPlanGetsTheResolvedImagesByIndex() throws Exception {
+        String id = tracker.start();
+        assertEquals("pending", tracker.patch(id, Duration.ZERO).path("status").asText());
+
+        JsonNode enriched = mapper.readTree("""
+                {"trip_plan": {"hotels": [{"hotel_image_url": "https://img/h0.jpg"}, {"hotel_image_url": null}],
+                 "itinerary": [{"activities": [{"place_image_url": null}, {"place_image_url": "https://img/d0a1.jpg"}]},
+                               {"activities": [{"place_image_url": "https://img/d1a0.jpg"}]}]}}
+                """);
+        tracker.complete(id, enriched);
+
+        JsonNode patch = tracker.patch(id, Duration.ZERO);
+        assertEquals("done", patch.path("status").asText());
+        assertEquals(1, patch.path("hotels").size());
+        assertEquals(2, patch.path("activities").size());
+        assertEquals(1, patch.path("activities").path(1).path("day").asInt());
+
+        // the client saves trip_plan as returned, with one image it picked itself
+        Map<String, Object> saved = mapper.readValue("""
+                {"image_enrichment_id": "%s",
+                 "hotels": [{"hotel_image_url": null}, {"hotel_image_url": null}],
+                 "itinerary": [{"activities": [{"place_image_url": null}, {"place_image_url": "https://mine.jpg"}]},
+                               {"activities": [{"place_image_url": ""}]}]}
+                """.formatted(id), new TypeReference<>() {});
+        tracker.mergeInto(saved);
+
+        assertFalse(saved.containsKey(ImageEnrichmentTracker.ID_FIELD));
+        assertEquals("https://img/h0.jpg", field(saved, "hotels", 0, "hotel_image_url"));
+        assertNull(field(saved, "hotels", 1, "hotel_image_url"));
+        assertEquals("https://mine.jpg", activity(saved, 0, 1));
+        assertEquals("https://img/d1a0.jpg", activity(saved, 1, 0));
+    }
+
+    @Test
+    void unknownFailedOrPendingEnrichmentLeavesThePlanAlone() {
+        assertNull(tracker.patch("missing", Duration.ZERO));
+
+        String id = tracker.start();
+        tracker.fail(id);
+        Map<String, Object> saved = new HashMap<>(Map.of(ImageEnrichmentTracker.ID_FIELD, id, "hotels", List.of()));
+        tracker.mergeInto(saved);
+        assertEquals(Map.of("hotels", List.of()), saved);
+
+        // a save does not wait for a pass that is still running; the plan keeps the id to be merged later
+        String pending = tracker.start();
+        Map<String, Object> early = new HashMap<>(Map.of(ImageEnrichmentTracker.ID_FIELD, pending, "hotels", List.of()));
+        assertEquals(pending, tracker.mergeInto(early));
+        assertEquals(Map.of(ImageEnrichmentTracker.ID_FIELD, pending, "hotels", List.of()), early);
+        assertEquals(1L, tracker.stats().get("pendingOnSave"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object field(Map<String, Object> plan, String list, int index, String field) {
+        return ((Map<String, Object>) ((List<?>) plan.get(list)).get(index)).get(field);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object activity(Map<String, Object> plan, int day, int index) {
+        Map<String, Object> dayPlan = (Map<String, Object>) ((List<?>) plan.get("itinerary")).get(day);
+        return ((Map<String, Object>) ((List<?>) dayPlan.get("activities")).get(index)).get("place_image_url");
+    }
+}
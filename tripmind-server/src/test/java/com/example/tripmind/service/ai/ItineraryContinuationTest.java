@@ -0,0 +1,111 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.example.tripmind.service.ai.ModelRouter.UseCase;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItineraryContinuationTest {
+
+    private static final Map<String, Object> REQUEST = Map.of(
+            "messages", List.of(Map.of("role", "system", "content", "plan"), Map.of("role", "user", "content", "{}")),
+            "max_tokens", 1024);
+
+    @Test
+    void continuesFromTheLastCompleteDay() {
+        ScriptedProvider provider = new ScriptedProvider(
+                new ModelProvider.Completion("""
+                        {"hotels": [{"n": "Pera"}], "days": [{"d": 1, "acts": [{"n": "Hagia Sophia"}]},
+                         {"d": 2, "acts": [{"n": "Galata"}]}, {"d": 3, "acts": [{"n": "Topk""", "length"),
+                // the continuation is cut off again after one day
+                new ModelProvider.Completion("{\"days\": [{\"d\": 1, \"acts\": [{\"n\": \"Topkapi\"}]}, {\"d\": 2, \"ac",
+                        "length"),
+                new ModelProvider.Completion("{\"days\": [{\"d\": 9, \"acts\": [{\"n\": \"Balat\"}]}]}", "stop"));
+        ItineraryContinuation continuation = new ItineraryContinuation(router(provider), 2);
+
+        JsonNode plan = continuation.complete(UseCase.BUILD, REQUEST, 4, true);
+
+        assertEquals(1, plan.path("hotels").size());
+        JsonNode days = plan.path("days");
+        assertEquals(4, days.size());
+        for (int i = 0; i < 4; i++) assertEquals(i + 1, days.get(i).path("d").asInt());
+        assertEquals("Topkapi", days.get(2).path("acts").path(0).path("n").asText());
+        assertEquals("Balat", days.get(3).path("acts").path(0).path("n").asText());
+
+        // the continuation asks for the remaining days only, naming the places already used
+        String ask = provider.lastUserMessage(1);
+        assertTrue(ask.contains("Days already written: 2"), ask);
+        assertTrue(ask.contains("\"Hagia Sophia\",\"Galata\""), ask);
+        assertTrue(ask.contains("with days 3 to 4"), ask);
+        assertFalse(ask.contains("\"hotels\""), ask);
+        assertTrue(provider.lastUserMessage(2).contains("with days 4 to 4"));
+        assertEquals(1L, continuation.stats().get("recovered"));
+    }
+
+    @Test
+    void leavesCompleteOutputAlone() {
+        ScriptedProvider provider = new ScriptedProvider(
+                new ModelProvider.Completion("```json\n{\"days\": [{\"d\": 1}]}\n```", "stop"));
+        ItineraryContinuation continuation = new ItineraryContinuation(router(provider), 2);
+
+        JsonNode plan = continuation.complete(UseCase.BUILD, REQUEST, 3, true);
+
+        assertEquals(1, plan.path("days").size());
+        assertEquals(1, provider.requests.size());
+        assertEquals(0L, continuation.stats().get("truncated"));
+    }
+
+    private static ModelRouter router(ModelProvider provider) {
+        return new ModelRouter(List.of(provider), List.of("stand-in:m"), List.of("stand-in:m"),
+                "", 10_000, 60_000, 3, Duration.ofMinutes(1));
+    }
+
+    /** Answers completeText calls with the given completions in order. */
+    private static final class ScriptedProvider implements ModelProvider {
+
+        final Deque<Completion> answers;
+        final List<Map<String, Object>> requests = new ArrayList<>();
+
+        ScriptedProvider(Completion... answers) {
+            this.answers = new ArrayDeque<>(List.of(answers));
+        }
+
+        @SuppressWarnings("unchecked")
+        String lastUserMessage(int request) {
+            List<Map<String, Object>> messages = (List<Map<String, Object>>) requests.get(request).get("messages");
+            return (String) messages.get(messages.size() - 1).get("content");
+        }
+
+        @Override
+        public String name() {
+            return "stand-in";
+        }
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        public JsonNode complete(String model, Map<String, Object> request, Priority priority) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Completion completeText(String model, Map<String, Object> request, Priority priority) {
+            requests.add(request);
+            return answers.removeFirst();
+        }
+
+        @Override
+        public String stream(String model, Map<String, Object> request, Priority priority, Consumer<String> onDelta) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.tripmind.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItineraryStreamParserTest {
+
+    private static final String PLAN = """
+            ```json
+            {"trip_plan": {"destination": "Paris, \\"FR\\"",
+              "hotels": [{"hotel_name": "A {braces}", "geo_coordinates": {"latitude": 1, "longitude": 2}},
+                         {"hotel_name": "B"}],
+              "itinerary": [{"day": 1, "activities": [{"place_name": "Louvre"}]},
+                            {"day": 2, "activities": []}]}}
+            ```
+            """;
+
+    @Test
+    void emitsEachHotelAndDayWhenItCloses() {
+        List<String> events = new ArrayList<>();
+        ItineraryStreamParser parser = new ItineraryStreamParser(new ItineraryStreamParser.Listener() {
+            @Override
+            public void onHotel(int index, String json) {
+                events.add("hotel" + index + ":" + json);
+            }
+
+            @Override
+            public void onDay(int index, String json) {
+                events.add("day" + index + ":" + json);
+            }
+        });
+
+        // feed in small uneven chunks, like model deltas
+        for (int i = 0; i < PLAN.length(); i += 3) {
+            parser.feed(PLAN.substring(i, Math.min(PLAN.length(), i + 3)));
+        }
+
+        assertTrue(parser.isComplete());
+        assertEquals(4, events.size());
+        assertTrue(events.get(0).startsWith("hotel0:{\"hotel_name\": \"A {braces}\""));
+        assertEquals("hotel1:{\"hotel_name\": \"B\"}", events.get(1));
+        assertTrue(events.get(2).startsWith("day0:{\"day\": 1"));
+        assertEquals("day1:{\"day\": 2, \"activities\": []}", events.get(3));
+        assertTrue(parser.text().startsWith("{\"trip_plan\""));
+        assertTrue(parser.text().endsWith("}}"));
+    }
+}
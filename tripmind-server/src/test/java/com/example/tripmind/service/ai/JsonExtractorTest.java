@@ -0,0 +1,125 @@
+package com.example.tripmind.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonExtractorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void skipsFencesAndProse() throws Exception {
+        JsonNode node = JsonExtractor.readTree(mapper,
+                "Sure! Here is your plan:\n```json\n{\"resp\": \"Where to? {x}\", \"ui\": \"destination\"}\n```\nEnjoy");
+        assertEquals("destination", node.path("ui").asText());
+        assertEquals("Where to? {x}", node.path("resp").asText());
+    }
+
+    @Test
+    void repairsTruncatedOutputAtTheLastCompleteValue() throws Exception {
+        JsonNode node = JsonExtractor.readTree(mapper,
+                "{\"trip_plan\": {\"hotels\": [{\"hotel_name\": \"A\"}, {\"hotel_name\": \"B\", \"rating\": 4.5, \"descr");
+        JsonNode hotels = node.path("trip_plan").path("hotels");
+        assertEquals(2, hotels.size());
+        assertEquals(4.5, hotels.path(1).path("rating").asDouble());
+        assertFalse(hotels.path(1).has("descr"));
+    }
+
+    @Test
+    void readsContentOfACompletionBody() throws Exception {
+        String content = "```json\n{\"resp\": \"Hi\", \"ui\": \"source\"}\n```";
+        byte[] body = mapper.writeValueAsBytes(Map.of(
+                "id", "x",
+                "choices", new Object[]{Map.of("index", 0, "message", Map.of("role", "assistant", "content", content))}));
+
+        JsonNode node = JsonExtractor.readCompletionContent(mapper, new ByteArrayInputStream(body));
+        assertEquals("source", node.path("ui").asText());
+    }
+
+    // Whole Groq response -> plan tree: old path (String body, envelope tree, extractBalancedJson copies) vs. streaming
+    @Test
+    void allocatesLessThanTheStringPipelineOnLargePlans() throws Exception {
+        byte[] body = mapper.writeValueAsBytes(Map.of(
+                "choices", new Object[]{Map.of("message", Map.of("content", "```json\n" + largePlan() + "\n```"))}));
+
+        for (int i = 0; i < 20; i++) {
+            legacyPipeline(body);
+            JsonExtractor.readCompletionContent(mapper, new ByteArrayInputStream(body));
+        }
+
+        long legacy = allocated(() -> legacyPipeline(body));
+        long streaming = allocated(() -> JsonExtractor.readCompletionContent(mapper, new ByteArrayInputStream(body)));
+        System.out.printf("plan body %d bytes: legacy %d B allocated, streaming %d B%n", body.length, legacy, streaming);
+        assertTrue(streaming < legacy, "streaming " + streaming + " >= legacy " + legacy);
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    private static long allocated(Work work) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        work.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    private JsonNode legacyPipeline(byte[] body) throws Exception {
+        String raw = new String(body, StandardCharsets.UTF_8);
+        String content = mapper.readTree(raw).path("choices").path(0).path("message").path("content").asText().trim();
+        String text = content.trim().replace("```json", "").replace("```", "").trim();
+        int start = text.indexOf('{');
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return mapper.readTree(text.substring(start, i + 1).trim());
+            }
+        }
+        throw new IllegalStateException("unbalanced");
+    }
+
+    static String largePlan() {
+        StringBuilder plan = new StringBuilder("{\"trip_plan\": {\"destination\": \"Istanbul\", \"hotels\": [");
+        for (int h = 0; h < 8; h++) {
+            if (h > 0) plan.append(',');
+            plan.append("{\"hotel_name\": \"Hotel ").append(h).append("\", \"hotel_address\": \"Street ").append(h)
+                    .append(", Istanbul\", \"price_per_night\": \"$120\", \"hotel_image_url\": null,")
+                    .append(" \"geo_coordinates\": {\"latitude\": 41.0").append(h).append(", \"longitude\": 28.9}, \"rating\": 4.4,")
+                    .append(" \"description\": \"A comfortable hotel close to the old town with a rooftop terrace.\"}");
+        }
+        plan.append("], \"itinerary\": [");
+        for (int d = 1; d <= 7; d++) {
+            if (d > 1) plan.append(',');
+            plan.append("{\"day\": ").append(d).append(", \"day_plan\": \"Old city and bazaars\", \"best_time_to_visit_day\": \"Morning\", \"activities\": [");
+            for (int a = 0; a < 5; a++) {
+                if (a > 0) plan.append(',');
+                plan.append("{\"place_name\": \"Place ").append(d).append('-').append(a)
+                        .append("\", \"place_details\": \"Historic site with guided tours and a small museum about the area.\",")
+                        .append(" \"place_image_url\": null, \"geo_coordinates\": {\"latitude\": 41.01, \"longitude\": 28.97},")
+                        .append(" \"place_address\": \"Sultanahmet, Fatih, Istanbul\", \"ticket_pricing\": \"$10-15\",")
+                        .append(" \"time_travel_each_location\": \"15 minutes by tram\", \"best_time_to_visit\": \"Morning\"}");
+            }
+            plan.append("]}");
+        }
+        return plan.append("]}}").toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.exception.ServiceUnavailableException;
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.example.tripmind.service.ai.ModelRouter.UseCase;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+
+    @Test
+    void routesPerUseCaseAndFailsOverToTheNextModel() {
+        StandInProvider groq = new StandInProvider("groq", true);
+        StandInProvider local = new StandInProvider("local", true);
+        ModelRouter router = router(List.of(groq, local), "llama3.1:8b", 10_000, Duration.ofMinutes(1));
+
+        assertEquals(List.of("groq:small", "groq:large", "local:llama3.1:8b"), router.planIds(UseCase.CHAT, null));
+        assertEquals(List.of("groq:large", "groq:small", "local:llama3.1:8b"), router.planIds(UseCase.BUILD, null));
+        assertEquals("small", router.complete(UseCase.CHAT, Map.of(), null).path("model").asText());
+        assertEquals("large", router.complete(UseCase.CHAT, Map.of(), "large").path("model").asText());
+        assertEquals("small", router.complete(UseCase.CHAT, Map.of(), "gpt-4o").path("model").asText()); // not on the route
+
+        groq.failing.add("small");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("large", router.complete(UseCase.CHAT, Map.of(), null).path("model").asText());
+        }
+        // three failures in a row: cooling down, tried last
+        assertEquals(List.of("groq:large", "local:llama3.1:8b", "groq:small"), router.planIds(UseCase.CHAT, null));
+
+        groq.failing.add("large");
+        assertEquals("llama3.1:8b", router.complete(UseCase.BUILD, Map.of(), null).path("model").asText());
+        local.failing.add("llama3.1:8b");
+        assertThrows(ServiceUnavailableException.class, () -> router.complete(UseCase.BUILD, Map.of(), null));
+    }
+
+    @Test
+    void skipsSlowModelsAndProbesThemOncePerCooldown() throws InterruptedException {
+        StandInProvider groq = new StandInProvider("groq", true);
+        ModelRouter router = router(List.of(groq, new StandInProvider("local", false)), "llama3.1:8b", 20, Duration.ofMillis(100));
+
+        groq.delayMs.put("small", 40L);
+        for (int i = 0; i < 3; i++) router.complete(UseCase.CHAT, Map.of(), null);
+        assertEquals(List.of("groq:large", "groq:small"), router.planIds(UseCase.CHAT, null));
+
+        // after a cooldown one call goes to the slow model again; a fast answer clears it
+        Thread.sleep(150);
+        groq.delayMs.remove("small");
+        assertEquals("small", router.complete(UseCase.CHAT, Map.of(), null).path("model").asText());
+        assertEquals(List.of("groq:small", "groq:large"), router.planIds(UseCase.CHAT, null));
+    }
+
+    @Test
+    void streamsFailOverOnlyBeforeTheFirstDelta() {
+        StandInProvider groq = new StandInProvider("groq", true);
+        ModelRouter router = router(List.of(groq, new StandInProvider("local", false)), "", 10_000, Duration.ofMinutes(1));
+
+        groq.failing.add("large");
+        StringBuilder out = new StringBuilder();
+        router.stream(UseCase.BUILD, Map.of(), out::append);
+        assertEquals("{\"model\":\"small\"}", out.toString());
+
+        groq.failing.clear();
+        groq.failAfterFirstDelta = true;
+        assertThrows(IllegalStateException.class, () -> router.stream(UseCase.BUILD, Map.of(), delta -> {}));
+        assertEquals(1, groq.streams.get("small"));
+    }
+
+    private static ModelRouter router(List<ModelProvider> providers, String localModel, long chatSlowMs, Duration cooldown) {
+        return new ModelRouter(providers,
+                List.of("groq:small", "groq:large"), List.of("groq:large", "groq:small"),
+                localModel, chatSlowMs, 60_000, 3, cooldown);
+    }
+
+    /** Offline provider: answers {"model": ...}, optionally slow or failing per model. */
+    private static final class StandInProvider implements ModelProvider {
+
+        final String name;
+        final boolean enabled;
+        final Set<String> failing = new HashSet<>();
+        final Map<String, Long> delayMs = new HashMap<>();
+        final Map<String, Integer> streams = new HashMap<>();
+        boolean failAfterFirstDelta;
+
+        StandInProvider(String name, boolean enabled) {
+            this.name = name;
+            this.enabled = enabled;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean enabled() {
+            return enabled;
+        }
+
+        @Override
+        public JsonNode complete(String model, Map<String, Object> request, Priority priority) {
+            if (failing.contains(model)) throw new ServiceUnavailableException(name + " is temporarily unavailable");
+            try {
+                Thread.sleep(delayMs.getOrDefault(model, 0L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return JsonNodeFactory.instance.objectNode().put("model", model);
+        }
+
+        @Override
+        public Completion completeText(String model, Map<String, Object> request, Priority priority) {
+            return new Completion(complete(model, request, priority).toString(), "stop");
+        }
+
+        @Override
+        public String stream(String model, Map<String, Object> request, Priority priority, Consumer<String> onDelta) {
+            if (failing.contains(model)) throw new ServiceUnavailableException(name + " is temporarily unavailable");
+            streams.merge(model, 1, Integer::sum);
+            onDelta.accept("{\"model\":");
+            if (failAfterFirstDelta) throw new IllegalStateException("connection reset");
+            onDelta.accept("\"" + model + "\"}");
+            return "stop";
+        }
+    }
+}
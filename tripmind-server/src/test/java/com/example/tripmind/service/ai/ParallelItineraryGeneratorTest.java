@@ -0,0 +1,185 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.dto.ai.FinalPlanInput;
+import com.example.tripmind.service.ai.GroqRequestScheduler.Priority;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelItineraryGeneratorTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsChunksConcurrentlyAndMergesIntoOnePlan() {
+        PlanningProvider provider = new PlanningProvider(true);
+        ParallelItineraryGenerator generator = generator(provider);
+        FinalPlanInput input = input(8);
+        assertTrue(generator.applies(input));
+        assertFalse(generator.applies(input(3)));
+
+        JsonNode plan = generator.generate(input).path("trip_plan");
+
+        // outline || hotels, then 3 chunks at once: every call of a phase met the others in flight
+        assertFalse(provider.sequential, "a phase ran its calls one after another");
+        assertEquals(3, provider.peakInFlight.get());
+        assertEquals("Istanbul", plan.path("destination").asText());
+        assertEquals(8, plan.path("duration_days").asInt());
+        assertEquals(2, plan.path("hotels").size());
+
+        JsonNode itinerary = plan.path("itinerary");
+        assertEquals(8, itinerary.size());
+        Set<String> places = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i + 1, itinerary.get(i).path("day").asInt());
+            for (JsonNode activity : itinerary.get(i).path("activities")) {
+                assertTrue(places.add(activity.path("place_name").asText()), "repeated " + activity);
+            }
+        }
+        // every chunk repeats "Grand Bazaar"; only day 1 keeps it
+        assertTrue(places.contains("Grand Bazaar"));
+
+        // hotels come from the cache the second time
+        generator.generate(input);
+        assertEquals(1, provider.calls.get("hotels").get());
+        assertEquals(2, provider.calls.get("outline").get());
+    }
+
+    @Test
+    void failsWhenAChunkKeepsComingBackShort() {
+        PlanningProvider provider = new PlanningProvider(false);
+        provider.shortChunks = true;
+        ParallelItineraryGenerator generator = generator(provider);
+
+        assertThrows(IllegalStateException.class, () -> generator.generate(input(7)));
+        assertEquals(1L, generator.stats().get("failures"));
+    }
+
+    private ParallelItineraryGenerator generator(ModelProvider provider) {
+        ModelRouter router = new ModelRouter(List.of(provider), List.of("stand-in:fast"), List.of("stand-in:large"),
+                "", 10_000, 60_000, 3, Duration.ofMinutes(1));
+        return new ParallelItineraryGenerator(router, new ItineraryContinuation(router, 2), executor,
+                true, 7, 3, 10, Duration.ofHours(1));
+    }
+
+    private static FinalPlanInput input(int days) {
+        FinalPlanInput input = new FinalPlanInput();
+        input.source = "Almaty";
+        input.destination = "Istanbul";
+        input.groupSize = "Couple";
+        input.budget = "Medium";
+        input.tripDurationDays = days;
+        input.interests = List.of("Food");
+        return input;
+    }
+
+    /**
+     * Answers the outline, hotels and days prompts with small fixed plans. With {@code rendezvous}, the first
+     * outline + hotels calls and the first three day chunks each wait until all of their phase have arrived,
+     * which only happens when the generator runs them concurrently.
+     */
+    private static final class PlanningProvider implements ModelProvider {
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final boolean rendezvous;
+        final CountDownLatch firstPhase = new CountDownLatch(2);
+        final CountDownLatch chunkPhase = new CountDownLatch(3);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final Map<String, AtomicInteger> calls = Map.of(
+                "outline", new AtomicInteger(), "hotels", new AtomicInteger(), "days", new AtomicInteger());
+        volatile boolean shortChunks;
+        volatile boolean sequential;
+
+        PlanningProvider(boolean rendezvous) {
+            this.rendezvous = rendezvous;
+        }
+
+        private void meet(CountDownLatch phase) throws InterruptedException {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (!rendezvous) return;
+                phase.countDown();
+                if (!phase.await(5, TimeUnit.SECONDS)) sequential = true;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String name() {
+            return "stand-in";
+        }
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonNode complete(String model, Map<String, Object> request, Priority priority) {
+            List<Map<String, String>> messages = (List<Map<String, String>>) request.get("messages");
+            String system = messages.get(0).get("content");
+            try {
+                meet(system.contains("trip outliner") || system.contains("hotel finder") ? firstPhase : chunkPhase);
+                JsonNode user = objectMapper.readTree(messages.get(1).get("content"));
+                if (system.contains("trip outliner")) {
+                    calls.get("outline").incrementAndGet();
+                    StringBuilder days = new StringBuilder();
+                    for (int day = 1; day <= user.path("tripDurationDays").asInt(); day++) {
+                        if (day > 1) days.append(',');
+                        days.append("{\"day\":").append(day).append(",\"focus\":\"area ").append(day)
+                                .append("\",\"places\":[\"Place ").append(day).append("\"]}");
+                    }
+                    return objectMapper.readTree("{\"days\":[" + days + "]}");
+                }
+                if (system.contains("hotel finder")) {
+                    calls.get("hotels").incrementAndGet();
+                    return objectMapper.readTree("{\"hotels\":[{\"hotel_name\":\"A\"},{\"hotel_name\":\"B\"}]}");
+                }
+                calls.get("days").incrementAndGet();
+                StringBuilder days = new StringBuilder();
+                JsonNode outline = user.path("days");
+                int count = shortChunks ? outline.size() - 1 : outline.size();
+                for (int i = 0; i < count; i++) {
+                    String place = outline.get(i).path("places").path(0).asText();
+                    if (i > 0) days.append(',');
+                    days.append("{\"day\":").append(outline.get(i).path("day").asInt())
+                            .append(",\"day_plan\":\"plan\",\"activities\":[{\"place_name\":\"").append(place)
+                            .append("\"},{\"place_name\":\"Grand Bazaar\"}]}");
+                }
+                return objectMapper.readTree("{\"itinerary\":[" + days + "]}");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Completion completeText(String model, Map<String, Object> request, Priority priority) {
+            return new Completion(complete(model, request, priority).toString(), "stop");
+        }
+
+        @Override
+        public String stream(String model, Map<String, Object> request, Priority priority, Consumer<String> onDelta) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
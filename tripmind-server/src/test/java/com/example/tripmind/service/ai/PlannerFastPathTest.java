@@ -0,0 +1,36 @@
+package com.example.tripmind.service.ai;
+
+import com.example.tripmind.service.ai.PlannerFastPath.Answer;
+import com.example.tripmind.service.ai.PlannerFastPath.Slot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlannerFastPathTest {
+
+    @Test
+    void parsesEnumeratedAnswersAndLeavesFreeTextToTheModel() {
+        assertEquals(new Answer(Slot.BUDGET, "Medium"), PlannerFastPath.parse(Slot.BUDGET, " medium ").orElseThrow());
+        assertEquals(new Answer(Slot.GROUP_SIZE, "Couple"), PlannerFastPath.parse(Slot.BUDGET, "groupSize: Couple").orElseThrow());
+        assertEquals(new Answer(Slot.TRIP_DURATION, 5), PlannerFastPath.parse(Slot.TRIP_DURATION, "5 days").orElseThrow());
+        assertEquals(new Answer(Slot.INTERESTS, List.of("Food", "Cultural")),
+                PlannerFastPath.parse(null, "interests: Food, cultural").orElseThrow());
+        assertEquals(new Answer(Slot.SPECIAL_REQ, ""), PlannerFastPath.parse(Slot.SPECIAL_REQ, "None").orElseThrow());
+
+        assertEquals(Optional.empty(), PlannerFastPath.parse(Slot.DESTINATION, "Istanbul"));
+        assertEquals(Optional.empty(), PlannerFastPath.parse(Slot.BUDGET, "around 500 dollars"));
+        assertEquals(Optional.empty(), PlannerFastPath.parse(Slot.TRIP_DURATION, "from May 3 to May 9"));
+        assertEquals(Optional.empty(), PlannerFastPath.parse(Slot.INTERESTS, "Food and museums"));
+    }
+
+    @Test
+    void findsTheAskedFieldAndGreetings() {
+        assertTrue(PlannerFastPath.isGreeting("Hi!"));
+        assertFalse(PlannerFastPath.isGreeting("Hi, I want to go to Rome"));
+        assertEquals(Slot.TRIP_DURATION, PlannerFastPath.askedIn("Medium budget, got it. How many days will you stay?"));
+        assertEquals(Slot.INTERESTS, PlannerFastPath.askedIn(Slot.INTERESTS.question));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.tripmind.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void hedgesASlowCallAndCancelsTheLoser() throws InterruptedException {
+        RequestHedger hedger = new RequestHedger(executor, true, 95, Duration.ofMillis(50), Duration.ofMillis(10), 1.0, 10);
+        AtomicInteger attempt = new AtomicInteger();
+        CountDownLatch loserCancelled = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        String result = hedger.call(() -> {
+            if (attempt.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(5_000); // the stuck first request
+                } catch (InterruptedException e) {
+                    loserCancelled.countDown();
+                }
+                return "slow";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(loserCancelled.await(1, TimeUnit.SECONDS));
+        assertEquals(1L, hedger.stats().get("hedged"));
+        assertEquals(1L, hedger.stats().get("hedgeWins"));
+    }
+
+    @Test
+    void staysWithinTheBudgetAndPassesFailuresThrough() {
+        RequestHedger hedger = new RequestHedger(executor, true, 95, Duration.ofMillis(1), Duration.ofMillis(1), 0.0, 10);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("ok", hedger.call(() -> {
+                sleep(20);
+                return "ok";
+            }));
+        }
+        // ratio 0: one hedge per minute, the rest are denied
+        assertEquals(1L, hedger.stats().get("hedged"));
+        assertEquals(2L, hedger.stats().get("budgetDenied"));
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> hedger.call(() -> {
+                    throw new IllegalArgumentException("bad request");
+                }));
+        assertEquals("bad request", failure.getMessage());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
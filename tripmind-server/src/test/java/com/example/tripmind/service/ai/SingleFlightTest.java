@@ -0,0 +1,59 @@
+package com.example.tripmind.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void interruptsTheLoaderOnceEveryCallerHasLeft() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = flights.submit("trip", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "plan";
+        }, UnaryOperator.identity(), executor);
+        CompletableFuture<String> second = flights.submit("trip", () -> "other", UnaryOperator.identity(), executor);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        // one caller leaving keeps the load running for the other
+        first.cancel(true);
+        assertFalse(interrupted.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(0L, flights.abandoned());
+
+        second.cancel(true);
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(1L, flights.abandoned());
+        assertEquals(1, loads.get());
+
+        // the next caller starts a fresh load
+        assertEquals("fresh", flights.submit("trip", () -> "fresh", UnaryOperator.identity(), executor)
+                .get(1, TimeUnit.SECONDS));
+    }
+}
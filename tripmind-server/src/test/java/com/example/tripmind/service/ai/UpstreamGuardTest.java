@@ -0,0 +1,148 @@
+package com.example.tripmind.service.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Retry rules against a local upstream that answers slower than the read timeout. */
+class UpstreamGuardTest {
+
+    private HttpServer server;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+                exchange.sendResponseHeaders(200, 2);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write("{}".getBytes());
+                }
+            } catch (InterruptedException | IOException ignored) {
+                // client gave up
+            } finally {
+                exchange.close();
+            }
+        });
+        server.createContext("/fast", exchange -> {
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{}".getBytes());
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void postIsNotResentAfterReadTimeout() {
+        RestClient client = upstream().restClient();
+
+        assertThrows(ResourceAccessException.class, () -> client.post()
+                .uri(url("/slow"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{}")
+                .retrieve()
+                .toBodilessEntity());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void getIsResentAfterReadTimeout() {
+        RestClient client = upstream().restClient();
+
+        assertThrows(ResourceAccessException.class, () -> client.get().uri(url("/slow")).retrieve().toBodilessEntity());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void postIsResentWhenTheConnectionIsRefused() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        Upstream upstream = upstream();
+
+        assertThrows(ResourceAccessException.class, () -> upstream.restClient().post()
+                .uri("http://127.0.0.1:" + closedPort + "/slow")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{}")
+                .retrieve()
+                .toBodilessEntity());
+        assertEquals(1L, upstream.stats().get("retries"));
+        assertEquals(0L, upstream.stats().get("notResent"));
+    }
+
+    @Test
+    void cancelledHalfOpenProbeLetsTheNextCallThrough() throws Exception {
+        Upstream upstream = upstream(1, 1, Duration.ofMillis(200));
+        RestClient client = upstream.restClient();
+
+        // one failure opens the breaker
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        assertThrows(ResourceAccessException.class,
+                () -> client.get().uri("http://127.0.0.1:" + closedPort + "/").retrieve().toBodilessEntity());
+        assertEquals("OPEN", upstream.stats().get("breaker"));
+        Thread.sleep(250);
+
+        // the half-open probe is cancelled like a hedge loser
+        AtomicReference<Throwable> probeError = new AtomicReference<>();
+        Thread probe = new Thread(() -> {
+            try {
+                client.get().uri(url("/slow")).retrieve().toBodilessEntity();
+            } catch (Throwable e) {
+                probeError.set(e);
+            }
+        });
+        probe.start();
+        while (calls.get() == 0) Thread.sleep(5);
+        probe.interrupt();
+        probe.join(2000);
+        assertNotNull(probeError.get());
+
+        assertEquals(200, client.get().uri(url("/fast")).retrieve().toBodilessEntity().getStatusCode().value());
+        assertEquals("CLOSED", upstream.stats().get("breaker"));
+    }
+
+    private Upstream upstream() {
+        return upstream(2, 5, Duration.ofSeconds(5));
+    }
+
+    private Upstream upstream(int maxAttempts, int failureThreshold, Duration openDuration) {
+        UpstreamGuard.Settings guard = new UpstreamGuard.Settings(4, Duration.ofSeconds(1), maxAttempts,
+                Duration.ofMillis(10), Duration.ofMillis(10), 1.0, failureThreshold, openDuration);
+        return new Upstream("test",
+                new Upstream.Settings(Duration.ofSeconds(1), Duration.ofMillis(300), "", guard), RestClient.builder());
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
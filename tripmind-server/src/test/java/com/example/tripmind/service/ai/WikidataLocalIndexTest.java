@@ -0,0 +1,50 @@
+package com.example.tripmind.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WikidataLocalIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void indexesTheImageSubsetAndSearchesByNameTokens() throws Exception {
+        Path source = dir.resolve("wikidata.jsonl");
+        Files.writeString(source, String.join("\n",
+                "[",
+                // dump format, with the dump's trailing comma
+                "{\"id\":\"Q12506\",\"labels\":{\"en\":{\"value\":\"Hagia Sophia\"}},"
+                        + "\"descriptions\":{\"en\":{\"value\":\"mosque in Istanbul\"}},"
+                        + "\"aliases\":{\"en\":[{\"value\":\"Ayasofya\"}]},"
+                        + "\"claims\":{\"P18\":[{\"mainsnak\":{\"datavalue\":{\"value\":\"Hagia Sophia Mars 2013.jpg\"}}}],"
+                        + "\"P31\":[{\"mainsnak\":{\"datavalue\":{\"value\":{\"id\":\"Q41176\"}}}}]}},",
+                // compact records
+                "{\"id\":\"Q1\",\"label\":\"Hagia Sophia Hotel Old City\",\"image\":\"Hotel.jpg\",\"instanceOf\":[\"Q27686\"]}",
+                "{\"id\":\"Q2\",\"label\":\"Sophia\",\"image\":\"Person.jpg\",\"instanceOf\":[\"Q5\"]}",
+                "{\"id\":\"Q3\",\"label\":\"Galata Tower\",\"image\":\"\",\"instanceOf\":[\"Q41176\"]}",
+                "]"));
+
+        WikidataLocalIndex index = new WikidataLocalIndex(source.toString());
+        for (int i = 0; i < 500 && !index.ready(); i++) Thread.sleep(10);
+        assertTrue(index.ready(), () -> index.stats().toString());
+        assertTrue(Files.exists(dir.resolve("wikidata.jsonl.idx")));
+        assertEquals(2, index.stats().get("entities"));
+
+        List<WikidataEntity> found = index.search("Hagia Sophia", 5);
+        assertEquals(List.of("Q12506", "Q1"), found.stream().map(WikidataEntity::id).toList());
+        assertEquals(new WikidataEntity("Q12506", "Hagia Sophia", "mosque in Istanbul",
+                "Hagia Sophia Mars 2013.jpg", List.of("Q41176")), found.get(0));
+
+        assertEquals("Q12506", index.search("ayasofya", 5).get(0).id());
+        assertEquals(1, index.search("Hagia Sophia", 1).size());
+        assertTrue(index.search("Galata Tower", 5).isEmpty());   // no image
+        assertTrue(index.search("Hagia Sophia, Istanbul", 5).isEmpty());
+    }
+}